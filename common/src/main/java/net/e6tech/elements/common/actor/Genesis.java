@@ -22,6 +22,7 @@ import akka.pattern.Patterns;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 import net.e6tech.elements.common.actor.pool.Events;
+import net.e6tech.elements.common.actor.pool.WorkStealingPool;
 import net.e6tech.elements.common.actor.pool.WorkerPool;
 import net.e6tech.elements.common.logging.Logger;
 import net.e6tech.elements.common.resources.*;
@@ -48,6 +49,11 @@ public class Genesis implements Initializable {
     private int maxCapacity = Integer.MAX_VALUE;  // ie unlimited
     private long idleTimeout = 10000L;
     private long timeout = 5000L;
+    private boolean workStealing = false;
+    private int parallelism = Math.max(8, Runtime.getRuntime().availableProcessors() * 5);
+    private int maxQueueSize = 10000;
+    private WorkStealingPool.RejectionPolicy rejectionPolicy = WorkStealingPool.RejectionPolicy.ABORT;
+    private WorkStealingPool workStealingPool;
 
     public long getTimeout() {
         return timeout;
@@ -85,6 +91,50 @@ public class Genesis implements Initializable {
         }
     }
 
+    public boolean isWorkStealing() {
+        return workStealing;
+    }
+
+    /**
+     * When true, async runs tasks on a bounded WorkStealingPool instead of sending them through the WorkerPool actor.
+     * The actor system is still created for other users of getSystem.
+     */
+    public void setWorkStealing(boolean workStealing) {
+        this.workStealing = workStealing;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Number of threads used when workStealing is on.  Tasks are expected to block, so the default matches
+     * the worker pool dispatcher: max(8, 5 * processors).
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    public void setMaxQueueSize(int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    public WorkStealingPool.RejectionPolicy getRejectionPolicy() {
+        return rejectionPolicy;
+    }
+
+    public void setRejectionPolicy(WorkStealingPool.RejectionPolicy rejectionPolicy) {
+        this.rejectionPolicy = rejectionPolicy;
+    }
+
+    public WorkStealingPool getWorkStealingPool() {
+        return workStealingPool;
+    }
+
     @Override
     public void initialize(Resources resources) {
         if (name == null)
@@ -132,9 +182,14 @@ public class Genesis implements Initializable {
 
         // Create a worker pool
         workerPool =  WorkerPool.newPool(system, initialCapacity, maxCapacity, idleTimeout);
+
+        if (workStealing)
+            workStealingPool = new WorkStealingPool(name, parallelism, maxQueueSize, rejectionPolicy);
     }
 
     public void shutdown() {
+        if (workStealingPool != null)
+            workStealingPool.shutdown();
         try {
             Await.ready(system.terminate(), Duration.create(30, TimeUnit.SECONDS));
         } catch (TimeoutException | InterruptedException e) {
@@ -175,6 +230,8 @@ public class Genesis implements Initializable {
     }
 
     public CompletionStage<Void> async(Runnable runnable, long timeout) {
+        if (workStealingPool != null)
+            return workStealingPool.submit(runnable, timeout);
         Future future = Patterns.ask(workerPool, runnable, timeout);
         return FutureConverters.toJava(future).thenAcceptAsync(ret -> {
             // do nothing
@@ -186,6 +243,8 @@ public class Genesis implements Initializable {
     }
 
     public <R> CompletionStage<R> async(Callable<R> callable, long timeout) {
+        if (workStealingPool != null)
+            return workStealingPool.submit(callable, timeout);
         Future future = Patterns.ask(workerPool, callable, timeout);
         return FutureConverters.toJava(future).thenApplyAsync(ret -> {
             Events.Response response = (Events.Response) ret;
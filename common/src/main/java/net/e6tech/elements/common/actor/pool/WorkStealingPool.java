@@ -0,0 +1,208 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.common.actor.pool;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An alternative to WorkerPool that runs tasks on a ForkJoinPool and returns CompletableFutures directly.
+ * Tasks are not routed through an actor mailbox, and idle threads steal work from busy ones.
+ * <p>
+ * The pool is bounded.  At most parallelism + maxQueueSize tasks can be pending, i.e. queued or running.
+ * Tasks beyond that are handled according to the RejectionPolicy.
+ * <p>
+ * Created by futeh.
+ */
+public class WorkStealingPool {
+
+    public enum RejectionPolicy {
+        ABORT,          // the returned future completes exceptionally with RejectedExecutionException
+        CALLER_RUNS     // the task runs on the submitting thread
+    }
+
+    private static ScheduledThreadPoolExecutor timer;
+
+    private final String name;
+    private final ForkJoinPool pool;
+    private final int maxQueueSize;
+    private final RejectionPolicy rejectionPolicy;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public WorkStealingPool(String name, int parallelism, int maxQueueSize, RejectionPolicy rejectionPolicy) {
+        if (parallelism <= 0 || maxQueueSize < 0)
+            throw new IllegalArgumentException("parallelism=" + parallelism + " maxQueueSize=" + maxQueueSize);
+        this.name = name;
+        this.maxQueueSize = maxQueueSize;
+        this.rejectionPolicy = (rejectionPolicy == null) ? RejectionPolicy.ABORT : rejectionPolicy;
+        AtomicInteger count = new AtomicInteger();
+        // asyncMode: tasks are never joined, so FIFO scheduling suits them better.
+        this.pool = new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName(name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, true);
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor timer() {
+        if (timer == null) {
+            timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "WorkStealingPool-timeout");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.setRemoveOnCancelPolicy(true);
+        }
+        return timer;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    public RejectionPolicy getRejectionPolicy() {
+        return rejectionPolicy;
+    }
+
+    /**
+     * @return number of tasks that have been accepted but not finished.
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    public int getActiveCount() {
+        return pool.getActiveThreadCount();
+    }
+
+    public long getQueuedCount() {
+        return pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount();
+    }
+
+    public long getStealCount() {
+        return pool.getStealCount();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public CompletableFuture<Void> submit(Runnable runnable, long timeout) {
+        return submit(() -> {
+            runnable.run();
+            return null;
+        }, timeout);
+    }
+
+    /**
+     * Submits a task.
+     * @param callable the task
+     * @param timeout milliseconds after which the returned future completes with TimeoutException.  0 for no timeout.
+     *                The task itself is not interrupted.
+     */
+    public <R> CompletableFuture<R> submit(Callable<R> callable, long timeout) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        if (!admit()) {
+            rejected.increment();
+            if (rejectionPolicy == RejectionPolicy.CALLER_RUNS) {
+                call(callable, future);
+            } else {
+                future.completeExceptionally(new RejectedExecutionException(name + " is saturated: "
+                        + pending.get() + " tasks pending"));
+            }
+            return future;
+        }
+
+        submitted.increment();
+        try {
+            pool.execute(() -> {
+                try {
+                    call(callable, future);
+                } finally {
+                    pending.decrementAndGet();
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            pending.decrementAndGet();
+            rejected.increment();
+            future.completeExceptionally(ex);
+            return future;
+        }
+
+        if (timeout > 0 && !future.isDone()) {
+            ScheduledFuture<?> scheduled = timer().schedule(() ->
+                    future.completeExceptionally(new TimeoutException(name + " task timed out after " + timeout + "ms")),
+                    timeout, TimeUnit.MILLISECONDS);
+            future.whenComplete((r, e) -> scheduled.cancel(false));
+        }
+        return future;
+    }
+
+    private boolean admit() {
+        int limit = pool.getParallelism() + maxQueueSize;
+        while (true) {
+            int count = pending.get();
+            if (count >= limit)
+                return false;
+            if (pending.compareAndSet(count, count + 1))
+                return true;
+        }
+    }
+
+    @SuppressWarnings("squid:S1181")
+    private static <R> void call(Callable<R> callable, CompletableFuture<R> future) {
+        try {
+            future.complete(callable.call());
+        } catch (Throwable th) {
+            future.completeExceptionally(th);
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return name + "[parallelism=" + getParallelism() + ", pending=" + getPendingCount()
+                + ", active=" + getActiveCount() + ", queued=" + getQueuedCount() + ", steals=" + getStealCount()
+                + ", submitted=" + getSubmittedCount() + ", completed=" + getCompletedCount()
+                + ", rejected=" + getRejectedCount() + "]";
+    }
+}
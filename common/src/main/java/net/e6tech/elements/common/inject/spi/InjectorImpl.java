@@ -21,11 +21,14 @@ import net.e6tech.elements.common.inject.Named;
 import net.e6tech.elements.common.inject.Injector;
 import net.e6tech.elements.common.util.SystemException;
 
-import java.lang.ref.WeakReference;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by futeh.
@@ -33,11 +36,18 @@ import java.util.*;
 @SuppressWarnings("squid:S134")
 public class InjectorImpl implements Injector {
 
-    private static Map<Class, WeakReference<List<InjectionPoint>>> injectionPoints = Collections.synchronizedMap(new WeakHashMap<>());
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final ClassValue<InjectionPoint[]> injectionPoints = new ClassValue<InjectionPoint[]>() {
+        @Override
+        protected InjectionPoint[] computeValue(Class<?> type) {
+            List<InjectionPoint> list = parseInjectionPoints(type);
+            return list.toArray(new InjectionPoint[list.size()]);
+        }
+    };
 
     private ModuleImpl module;
     private InjectorImpl parentInjector;
-    private Map<Type, BoundInstances> instances = new HashMap<>();
+    private Map<Type, BoundInstances> instances = new ConcurrentHashMap<>(); // may be read by concurrent commits
 
     public InjectorImpl(ModuleImpl module) {
         this.module = module;
@@ -58,6 +68,14 @@ public class InjectorImpl implements Injector {
         return privateGetNamedInstance(boundClass, name).<T>map(entry -> (T) entry.value).orElse(null);
     }
 
+    InjectorImpl getParentInjector() {
+        return parentInjector;
+    }
+
+    /*
+     * Looks up bindings from this module first, then the parent modules.  Instances are cached in this
+     * injector so that parent injectors, which are shared by many children, are never modified.
+     */
     @SuppressWarnings("squid:MethodCyclomaticComplexity")
     private Optional<Entry> privateGetNamedInstance(Type boundClass, String name) {
         BoundInstances boundInstances = instances.get(boundClass);
@@ -72,20 +90,17 @@ public class InjectorImpl implements Injector {
         }
 
         // need to get from module
-        if (entry == null) {
+        InjectorImpl injector = this;
+        while (entry == null && injector != null) {
             Type type = boundClass;
-            Binding binding = module.getBinding(type, name);
+            Binding binding = injector.module.getBinding(type, name);
             if (binding == null && type instanceof ParameterizedType) {
                 type = ((ParameterizedType) type).getRawType();
-                binding = module.getBinding(type, name);
+                binding = injector.module.getBinding(type, name);
             }
 
             if (binding != null) {
-                if (boundInstances == null) {
-                    boundInstances = new BoundInstances();
-                    instances.put(type, boundInstances);
-                }
-
+                BoundInstances bound = instances.computeIfAbsent(type, t -> new BoundInstances());
                 Object instance = null;
                 if (binding.isSingleton()) {
                     instance = binding.getValue();
@@ -98,50 +113,56 @@ public class InjectorImpl implements Injector {
                     }
                 }
 
-                entry = boundInstances.put(name, instance);
+                entry = bound.put(name, instance);
 
                 // only inject for non-singleton, this needs to be call after boundInstances has been
                 // updated to avoid infinite injection cycle.
                 if (!binding.isSingleton()) {
                     inject(instance);
                 }
-            } else if (parentInjector != null) {
-                entry = parentInjector.privateGetNamedInstance(boundClass, name).orElse(null);
             }
+            injector = injector.parentInjector;
         }
 
         return Optional.ofNullable(entry);
     }
 
     public void inject(Object instance) {
+        injectAll(instance);
+    }
+
+    /*
+     * Returns false if an optional injection point was left unset because nothing is bound to it yet, so that
+     * ModuleImpl can inject the instance again once more bindings are added.
+     */
+    boolean injectAll(Object instance) {
         if (instance == null)
-            return;
-        Class instanceClass = instance.getClass();
-        WeakReference<List<InjectionPoint>> ref = injectionPoints.get(instanceClass);
-
-        List<InjectionPoint> points = (ref == null) ? null : ref.get();
-        if (points == null) {
-            points = parseInjectionPoints(instanceClass);
-            injectionPoints.put(instanceClass, new WeakReference<List<InjectionPoint>>(points));
-        }
-        points.forEach(pt ->{
+            return true;
+        boolean complete = true;
+        for (InjectionPoint pt : injectionPoints.get(instance.getClass())) {
             boolean injected = inject(pt, instance);
             if (!injected) {
-                throw new SystemException("Cannot inject " + pt.field + "; no instances bound to " + pt.field.getType());
+                if (!pt.optional)
+                    throw new SystemException("Cannot inject " + pt.field + "; no instances bound to " + pt.field.getType());
+                complete = false;
             }
-        });
+        }
+        return complete;
+    }
+
+    /**
+     * Returns true if instances of cls have fields or setters to be injected.
+     */
+    public static boolean hasInjectionPoints(Class cls) {
+        return injectionPoints.get(cls).length > 0;
     }
 
+    // parent injectors are consulted by privateGetNamedInstance.  Returns false if nothing is bound to the point.
     protected boolean inject(InjectionPoint point, Object instance) {
-        boolean myAttempt = point.inject(this, instance);
-        if (myAttempt)
-            return true;
-        if (parentInjector != null)
-            return parentInjector.inject(point, instance);
-        return false;
+        return point.inject(this, instance);
     }
 
-    List<InjectionPoint> parseInjectionPoints(Class instanceClass) {
+    static List<InjectionPoint> parseInjectionPoints(Class instanceClass) {
         Class cls = instanceClass;
         List<InjectionPoint> list = new ArrayList<>();
         while (cls != Object.class) {
@@ -175,7 +196,13 @@ public class InjectorImpl implements Injector {
 
                 if (injectionPoint != null) {
                     injectionPoint.field = field;
+                    injectionPoint.type = field.getGenericType();
                     field.setAccessible(true);
+                    try {
+                        injectionPoint.setter = MethodHandles.lookup().unreflectSetter(field).asType(SETTER_TYPE);
+                    } catch (IllegalAccessException e) {
+                        throw new SystemException(e);
+                    }
                     injectionPoint.optional = optional;
                     injectionPoint.name = name;
                     list.add(injectionPoint);
@@ -188,8 +215,8 @@ public class InjectorImpl implements Injector {
     }
 
     private static class BoundInstances {
-        Map<String, Entry> namedInstances = new HashMap<>();
-        Entry unnamedInstance;
+        Map<String, Entry> namedInstances = new ConcurrentHashMap<>();
+        volatile Entry unnamedInstance;
 
         Entry getInstance(String name) {
             if (name == null)
@@ -220,23 +247,26 @@ public class InjectorImpl implements Injector {
 
     private static class InjectionPoint {
         private Field field;
+        private Type type;
+        private MethodHandle setter; // (Object, Object)void
         private String name;
         private boolean optional;
 
+        @SuppressWarnings("squid:S00112")
         public boolean inject(InjectorImpl injector, Object target) {
-            Optional<Entry> opt = injector.privateGetNamedInstance(field.getGenericType(), name);
+            Optional<Entry> opt = injector.privateGetNamedInstance(type, name);
 
-            if (!opt.isPresent() && !optional) {
+            if (!opt.isPresent()) {
                 return false;
             }
 
-            opt.ifPresent(entry -> {
-                try {
-                    field.set(target, entry.value());
-                } catch (IllegalAccessException e) {
-                    throw new SystemException(e);
-                }
-            });
+            try {
+                setter.invokeExact(target, opt.get().value());
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new SystemException(e);
+            }
             return true;
         }
     }
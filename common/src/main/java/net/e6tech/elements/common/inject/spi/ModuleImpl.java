@@ -22,18 +22,23 @@ import net.e6tech.elements.common.inject.ModuleFactory;
 import net.e6tech.elements.common.util.SystemException;
 
 import java.lang.reflect.Type;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
+ * Bindings are kept in a directory that is never copied.  build() returns an injector that reads the
+ * directory directly; the injector is cached until the module changes.  A singleton is injected on the first
+ * build after it is bound and stays pending, to be injected again by later builds, until every one of its
+ * injection points has been set.
  * Created by futeh.
  */
 public class ModuleImpl implements Module {
 
     private ModuleFactory factory;
     private Map<Type, BindingList> directory = new HashMap<>();
+    private List<Object> pendingSingletons = new ArrayList<>(); // singletons not yet fully injected
+    private int version = 0;
+    private int builtVersion = -1;
+    private InjectorImpl injector;
 
     public ModuleImpl(ModuleFactory factory) {
         this.factory = factory;
@@ -63,14 +68,34 @@ public class ModuleImpl implements Module {
         }
 
         // dir contains directory from module argument
-        for (Map.Entry<Type, BindingList> entry: dir.entrySet()) {
-            BindingList existing = directory.get(entry.getKey());
-            if (existing != null) {
-                existing.merge(entry.getValue());
-            } else {
-                directory.put(entry.getKey(), entry.getValue());
+        synchronized (directory) {
+            for (Map.Entry<Type, BindingList> entry : dir.entrySet()) {
+                BindingList existing = directory.get(entry.getKey());
+                List<Binding> added;
+                if (existing != null) {
+                    added = existing.merge(entry.getValue());
+                } else {
+                    BindingList copy = new BindingList();
+                    copy.merge(entry.getValue());
+                    directory.put(entry.getKey(), copy);
+                    added = copy.list();
+                }
+                added.forEach(this::addPending);
             }
+            version++;
+        }
+    }
+
+    // must be called while holding the directory lock
+    private void addPending(Binding binding) {
+        Object value = binding.getValue();
+        if (!binding.isSingleton() || value == null)
+            return;
+        for (Object pending : pendingSingletons) {
+            if (pending == value)
+                return;
         }
+        pendingSingletons.add(value);
     }
 
     @Override
@@ -81,6 +106,7 @@ public class ModuleImpl implements Module {
                 BindingList bindList = directory.computeIfAbsent(type, t -> new BindingList());
                 bindList.bindClass(implementation);
             }
+            version++;
         }
     }
 
@@ -102,8 +128,9 @@ public class ModuleImpl implements Module {
         synchronized (directory) {
             for (Type type : types) {
                 BindingList bindList = directory.computeIfAbsent(type, t -> new BindingList());
-                bindList.bindInstance(null, instance);
+                addPending(bindList.bindInstance(null, instance));
             }
+            version++;
         }
         return instance;
     }
@@ -115,8 +142,9 @@ public class ModuleImpl implements Module {
         synchronized (directory) {
             for (Type type : types) {
                 BindingList bindList = directory.computeIfAbsent(type, t -> new BindingList());
-                bindList.bindInstance(name, instance);
+                addPending(bindList.bindInstance(name, instance));
             }
+            version++;
         }
         return instance;
     }
@@ -127,10 +155,13 @@ public class ModuleImpl implements Module {
             for (Type type : types) {
                 BindingList bindList = directory.get(type);
                 if (bindList != null) {
-                    Object value = bindList.unbind();
+                    Binding binding = bindList.unbind();
                     if (bindList.namedBindings.size() == 0)
                         directory.remove(type);
-                    return value;
+                    if (binding != null)
+                        pendingSingletons.removeIf(pending -> pending == binding.getValue());
+                    version++;
+                    return (binding == null) ? null : binding.getValue();
                 }
             }
         }
@@ -178,30 +209,49 @@ public class ModuleImpl implements Module {
         }
     }
 
+    /*
+     * components are the parent modules, e.g. ResourceManager's module for a Resources' module.  Parent
+     * modules return their cached injectors so building a child injector only costs the child's own
+     * new bindings.
+     */
     @Override
     public Injector build(Module... components) {
-        Injector parent = null;
+        InjectorImpl parent = null;
         if (components != null && components.length > 0) {
             Module[] remaining = new Module[components.length - 1];
             if (remaining.length > 0)
                 System.arraycopy(components, 1, remaining, 0, components.length - 1);
-            parent = components[0].build(remaining);
+            parent = (InjectorImpl) components[0].build(remaining);
         }
 
-        // go through every singleton and inject them
-        InjectorImpl injector = new InjectorImpl(this, (InjectorImpl) parent);
-        Map<Type, BindingList> dir = new HashMap<>();
+        InjectorImpl built;
+        List<Object> singletons;
         synchronized (directory) {
-            dir.putAll(directory);
+            if (injector != null && builtVersion == version && injector.getParentInjector() == parent)
+                return injector;
+            built = new InjectorImpl(this, parent);
+            injector = built;
+            builtVersion = version;
+            singletons = new ArrayList<>(pendingSingletons);
         }
-        for (Map.Entry<Type, BindingList> entry : dir.entrySet()) {
-            entry.getValue().list().forEach(binding -> {
-                if (binding.isSingleton()) {
-                    injector.inject(binding.getValue());
-                }
-            });
+
+        // inject pending singletons; they are only removed once injected completely
+        Set<Object> injected = Collections.newSetFromMap(new IdentityHashMap<>());
+        boolean succeeded = false;
+        try {
+            for (Object singleton : singletons) {
+                if (built.injectAll(singleton))
+                    injected.add(singleton);
+            }
+            succeeded = true;
+        } finally {
+            synchronized (directory) {
+                pendingSingletons.removeIf(injected::contains);
+                if (!succeeded && injector == built)
+                    injector = null; // so that the next build retries the singleton that failed
+            }
         }
-        return injector;
+        return built;
     }
 
     private static class BindingList {
@@ -227,38 +277,45 @@ public class ModuleImpl implements Module {
             unnamedBinding = binding;
         }
 
-        void bindInstance(String name, Object instance) {
+        Binding bindInstance(String name, Object instance) {
             Binding binding = new Binding(instance);
             if (name == null) {
                 unnamedBinding = binding;
             }  else {
                 namedBindings.put(name, binding);
             }
+            return binding;
         }
 
-        Object unbind() {
-            Object value = unnamedBinding.getValue();
+        Binding unbind() {
+            Binding binding = unnamedBinding;
             unnamedBinding = null;
-            return value;
+            return binding;
         }
 
         int namedBindingSize() {
             return namedBindings.size();
         }
 
-        void merge(BindingList bindingList) {
-            if (unnamedBinding == null)
+        // returns bindings that are added
+        List<Binding> merge(BindingList bindingList) {
+            List<Binding> added = new ArrayList<>();
+            if (unnamedBinding == null && bindingList.unnamedBinding != null) {
                 unnamedBinding = bindingList.unnamedBinding;
+                added.add(unnamedBinding);
+            }
 
             Map<String, Binding> copy = new HashMap<>();
             synchronized (bindingList.namedBindings) {
                 copy.putAll(bindingList.namedBindings);
             }
-            for (String name : copy.keySet()) {
-                if (!namedBindings.containsKey(name)) {
-                    namedBindings.put(name, bindingList.namedBindings.get(name));
+            for (Map.Entry<String, Binding> entry : copy.entrySet()) {
+                if (!namedBindings.containsKey(entry.getKey())) {
+                    namedBindings.put(entry.getKey(), entry.getValue());
+                    added.add(entry.getValue());
                 }
             }
+            return added;
         }
     }
 }
@@ -0,0 +1,236 @@
+/*
+Copyright 2015 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package net.e6tech.elements.common.logging;
+
+import org.slf4j.helpers.FormattingTuple;
+import org.slf4j.helpers.MessageFormatter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves log formatting and output off the calling thread.  Events go into a ring buffer of preallocated
+ * slots; a single daemon thread formats them with slf4j's MessageFormatter and writes them to the target
+ * logger.  Publishing claims a slot with one CAS and never blocks: when the buffer is full the event is
+ * dropped and counted, except for errors, which are written synchronously instead.
+ *
+ * Arguments are formatted on the background thread, so they should not be mutated after they are logged.
+ *
+ * Loggers normally share getInstance(), which lives as long as the process.  Other instances should be closed,
+ * which drains pending events, stops the thread and removes the shutdown hook.
+ *
+ * Created by futeh.
+ */
+@SuppressWarnings({"squid:S1181", "squid:S2142"})
+public final class AsyncLogDispatcher implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 8192;
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static volatile AsyncLogDispatcher instance;
+
+    private final LogEvent[] events;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long consumed = 0L;
+    private volatile boolean sleeping = false;
+    private volatile boolean running = true;
+    private final Thread consumer;
+    private final Thread shutdownHook;
+
+    public static AsyncLogDispatcher getInstance() {
+        if (instance == null) {
+            synchronized (AsyncLogDispatcher.class) {
+                if (instance == null)
+                    instance = new AsyncLogDispatcher(DEFAULT_CAPACITY);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @param capacity number of preallocated events; must be a power of two.
+     */
+    public AsyncLogDispatcher(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        events = new LogEvent[capacity];
+        for (int i = 0; i < capacity; i++)
+            events[i] = new LogEvent();
+        mask = capacity - 1;
+        consumer = new Thread(this::run, "AsyncLogDispatcher");
+        consumer.setDaemon(true);
+        consumer.start();
+        shutdownHook = new Thread(() -> flush(1000L), "AsyncLogDispatcher-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    public int getCapacity() {
+        return events.length;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getPending() {
+        return next.get() - consumed;
+    }
+
+    public boolean isClosed() {
+        return !running;
+    }
+
+    /**
+     * Queues an event.  format and args follow slf4j's conventions; args may be null for a plain message.
+     * Once closed, events are written on the calling thread.
+     * @return false if the buffer was full.  Errors are then written on the calling thread, anything else is dropped.
+     */
+    public boolean publish(org.slf4j.Logger logger, LogLevel level, String format, Object[] args, Throwable throwable) {
+        if (!running) {
+            write(logger, level, format, args, throwable);
+            return true;
+        }
+
+        long seq;
+        do {
+            seq = next.get();
+            if (seq - consumed >= events.length) {
+                dropped.incrementAndGet();
+                if (level == LogLevel.ERROR || level == LogLevel.FATAL)
+                    write(logger, level, format, args, throwable);
+                return false;
+            }
+        } while (!next.compareAndSet(seq, seq + 1));
+
+        if (args != null) {
+            for (Object arg : args) {
+                if (arg instanceof CallerLocation)
+                    ((CallerLocation) arg).capture();
+            }
+        }
+
+        LogEvent event = events[(int) seq & mask];
+        event.set(logger, level, format, args, throwable);
+        event.sequence = seq;
+        if (sleeping)
+            LockSupport.unpark(consumer);
+        return true;
+    }
+
+    /**
+     * Waits until every event published before this call has been written.
+     * @return false if the timeout elapsed first.
+     */
+    public boolean flush(long timeoutMillis) {
+        long target = next.get();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (consumed < target) {
+            if (System.currentTimeMillis() > deadline)
+                return false;
+            LockSupport.unpark(consumer);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        return true;
+    }
+
+    /**
+     * Writes pending events, stops the background thread and removes the shutdown hook.  Events published
+     * while closing may be lost.
+     */
+    @Override
+    public void close() {
+        synchronized (AsyncLogDispatcher.class) {
+            if (!running)
+                return;
+            running = false;
+            if (instance == this)
+                instance = null;
+        }
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(1000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException ex) {
+            // already shutting down
+            Logger.suppress(ex);
+        }
+    }
+
+    private void run() {
+        long seq = 0L;
+        while (running || seq < next.get()) {
+            LogEvent event = events[(int) seq & mask];
+            if (event.sequence != seq) {
+                sleeping = true;
+                if (event.sequence != seq)
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                sleeping = false;
+                continue;
+            }
+
+            try {
+                LogHandler.prepareThreadContext();
+                write(event.logger, event.level, event.format, event.args, event.throwable);
+            } catch (Throwable th) {
+                Logger.suppress(th);
+            } finally {
+                event.clear();
+                seq++;
+                consumed = seq;
+            }
+        }
+    }
+
+    @SuppressWarnings("squid:MethodCyclomaticComplexity")
+    private static void write(org.slf4j.Logger logger, LogLevel level, String format, Object[] args, Throwable throwable) {
+        String message = format;
+        Throwable th = throwable;
+        if (args != null) {
+            FormattingTuple tuple = MessageFormatter.arrayFormat(format, args);
+            message = tuple.getMessage();
+            if (th == null)
+                th = tuple.getThrowable();
+        }
+
+        switch (level) {
+            case FATAL:
+            case ERROR:
+                logger.error(message, th);
+                break;
+            case WARN:
+                logger.warn(message, th);
+                break;
+            case INFO:
+                logger.info(message, th);
+                break;
+            case DEBUG:
+                logger.debug(message, th);
+                break;
+            case TRACE:
+                logger.trace(message, th);
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,400 @@
+/*
+Copyright 2015 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package net.e6tech.elements.common.logging;
+
+import org.slf4j.Marker;
+
+/**
+ * An slf4j Logger that hands enabled events to AsyncLogDispatcher instead of formatting and writing them on
+ * the calling thread.  Level checks are done by the target logger, so disabled levels cost the same as they do
+ * synchronously.  Calls with a Marker are passed through to the target as is.
+ *
+ * Created by futeh.
+ */
+@SuppressWarnings("squid:S1192")
+public class AsyncLogger implements org.slf4j.Logger {
+
+    private final LogHandler handler;
+    private final AsyncLogDispatcher dispatcher;
+
+    public AsyncLogger(LogHandler handler) {
+        this(handler, AsyncLogDispatcher.getInstance());
+    }
+
+    public AsyncLogger(LogHandler handler, AsyncLogDispatcher dispatcher) {
+        this.handler = handler;
+        this.dispatcher = dispatcher;
+    }
+
+    private org.slf4j.Logger target() {
+        return handler.getLogger();
+    }
+
+    @Override
+    public String getName() {
+        return target().getName();
+    }
+
+    @Override
+    public boolean isTraceEnabled() {
+        return target().isTraceEnabled();
+    }
+
+    @Override
+    public void trace(String msg) {
+        org.slf4j.Logger logger = target();
+        if (logger.isTraceEnabled())
+            dispatcher.publish(logger, LogLevel.TRACE, msg, null, null);
+    }
+
+    @Override
+    public void trace(String format, Object arg) {
+        org.slf4j.Logger logger = target();
+        if (logger.isTraceEnabled())
+            dispatcher.publish(logger, LogLevel.TRACE, format, new Object[] {arg}, null);
+    }
+
+    @Override
+    public void trace(String format, Object arg1, Object arg2) {
+        org.slf4j.Logger logger = target();
+        if (logger.isTraceEnabled())
+            dispatcher.publish(logger, LogLevel.TRACE, format, new Object[] {arg1, arg2}, null);
+    }
+
+    @Override
+    public void trace(String format, Object... arguments) {
+        org.slf4j.Logger logger = target();
+        if (logger.isTraceEnabled())
+            dispatcher.publish(logger, LogLevel.TRACE, format, arguments, null);
+    }
+
+    @Override
+    public void trace(String msg, Throwable t) {
+        org.slf4j.Logger logger = target();
+        if (logger.isTraceEnabled())
+            dispatcher.publish(logger, LogLevel.TRACE, msg, null, t);
+    }
+
+    @Override
+    public boolean isTraceEnabled(Marker marker) {
+        return target().isTraceEnabled(marker);
+    }
+
+    @Override
+    public void trace(Marker marker, String msg) {
+        target().trace(marker, msg);
+    }
+
+    @Override
+    public void trace(Marker marker, String format, Object arg) {
+        target().trace(marker, format, arg);
+    }
+
+    @Override
+    public void trace(Marker marker, String format, Object arg1, Object arg2) {
+        target().trace(marker, format, arg1, arg2);
+    }
+
+    @Override
+    public void trace(Marker marker, String format, Object... arguments) {
+        target().trace(marker, format, arguments);
+    }
+
+    @Override
+    public void trace(Marker marker, String msg, Throwable t) {
+        target().trace(marker, msg, t);
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return target().isDebugEnabled();
+    }
+
+    @Override
+    public void debug(String msg) {
+        org.slf4j.Logger logger = target();
+        if (logger.isDebugEnabled())
+            dispatcher.publish(logger, LogLevel.DEBUG, msg, null, null);
+    }
+
+    @Override
+    public void debug(String format, Object arg) {
+        org.slf4j.Logger logger = target();
+        if (logger.isDebugEnabled())
+            dispatcher.publish(logger, LogLevel.DEBUG, format, new Object[] {arg}, null);
+    }
+
+    @Override
+    public void debug(String format, Object arg1, Object arg2) {
+        org.slf4j.Logger logger = target();
+        if (logger.isDebugEnabled())
+            dispatcher.publish(logger, LogLevel.DEBUG, format, new Object[] {arg1, arg2}, null);
+    }
+
+    @Override
+    public void debug(String format, Object... arguments) {
+        org.slf4j.Logger logger = target();
+        if (logger.isDebugEnabled())
+            dispatcher.publish(logger, LogLevel.DEBUG, format, arguments, null);
+    }
+
+    @Override
+    public void debug(String msg, Throwable t) {
+        org.slf4j.Logger logger = target();
+        if (logger.isDebugEnabled())
+            dispatcher.publish(logger, LogLevel.DEBUG, msg, null, t);
+    }
+
+    @Override
+    public boolean isDebugEnabled(Marker marker) {
+        return target().isDebugEnabled(marker);
+    }
+
+    @Override
+    public void debug(Marker marker, String msg) {
+        target().debug(marker, msg);
+    }
+
+    @Override
+    public void debug(Marker marker, String format, Object arg) {
+        target().debug(marker, format, arg);
+    }
+
+    @Override
+    public void debug(Marker marker, String format, Object arg1, Object arg2) {
+        target().debug(marker, format, arg1, arg2);
+    }
+
+    @Override
+    public void debug(Marker marker, String format, Object... arguments) {
+        target().debug(marker, format, arguments);
+    }
+
+    @Override
+    public void debug(Marker marker, String msg, Throwable t) {
+        target().debug(marker, msg, t);
+    }
+
+    @Override
+    public boolean isInfoEnabled() {
+        return target().isInfoEnabled();
+    }
+
+    @Override
+    public void info(String msg) {
+        org.slf4j.Logger logger = target();
+        if (logger.isInfoEnabled())
+            dispatcher.publish(logger, LogLevel.INFO, msg, null, null);
+    }
+
+    @Override
+    public void info(String format, Object arg) {
+        org.slf4j.Logger logger = target();
+        if (logger.isInfoEnabled())
+            dispatcher.publish(logger, LogLevel.INFO, format, new Object[] {arg}, null);
+    }
+
+    @Override
+    public void info(String format, Object arg1, Object arg2) {
+        org.slf4j.Logger logger = target();
+        if (logger.isInfoEnabled())
+            dispatcher.publish(logger, LogLevel.INFO, format, new Object[] {arg1, arg2}, null);
+    }
+
+    @Override
+    public void info(String format, Object... arguments) {
+        org.slf4j.Logger logger = target();
+        if (logger.isInfoEnabled())
+            dispatcher.publish(logger, LogLevel.INFO, format, arguments, null);
+    }
+
+    @Override
+    public void info(String msg, Throwable t) {
+        org.slf4j.Logger logger = target();
+        if (logger.isInfoEnabled())
+            dispatcher.publish(logger, LogLevel.INFO, msg, null, t);
+    }
+
+    @Override
+    public boolean isInfoEnabled(Marker marker) {
+        return target().isInfoEnabled(marker);
+    }
+
+    @Override
+    public void info(Marker marker, String msg) {
+        target().info(marker, msg);
+    }
+
+    @Override
+    public void info(Marker marker, String format, Object arg) {
+        target().info(marker, format, arg);
+    }
+
+    @Override
+    public void info(Marker marker, String format, Object arg1, Object arg2) {
+        target().info(marker, format, arg1, arg2);
+    }
+
+    @Override
+    public void info(Marker marker, String format, Object... arguments) {
+        target().info(marker, format, arguments);
+    }
+
+    @Override
+    public void info(Marker marker, String msg, Throwable t) {
+        target().info(marker, msg, t);
+    }
+
+    @Override
+    public boolean isWarnEnabled() {
+        return target().isWarnEnabled();
+    }
+
+    @Override
+    public void warn(String msg) {
+        org.slf4j.Logger logger = target();
+        if (logger.isWarnEnabled())
+            dispatcher.publish(logger, LogLevel.WARN, msg, null, null);
+    }
+
+    @Override
+    public void warn(String format, Object arg) {
+        org.slf4j.Logger logger = target();
+        if (logger.isWarnEnabled())
+            dispatcher.publish(logger, LogLevel.WARN, format, new Object[] {arg}, null);
+    }
+
+    @Override
+    public void warn(String format, Object arg1, Object arg2) {
+        org.slf4j.Logger logger = target();
+        if (logger.isWarnEnabled())
+            dispatcher.publish(logger, LogLevel.WARN, format, new Object[] {arg1, arg2}, null);
+    }
+
+    @Override
+    public void warn(String format, Object... arguments) {
+        org.slf4j.Logger logger = target();
+        if (logger.isWarnEnabled())
+            dispatcher.publish(logger, LogLevel.WARN, format, arguments, null);
+    }
+
+    @Override
+    public void warn(String msg, Throwable t) {
+        org.slf4j.Logger logger = target();
+        if (logger.isWarnEnabled())
+            dispatcher.publish(logger, LogLevel.WARN, msg, null, t);
+    }
+
+    @Override
+    public boolean isWarnEnabled(Marker marker) {
+        return target().isWarnEnabled(marker);
+    }
+
+    @Override
+    public void warn(Marker marker, String msg) {
+        target().warn(marker, msg);
+    }
+
+    @Override
+    public void warn(Marker marker, String format, Object arg) {
+        target().warn(marker, format, arg);
+    }
+
+    @Override
+    public void warn(Marker marker, String format, Object arg1, Object arg2) {
+        target().warn(marker, format, arg1, arg2);
+    }
+
+    @Override
+    public void warn(Marker marker, String format, Object... arguments) {
+        target().warn(marker, format, arguments);
+    }
+
+    @Override
+    public void warn(Marker marker, String msg, Throwable t) {
+        target().warn(marker, msg, t);
+    }
+
+    @Override
+    public boolean isErrorEnabled() {
+        return target().isErrorEnabled();
+    }
+
+    @Override
+    public void error(String msg) {
+        org.slf4j.Logger logger = target();
+        if (logger.isErrorEnabled())
+            dispatcher.publish(logger, LogLevel.ERROR, msg, null, null);
+    }
+
+    @Override
+    public void error(String format, Object arg) {
+        org.slf4j.Logger logger = target();
+        if (logger.isErrorEnabled())
+            dispatcher.publish(logger, LogLevel.ERROR, format, new Object[] {arg}, null);
+    }
+
+    @Override
+    public void error(String format, Object arg1, Object arg2) {
+        org.slf4j.Logger logger = target();
+        if (logger.isErrorEnabled())
+            dispatcher.publish(logger, LogLevel.ERROR, format, new Object[] {arg1, arg2}, null);
+    }
+
+    @Override
+    public void error(String format, Object... arguments) {
+        org.slf4j.Logger logger = target();
+        if (logger.isErrorEnabled())
+            dispatcher.publish(logger, LogLevel.ERROR, format, arguments, null);
+    }
+
+    @Override
+    public void error(String msg, Throwable t) {
+        org.slf4j.Logger logger = target();
+        if (logger.isErrorEnabled())
+            dispatcher.publish(logger, LogLevel.ERROR, msg, null, t);
+    }
+
+    @Override
+    public boolean isErrorEnabled(Marker marker) {
+        return target().isErrorEnabled(marker);
+    }
+
+    @Override
+    public void error(Marker marker, String msg) {
+        target().error(marker, msg);
+    }
+
+    @Override
+    public void error(Marker marker, String format, Object arg) {
+        target().error(marker, format, arg);
+    }
+
+    @Override
+    public void error(Marker marker, String format, Object arg1, Object arg2) {
+        target().error(marker, format, arg1, arg2);
+    }
+
+    @Override
+    public void error(Marker marker, String format, Object... arguments) {
+        target().error(marker, format, arguments);
+    }
+
+    @Override
+    public void error(Marker marker, String msg, Throwable t) {
+        target().error(marker, msg, t);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+Copyright 2015 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package net.e6tech.elements.common.logging;
+
+/**
+ * Stands in for the caller's location as a log argument.  The stack is captured on the calling thread only once the
+ * event is known to be written: AsyncLogDispatcher captures it after claiming a slot, so disabled and dropped
+ * events pay nothing.  Resolving the stack, which is the expensive part, happens when the message is formatted.
+ * With AsyncLogger that is on the background thread.
+ *
+ * The caller is the frame after the last frame of a skipped class.  The logging classes in this package
+ * are always skipped.
+ *
+ * Created by futeh.
+ */
+class CallerLocation {
+    private static final String[] LOGGING_CLASSES = {
+            CallerLocation.class.getName(),
+            AsyncLogDispatcher.class.getName(),
+            AsyncLogger.class.getName(),
+            LogHandler.class.getName(),
+            Slf4jLogger.class.getName()
+    };
+
+    private final String[] skipClasses;
+    private volatile Throwable capture;
+
+    CallerLocation(String ... skipClasses) {
+        this.skipClasses = skipClasses;
+    }
+
+    // called on the logging thread.
+    void capture() {
+        if (capture == null)
+            capture = new Throwable();
+    }
+
+    boolean isCaptured() {
+        return capture != null;
+    }
+
+    private boolean skip(String className) {
+        for (String s : LOGGING_CLASSES)
+            if (s.equals(className))
+                return true;
+        for (String s : skipClasses)
+            if (s.equals(className))
+                return true;
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        // not captured yet means the message is being formatted on the logging thread.
+        Throwable th = (capture != null) ? capture : new Throwable();
+        StackTraceElement[] trace = th.getStackTrace();
+        int caller = 0;
+        for (int i = 0; i < trace.length; i++) {
+            if (skip(trace[i].getClassName()))
+                caller = i + 1;
+        }
+        if (caller >= trace.length)
+            return "";
+        StackTraceElement element = trace[caller];
+        return element.getClassName() + "." + element.getMethodName()
+                + "(" + element.getFileName() + ":" + element.getLineNumber() + ")";
+    }
+}
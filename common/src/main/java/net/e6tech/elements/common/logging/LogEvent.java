@@ -0,0 +1,48 @@
+/*
+Copyright 2015 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package net.e6tech.elements.common.logging;
+
+/**
+ * A preallocated slot in AsyncLogDispatcher's ring buffer.  Slots are reused, so fields are cleared
+ * once the event has been written.
+ *
+ * Created by futeh.
+ */
+class LogEvent {
+    volatile long sequence = -1L;
+    org.slf4j.Logger logger;
+    LogLevel level;
+    String format;
+    Object[] args;
+    Throwable throwable;
+
+    void set(org.slf4j.Logger logger, LogLevel level, String format, Object[] args, Throwable throwable) {
+        this.logger = logger;
+        this.level = level;
+        this.format = format;
+        this.args = args;
+        this.throwable = throwable;
+    }
+
+    void clear() {
+        logger = null;
+        level = null;
+        format = null;
+        args = null;
+        throwable = null;
+    }
+}
@@ -128,17 +128,8 @@ public class LogHandler implements InvocationHandler {
         }
 
         // if logDir is not configured we should just use consoleLogger.
-        if (ThreadContext.get(LOG_DIR) == null) {
-            if (logDir == null) {
-                if (System.getProperty(LOG_DIR) != null)
-                    logDir = System.getProperty(LOG_DIR);
-                else if (System.getProperty(Logger.logDir) != null)
-                    logDir = System.getProperty(Logger.logDir);
-            }
-            if (logDir == null)
-                return consoleLogger;
-            else ThreadContext.put(LOG_DIR, logDir);
-        }
+        if (!prepareThreadContext())
+            return consoleLogger;
 
         // calling LoggerFactory.getLogger will trigger log4j being initialized.
         if (loggingClass != null)
@@ -150,6 +141,26 @@ public class LogHandler implements InvocationHandler {
         return slf4jLogger;
     }
 
+    /**
+     * Makes sure the current thread's ThreadContext carries logDir, which log4j configurations use to route
+     * output.  Threads that write log events on behalf of others, e.g. AsyncLogDispatcher, call it as well.
+     * @return false if logDir is not configured.
+     */
+    static boolean prepareThreadContext() {
+        if (ThreadContext.get(LOG_DIR) == null) {
+            if (logDir == null) {
+                if (System.getProperty(LOG_DIR) != null)
+                    logDir = System.getProperty(LOG_DIR);
+                else if (System.getProperty(Logger.logDir) != null)
+                    logDir = System.getProperty(Logger.logDir);
+            }
+            if (logDir == null)
+                return false;
+            ThreadContext.put(LOG_DIR, logDir);
+        }
+        return true;
+    }
+
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
         if (method.getDeclaringClass().equals(Rethrowable.class)) {
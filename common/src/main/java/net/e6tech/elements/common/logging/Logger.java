@@ -19,8 +19,6 @@ import net.e6tech.elements.common.util.Rethrowable;
 import net.e6tech.elements.common.reflection.Reflection;
 import org.apache.logging.log4j.ThreadContext;
 
-import java.lang.reflect.Proxy;
-
 /**
  * Created by futeh.
  *
@@ -56,22 +54,29 @@ public interface Logger extends org.slf4j.Logger, ExceptionLogger, Rethrowable {
 
     static Logger getLogger() {
         Class cls = Reflection.getCallingClass();
-        return (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class[]{Logger.class},
-                new LogHandler(cls));
+        return new Slf4jLogger(new LogHandler(cls));
     }
 
     static Logger getLogger(Class cls) {
-        return (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class[] {Logger.class},
-                new LogHandler(cls));
+        return new Slf4jLogger(new LogHandler(cls));
     }
 
     static Logger getLogger(String name) {
-        return (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class[] {Logger.class},
-                new LogHandler(name));
+        return new Slf4jLogger(new LogHandler(name));
+    }
+
+    /**
+     * Returns a Logger whose output is formatted and written by AsyncLogDispatcher's background thread.
+     */
+    static Logger getAsyncLogger(Class cls) {
+        return new Slf4jLogger(new LogHandler(new AsyncLogger(new LogHandler(cls))));
+    }
+
+    static Logger getAsyncLogger(String name) {
+        return new Slf4jLogger(new LogHandler(new AsyncLogger(new LogHandler(name))));
     }
 
     static Logger nullLogger() {
-        return (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class[] {Logger.class},
-                new LogHandler(new NullLogger()));
+        return new Slf4jLogger(new LogHandler(new NullLogger()));
     }
 }
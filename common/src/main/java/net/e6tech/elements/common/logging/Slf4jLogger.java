@@ -0,0 +1,401 @@
+/*
+Copyright 2015 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package net.e6tech.elements.common.logging;
+
+import net.e6tech.elements.common.util.SystemException;
+import org.slf4j.Marker;
+
+/**
+ * A Logger that calls slf4j directly instead of going through a dynamic proxy.  The slf4j logger is still
+ * resolved lazily by LogHandler so that log4j is not initialized before it has been configured; once resolved,
+ * each call costs a field read plus the slf4j call itself.
+ *
+ * Created by futeh.
+ */
+@SuppressWarnings({"squid:S106", "squid:MethodCyclomaticComplexity"}) // we need to use System.out
+public final class Slf4jLogger implements Logger {
+
+    private final LogHandler handler;
+    private final LogLevel level;
+
+    Slf4jLogger(LogHandler handler) {
+        this(handler, LogLevel.ERROR);
+    }
+
+    Slf4jLogger(LogHandler handler, LogLevel level) {
+        this.handler = handler;
+        this.level = level;
+    }
+
+    private org.slf4j.Logger delegate() {
+        return handler.getLogger();
+    }
+
+    @Override
+    public Logger exceptionLogger(LogLevel level) {
+        return new Slf4jLogger(handler, level);
+    }
+
+    @Override
+    public SystemException systemException(String msg, Throwable th) {
+        SystemException t = Logger.super.systemException(msg, th);
+        log(msg, th);
+        return t;
+    }
+
+    @Override
+    public <T extends Throwable> T exception(Class<T> exceptionClass, String msg, Throwable e) {
+        T t = Logger.super.exception(exceptionClass, msg, e);
+        log(msg, e);
+        return t;
+    }
+
+    private void log(String msg, Throwable e) {
+        org.slf4j.Logger logger = delegate();
+        if (logger == null) {
+            System.out.println(msg);
+            if (e != null)
+                e.printStackTrace(System.out);
+            return;
+        }
+        switch (level) {
+            case FATAL:
+            case ERROR:
+                logger.error(msg, e);
+                break;
+            case WARN:
+                logger.warn(msg, e);
+                break;
+            case INFO:
+                logger.info(msg, e);
+                break;
+            case DEBUG:
+                logger.debug(msg, e);
+                break;
+            case TRACE:
+                logger.trace(msg, e);
+                break;
+            default:
+                logger.warn(msg, e);
+                break;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return delegate().getName();
+    }
+
+    @Override
+    public boolean isTraceEnabled() {
+        return delegate().isTraceEnabled();
+    }
+
+    @Override
+    public void trace(String msg) {
+        delegate().trace(msg);
+    }
+
+    @Override
+    public void trace(String format, Object arg) {
+        delegate().trace(format, arg);
+    }
+
+    @Override
+    public void trace(String format, Object arg1, Object arg2) {
+        delegate().trace(format, arg1, arg2);
+    }
+
+    @Override
+    public void trace(String format, Object... arguments) {
+        delegate().trace(format, arguments);
+    }
+
+    @Override
+    public void trace(String msg, Throwable t) {
+        delegate().trace(msg, t);
+    }
+
+    @Override
+    public boolean isTraceEnabled(Marker marker) {
+        return delegate().isTraceEnabled(marker);
+    }
+
+    @Override
+    public void trace(Marker marker, String msg) {
+        delegate().trace(marker, msg);
+    }
+
+    @Override
+    public void trace(Marker marker, String format, Object arg) {
+        delegate().trace(marker, format, arg);
+    }
+
+    @Override
+    public void trace(Marker marker, String format, Object arg1, Object arg2) {
+        delegate().trace(marker, format, arg1, arg2);
+    }
+
+    @Override
+    public void trace(Marker marker, String format, Object... arguments) {
+        delegate().trace(marker, format, arguments);
+    }
+
+    @Override
+    public void trace(Marker marker, String msg, Throwable t) {
+        delegate().trace(marker, msg, t);
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return delegate().isDebugEnabled();
+    }
+
+    @Override
+    public void debug(String msg) {
+        delegate().debug(msg);
+    }
+
+    @Override
+    public void debug(String format, Object arg) {
+        delegate().debug(format, arg);
+    }
+
+    @Override
+    public void debug(String format, Object arg1, Object arg2) {
+        delegate().debug(format, arg1, arg2);
+    }
+
+    @Override
+    public void debug(String format, Object... arguments) {
+        delegate().debug(format, arguments);
+    }
+
+    @Override
+    public void debug(String msg, Throwable t) {
+        delegate().debug(msg, t);
+    }
+
+    @Override
+    public boolean isDebugEnabled(Marker marker) {
+        return delegate().isDebugEnabled(marker);
+    }
+
+    @Override
+    public void debug(Marker marker, String msg) {
+        delegate().debug(marker, msg);
+    }
+
+    @Override
+    public void debug(Marker marker, String format, Object arg) {
+        delegate().debug(marker, format, arg);
+    }
+
+    @Override
+    public void debug(Marker marker, String format, Object arg1, Object arg2) {
+        delegate().debug(marker, format, arg1, arg2);
+    }
+
+    @Override
+    public void debug(Marker marker, String format, Object... arguments) {
+        delegate().debug(marker, format, arguments);
+    }
+
+    @Override
+    public void debug(Marker marker, String msg, Throwable t) {
+        delegate().debug(marker, msg, t);
+    }
+
+    @Override
+    public boolean isInfoEnabled() {
+        return delegate().isInfoEnabled();
+    }
+
+    @Override
+    public void info(String msg) {
+        delegate().info(msg);
+    }
+
+    @Override
+    public void info(String format, Object arg) {
+        delegate().info(format, arg);
+    }
+
+    @Override
+    public void info(String format, Object arg1, Object arg2) {
+        delegate().info(format, arg1, arg2);
+    }
+
+    @Override
+    public void info(String format, Object... arguments) {
+        delegate().info(format, arguments);
+    }
+
+    @Override
+    public void info(String msg, Throwable t) {
+        delegate().info(msg, t);
+    }
+
+    @Override
+    public boolean isInfoEnabled(Marker marker) {
+        return delegate().isInfoEnabled(marker);
+    }
+
+    @Override
+    public void info(Marker marker, String msg) {
+        delegate().info(marker, msg);
+    }
+
+    @Override
+    public void info(Marker marker, String format, Object arg) {
+        delegate().info(marker, format, arg);
+    }
+
+    @Override
+    public void info(Marker marker, String format, Object arg1, Object arg2) {
+        delegate().info(marker, format, arg1, arg2);
+    }
+
+    @Override
+    public void info(Marker marker, String format, Object... arguments) {
+        delegate().info(marker, format, arguments);
+    }
+
+    @Override
+    public void info(Marker marker, String msg, Throwable t) {
+        delegate().info(marker, msg, t);
+    }
+
+    @Override
+    public boolean isWarnEnabled() {
+        return delegate().isWarnEnabled();
+    }
+
+    @Override
+    public void warn(String msg) {
+        delegate().warn(msg);
+    }
+
+    @Override
+    public void warn(String format, Object arg) {
+        delegate().warn(format, arg);
+    }
+
+    @Override
+    public void warn(String format, Object... arguments) {
+        delegate().warn(format, arguments);
+    }
+
+    @Override
+    public void warn(String format, Object arg1, Object arg2) {
+        delegate().warn(format, arg1, arg2);
+    }
+
+    @Override
+    public void warn(String msg, Throwable t) {
+        delegate().warn(msg, t);
+    }
+
+    @Override
+    public boolean isWarnEnabled(Marker marker) {
+        return delegate().isWarnEnabled(marker);
+    }
+
+    @Override
+    public void warn(Marker marker, String msg) {
+        delegate().warn(marker, msg);
+    }
+
+    @Override
+    public void warn(Marker marker, String format, Object arg) {
+        delegate().warn(marker, format, arg);
+    }
+
+    @Override
+    public void warn(Marker marker, String format, Object arg1, Object arg2) {
+        delegate().warn(marker, format, arg1, arg2);
+    }
+
+    @Override
+    public void warn(Marker marker, String format, Object... arguments) {
+        delegate().warn(marker, format, arguments);
+    }
+
+    @Override
+    public void warn(Marker marker, String msg, Throwable t) {
+        delegate().warn(marker, msg, t);
+    }
+
+    @Override
+    public boolean isErrorEnabled() {
+        return delegate().isErrorEnabled();
+    }
+
+    @Override
+    public void error(String msg) {
+        delegate().error(msg);
+    }
+
+    @Override
+    public void error(String format, Object arg) {
+        delegate().error(format, arg);
+    }
+
+    @Override
+    public void error(String format, Object arg1, Object arg2) {
+        delegate().error(format, arg1, arg2);
+    }
+
+    @Override
+    public void error(String format, Object... arguments) {
+        delegate().error(format, arguments);
+    }
+
+    @Override
+    public void error(String msg, Throwable t) {
+        delegate().error(msg, t);
+    }
+
+    @Override
+    public boolean isErrorEnabled(Marker marker) {
+        return delegate().isErrorEnabled(marker);
+    }
+
+    @Override
+    public void error(Marker marker, String msg) {
+        delegate().error(marker, msg);
+    }
+
+    @Override
+    public void error(Marker marker, String format, Object arg) {
+        delegate().error(marker, format, arg);
+    }
+
+    @Override
+    public void error(Marker marker, String format, Object arg1, Object arg2) {
+        delegate().error(marker, format, arg1, arg2);
+    }
+
+    @Override
+    public void error(Marker marker, String format, Object... arguments) {
+        delegate().error(marker, format, arguments);
+    }
+
+    @Override
+    public void error(Marker marker, String msg, Throwable t) {
+        delegate().error(marker, msg, t);
+    }
+}
@@ -20,6 +20,8 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * This class is not thread safe
@@ -33,6 +35,8 @@ public class TimedLogger {
     private static String regex;
     private static Stack<StringBuilder> builders = new Stack<>();
     private static long defaultTimeout = 50L;
+    private static boolean async = false;
+    private static ConcurrentMap<String, Logger> loggers = new ConcurrentHashMap<>();
 
     private long start = System.currentTimeMillis();
     private LogLevel logLevel = LogLevel.DEBUG;
@@ -41,7 +45,7 @@ public class TimedLogger {
     private long timeout = defaultTimeout;
 
     public TimedLogger(String name) {
-        logger = Logger.getLogger(name);
+        logger = logger(name);
     }
 
     /**
@@ -68,7 +72,13 @@ public class TimedLogger {
      * Constructs a TimedLogger using the default logger named TimedLogger
      */
     public TimedLogger() {
-        logger = Logger.getLogger("TimedLogger");
+        logger = logger("TimedLogger");
+
+        // nothing can match, so don't bother walking the stack.
+        if (regex == null && includes.isEmpty()) {
+            shouldLog = false;
+            return;
+        }
 
         Throwable th = new Throwable();
         StackTraceElement[] trace = th.getStackTrace();
@@ -102,6 +112,24 @@ public class TimedLogger {
             computeLogging();
     }
 
+    private static Logger logger(String name) {
+        if (async)
+            return loggers.computeIfAbsent("async:" + name, k -> Logger.getAsyncLogger(name));
+        return loggers.computeIfAbsent(name, Logger::getLogger);
+    }
+
+    public static boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * When true, messages are formatted and written by AsyncLogDispatcher and the caller's location is resolved
+     * on its thread, so the timed thread only pays for capturing the stack.
+     */
+    public static void setAsync(boolean async) {
+        TimedLogger.async = async;
+    }
+
     public static void setRegex(String pattern) {
         regex = pattern;
     }
@@ -120,6 +148,13 @@ public class TimedLogger {
         }
     }
 
+    public static void removeIncludes(Class ... classes) {
+        if (classes != null) {
+            for (Class cls : classes)
+                includes.remove(cls.getName());
+        }
+    }
+
     public static long getDefaultTimeout() {
         return defaultTimeout;
     }
@@ -198,8 +233,14 @@ public class TimedLogger {
         if (!shouldLog)
             return this;
 
-        StringBuilder builder = checkout();
         Thread thread = Thread.currentThread();
+        if (async) {
+            CallerLocation caller = new CallerLocation(TimedLogger.class.getName(), getClass().getName());
+            logAsync("Thread[{}] {}: {} {}ms", thread.getName(), caller, message, duration);
+            return this;
+        }
+
+        StringBuilder builder = checkout();
         builder.append("Thread[").append(thread.getName()).append("] ");
         getCallerInfo(builder);
         builder.append(": ").append(message).append(" ").append(duration).append("ms");
@@ -228,6 +269,29 @@ public class TimedLogger {
         return this;
     }
 
+    private void logAsync(String format, Object ... args) {
+        switch (logLevel) {
+            case FATAL:
+            case ERROR:
+                logger.error(format, args);
+                break;
+            case WARN:
+                logger.warn(format, args);
+                break;
+            case INFO:
+                logger.info(format, args);
+                break;
+            case DEBUG:
+                logger.debug(format, args);
+                break;
+            case TRACE:
+                logger.trace(format, args);
+                break;
+            default:
+                break;
+        }
+    }
+
     public long duration() {
         return System.currentTimeMillis() - start;
     }
@@ -300,6 +300,12 @@ public class Atom implements Map<String, Object> {
         }
 
         public void run() {
+            if (resourceManager.isParallelStartup()) {
+                StartupScheduler scheduler = resourceManager.getStartupScheduler();
+                startables.forEach((key, startable) -> scheduler.submit(name, key, startable));
+                return;
+            }
+
             try {
                 for (Map.Entry<String, Startable> entry : startables.entrySet()) {
                     Startable startable = entry.getValue();
@@ -80,6 +80,10 @@ public class BeanLifecycle {
         return startedBeans.containsValue(bean);
     }
 
+    public Object getStartedBean(String beanName) {
+        return startedBeans.get(beanName);
+    }
+
     public void fireBeanLaunched(String beanName, Object bean) {
         fireBeanEvent(beanName, bean, BEAN_LAUNCHED);
         launchedBeans.put(beanName, bean);
@@ -53,10 +53,18 @@ public class Configuration extends LinkedHashMap<String, Object> {
     private static final String NO_SUCH_PROPERTY = ": No such property ";
     private static final String BEGIN = "${";
     private static final String END = "}";
-    private static final YamlConstructor yamlConstructor = new YamlConstructor();
+    // Yaml instances are not thread safe; one per thread avoids constructing a parser for each lookup.
+    private static final ThreadLocal<Yaml> yamls = ThreadLocal.withInitial(() -> new Yaml(new YamlConstructor()));
+    private static final ClassValue<BeanProperties> beanProperties = new ClassValue<BeanProperties>() {
+        @Override
+        protected BeanProperties computeValue(Class<?> type) {
+            return new BeanProperties(type);
+        }
+    };
 
     private Properties properties = new Properties();
     private Map<String, List<Reference>> references = new HashMap<>();  // reformatMap() for description of usage
+    private transient Map<String, List<String>> keyIndex; // prefix -> keys starting with prefix, rebuilt when keys change
 
     public Configuration() {
     }
@@ -92,7 +100,62 @@ public class Configuration extends LinkedHashMap<String, Object> {
     }
 
     protected static Yaml newYaml() {
-        return new Yaml(yamlConstructor);
+        return yamls.get();
+    }
+
+    // returns keys, in insertion order, that start with prefix.
+    private synchronized List<String> keysWithPrefix(String prefix) {
+        if (keyIndex == null)
+            keyIndex = new HashMap<>();
+        return keyIndex.computeIfAbsent(prefix, p -> {
+            List<String> list = new ArrayList<>();
+            for (String key : keySet()) {
+                if (key.startsWith(p))
+                    list.add(key);
+            }
+            return Collections.unmodifiableList(list);
+        });
+    }
+
+    private synchronized void invalidateKeys() {
+        keyIndex = null;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (!containsKey(key))
+            invalidateKeys();
+        return super.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> map) {
+        invalidateKeys();
+        super.putAll(map);
+    }
+
+    @Override
+    public Object putIfAbsent(String key, Object value) {
+        invalidateKeys();
+        return super.putIfAbsent(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        invalidateKeys();
+        return super.remove(key);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        invalidateKeys();
+        return super.remove(key, value);
+    }
+
+    @Override
+    public void clear() {
+        invalidateKeys();
+        super.clear();
     }
 
     public Configuration loadFile(String file) throws IOException {
@@ -283,14 +346,12 @@ public class Configuration extends LinkedHashMap<String, Object> {
 
             if (object instanceof Map) {
                 Map map = (Map) object;
-                for (String key : keySet()) {
-                    if ("".equals(prefix) || key.startsWith(prefix)) {
-                        String subkey = key.substring(prefix.length());
-                        if (object instanceof Properties)
-                            map.put(subkey, get(key).toString());
-                        else
-                            map.put(subkey, get(key));
-                    }
+                for (String key : keysWithPrefix(prefix)) {
+                    String subkey = key.substring(prefix.length());
+                    if (object instanceof Properties)
+                        map.put(subkey, get(key).toString());
+                    else
+                        map.put(subkey, get(key));
                 }
 
                 if (resolver != null) {
@@ -308,31 +369,22 @@ public class Configuration extends LinkedHashMap<String, Object> {
             }
 
             // getting setters and getter from the object
-            info = Introspector.getBeanInfo(object.getClass());
+            BeanProperties bean = beanProperties.get(object.getClass());
             Map<String, PropertyDescriptor> setters = new LinkedHashMap<>();
-            Map<String, PropertyDescriptor> getters = new LinkedHashMap<>();
-            for (PropertyDescriptor desc : info.getPropertyDescriptors()) {
-                if (desc.getWriteMethod() != null) {
-                    String key = prefix + desc.getName();
-                    Object value = get(key);
-                    if (value != null)
-                        setters.put(key, desc);
-                }
-
-                if (desc.getReadMethod() != null) {
-                    String key = prefix + desc.getName();
-                    getters.put(key, desc);
-                }
+            for (PropertyDescriptor desc : bean.setters.values()) {
+                String key = prefix + desc.getName();
+                Object value = get(key);
+                if (value != null)
+                    setters.put(key, desc);
             }
 
             // getting a list of relevant properties from Configuration
+            List<String> keys = keysWithPrefix(prefix);
             Set<String> applicableKeys = new HashSet<>();
-            for (String key : keySet()) {
-                if (key.startsWith(prefix)) {
-                    int index = key.indexOf('.', prefix.length());
-                    if (index < 0)
-                        applicableKeys.add(key); // if index > 0, key includes subfields
-                }
+            for (String key : keys) {
+                int index = key.indexOf('.', prefix.length());
+                if (index < 0)
+                    applicableKeys.add(key); // if index > 0, key includes subfields
             }
 
             // Setting object's property
@@ -352,50 +404,48 @@ public class Configuration extends LinkedHashMap<String, Object> {
             }
 
             // recurse into fields
-            for (String key : keySet()) {
-                if ("".equals(prefix) || key.startsWith(prefix)) {
-                    boolean shouldRecurse = true;
-                    String subkey = key.substring(prefix.length());
-                    String fieldKey;
-                    if (subkey.contains(".")) {
-                        fieldKey = subkey.substring(0, subkey.indexOf('.'));
-                    } else {
-                        fieldKey = subkey;
-                        Object val = get(key);
-                        if (!(val instanceof Map))
-                            shouldRecurse = false;
-                    }
-                    PropertyDescriptor desc = getters.get(prefix + fieldKey);
-                    if (desc != null && desc.getReadMethod() != null) {
-                        Object val = desc.getReadMethod().invoke(object);
-                        if (shouldRecurse) {
-                            Class fieldClass = desc.getReadMethod().getReturnType();
-                            // trying to create a map or properties instance
-                            if (val == null && Map.class.isAssignableFrom(fieldClass) && desc.getWriteMethod() != null) {
-                                if (Map.class.isAssignableFrom(Properties.class)) {
-                                    val = new Properties();
-                                    desc.getWriteMethod().invoke(object, val);
-                                } else {
+            for (String key : keys) {
+                boolean shouldRecurse = true;
+                String subkey = key.substring(prefix.length());
+                String fieldKey;
+                if (subkey.contains(".")) {
+                    fieldKey = subkey.substring(0, subkey.indexOf('.'));
+                } else {
+                    fieldKey = subkey;
+                    Object val = get(key);
+                    if (!(val instanceof Map))
+                        shouldRecurse = false;
+                }
+                PropertyDescriptor desc = bean.getters.get(fieldKey);
+                if (desc != null) {
+                    Object val = desc.getReadMethod().invoke(object);
+                    if (shouldRecurse) {
+                        Class fieldClass = desc.getReadMethod().getReturnType();
+                        // trying to create a map or properties instance
+                        if (val == null && Map.class.isAssignableFrom(fieldClass) && desc.getWriteMethod() != null) {
+                            if (Map.class.isAssignableFrom(Properties.class)) {
+                                val = new Properties();
+                                desc.getWriteMethod().invoke(object, val);
+                            } else {
+                                try {
+                                    java.lang.reflect.Constructor constructor = fieldClass.getConstructor();
+                                    val = constructor.newInstance();
+                                } catch (Exception th) {
+                                    Logger.suppress(th);
+                                    val = new LinkedHashMap<>();
+                                }
+                                if (val != null) {
                                     try {
-                                        java.lang.reflect.Constructor constructor = fieldClass.getConstructor();
-                                        val = constructor.newInstance();
+                                        desc.getWriteMethod().invoke(object, val);
                                     } catch (Exception th) {
                                         Logger.suppress(th);
-                                        val = new LinkedHashMap<>();
-                                    }
-                                    if (val != null) {
-                                        try {
-                                            desc.getWriteMethod().invoke(object, val);
-                                        } catch (Exception th) {
-                                            Logger.suppress(th);
-                                            val = null;
-                                        }
+                                        val = null;
                                     }
                                 }
                             }
-                            if (val != null)
-                                configure(val, prefix + fieldKey, resolver, listener);
                         }
+                        if (val != null)
+                            configure(val, prefix + fieldKey, resolver, listener);
                     }
                 }
             }
@@ -434,10 +484,10 @@ public class Configuration extends LinkedHashMap<String, Object> {
                             if (object instanceof Map) {
                                 ((Map) object).put(reference.key, resolver.resolve(reference.lookup));
                             } else {
-                                PropertyDescriptor desc = new PropertyDescriptor(reference.key, object.getClass());
-                                if (desc != null && desc.getWriteMethod() != null) {
-                                    desc.getWriteMethod().invoke(object, resolver.resolve(reference.lookup));
-                                }
+                                PropertyDescriptor desc = beanProperties.get(object.getClass()).setters.get(reference.key);
+                                if (desc == null)
+                                    throw new IntrospectionException("Method not found: " + reference.key);
+                                desc.getWriteMethod().invoke(object, resolver.resolve(reference.lookup));
                             }
                         }
                     } else if (entry.getKey().contains(prefix)) {
@@ -450,12 +500,12 @@ public class Configuration extends LinkedHashMap<String, Object> {
                             fieldKey = subkey;
                         }
 
-                        PropertyDescriptor desc = new PropertyDescriptor(fieldKey, object.getClass());
-                        if (desc != null && desc.getReadMethod() != null) {
-                            Object val = desc.getReadMethod().invoke(object);
-                            if (val != null) {
-                                resolveReferences(val, prefix + fieldKey, resolver);
-                            }
+                        PropertyDescriptor desc = beanProperties.get(object.getClass()).getters.get(fieldKey);
+                        if (desc == null)
+                            throw new IntrospectionException("Method not found: " + fieldKey);
+                        Object val = desc.getReadMethod().invoke(object);
+                        if (val != null) {
+                            resolveReferences(val, prefix + fieldKey, resolver);
                         }
                     }
                 }
@@ -474,11 +524,10 @@ public class Configuration extends LinkedHashMap<String, Object> {
         applicableKeys.addAll(map.keySet());
 
         try {
-            BeanInfo info = Introspector.getBeanInfo(object.getClass());
-            for (PropertyDescriptor desc : info.getPropertyDescriptors()) {
-                if (desc.getWriteMethod() != null && map.containsKey(desc.getName())) {
-                    String encoding = mapper.writeValueAsString(map.get(desc.getName()));
-                    Object value = mapper.readValue(encoding, desc.getPropertyType());
+            for (PropertyDescriptor desc : beanProperties.get(object.getClass()).setters.values()) {
+                if (map.containsKey(desc.getName())) {
+                    // convert through a tree, which copies the value, instead of serializing to a string.
+                    Object value = mapper.treeToValue(mapper.valueToTree(map.get(desc.getName())), desc.getPropertyType());
                     if (listener != null)
                         listener.instanceCreated(value, desc.getPropertyType(), value);
                     desc.getWriteMethod().invoke(object, value);
@@ -508,16 +557,12 @@ public class Configuration extends LinkedHashMap<String, Object> {
                         }
                     }
                     if (obj != null) {
-                        try {
-                            PropertyDescriptor desc = new PropertyDescriptor(path[path.length - 1], obj.getClass());
-                            if (desc == null || desc.getWriteMethod() == null)
-                                break;
-                            Object value = mapper.readValue(mapper.writeValueAsString(map.get(key)), desc.getPropertyType());
-                            desc.getWriteMethod().invoke(obj, value);
-                            iterator.remove();
-                        } catch (IntrospectionException ex) {
-                            throw new SystemException(object.getClass().getName() + "." + key + NO_SUCH_PROPERTY + path[path.length - 1], ex);
-                        }
+                        PropertyDescriptor desc = beanProperties.get(obj.getClass()).setters.get(path[path.length - 1]);
+                        if (desc == null)
+                            throw new SystemException(object.getClass().getName() + "." + key + NO_SUCH_PROPERTY + path[path.length - 1]);
+                        Object value = mapper.treeToValue(mapper.valueToTree(map.get(key)), desc.getPropertyType());
+                        desc.getWriteMethod().invoke(obj, value);
+                        iterator.remove();
                     }
                 }
             }
@@ -591,6 +636,26 @@ public class Configuration extends LinkedHashMap<String, Object> {
         }
     }
 
+    // bean properties of a class, computed once per class.
+    private static class BeanProperties {
+        private Map<String, PropertyDescriptor> setters = new LinkedHashMap<>();
+        private Map<String, PropertyDescriptor> getters = new LinkedHashMap<>();
+
+        BeanProperties(Class type) {
+            try {
+                BeanInfo info = Introspector.getBeanInfo(type);
+                for (PropertyDescriptor desc : info.getPropertyDescriptors()) {
+                    if (desc.getWriteMethod() != null)
+                        setters.put(desc.getName(), desc);
+                    if (desc.getReadMethod() != null)
+                        getters.put(desc.getName(), desc);
+                }
+            } catch (IntrospectionException e) {
+                throw new SystemException(e);
+            }
+        }
+    }
+
     private static class YamlConstructor extends Constructor {
 
         public YamlConstructor() {
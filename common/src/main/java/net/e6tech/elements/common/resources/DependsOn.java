@@ -0,0 +1,30 @@
+/*
+Copyright 2017 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package net.e6tech.elements.common.resources;
+
+import java.lang.annotation.*;
+
+/**
+ * Names the beans that must be started before an annotated Startable when startables are
+ * started in parallel.  See StartupScheduler.
+ * Created by futeh.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+public @interface DependsOn {
+    String[] value();
+}
@@ -32,6 +32,9 @@ import org.apache.logging.log4j.ThreadContext;
 import javax.script.ScriptException;
 import java.io.File;
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
@@ -61,7 +64,13 @@ public class ResourceManager extends AbstractScriptShell implements ResourcePool
     private BeanLifecycle beanLifecycle = new BeanLifecycle();
     private PluginManager pluginManager = new PluginManager(this);
     private List<ResourceManagerListener> listeners = new LinkedList<>();
-    private Map<Class, ClassInjectionInfo> injections = Collections.synchronizedMap(new HashMap<>()); // a cache to be used by Resources.
+    private StartupScheduler startupScheduler;
+    private static final ClassValue<ClassInjectionInfo> injections = new ClassValue<ClassInjectionInfo>() { // a cache to be used by Resources.
+        @Override
+        protected ClassInjectionInfo computeValue(Class<?> type) {
+            return new ClassInjectionInfo(type);
+        }
+    };
 
     public ResourceManager() {
         this(new Properties());
@@ -112,6 +121,27 @@ public class ResourceManager extends AbstractScriptShell implements ResourcePool
         getScripting().put("pluginManager", pluginManager);
     }
 
+    public boolean isParallelStartup() {
+        return Boolean.parseBoolean(getProperties().getProperty(StartupScheduler.PARALLEL, "false"));
+    }
+
+    public synchronized StartupScheduler getStartupScheduler() {
+        if (startupScheduler == null) {
+            startupScheduler = new StartupScheduler(this);
+            String threads = getProperties().getProperty(StartupScheduler.THREADS);
+            if (threads != null)
+                startupScheduler.setThreads(Integer.parseInt(threads.trim()));
+        }
+        return startupScheduler;
+    }
+
+    @Override
+    public void runAfterIfNotLoading() {
+        super.runAfterIfNotLoading();
+        if (!isLoading() && startupScheduler != null)
+            startupScheduler.await();
+    }
+
     public void addListener(ResourceManagerListener listener) {
         listeners.add(listener);
     }
@@ -210,7 +240,10 @@ public class ResourceManager extends AbstractScriptShell implements ResourcePool
 
     @Override
     protected void onLoaded() {
-        // do nothing, clean up is done in onLaunched.  super.onLoaded will remove closures.
+        // wait for startables submitted to StartupScheduler.
+        if (startupScheduler != null)
+            startupScheduler.await();
+        // do nothing else, clean up is done in onLaunched.  super.onLoaded will remove closures.
     }
 
     public <T> T getAtomResource(String atomName, String resourceName) {
@@ -647,22 +680,48 @@ public class ResourceManager extends AbstractScriptShell implements ResourcePool
         });
     }
 
-    Map<Class, ClassInjectionInfo> getInjections() {
-        return injections;
+    ClassInjectionInfo getInjectionInfo(Class cls) {
+        return injections.get(cls);
     }
 
+    /*
+     * Getters for fields annotated with, or whose types are annotated with, Injectable.
+     */
     static class ClassInjectionInfo {
-        private static final List<Field> emptyFields = Collections.unmodifiableList(new ArrayList<>());
-        private List<Field> injectableFields = emptyFields;
-
-        void addInjectableField(Field field) {
-            if (injectableFields == emptyFields)
-                injectableFields = new ArrayList<>();
-            injectableFields.add(field);
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+        private static final MethodHandle[] emptyGetters = new MethodHandle[0];
+        private MethodHandle[] injectableGetters = emptyGetters;
+
+        ClassInjectionInfo(Class type) {
+            Package p = type.getPackage();
+            if (p != null
+                    && (p.getName().startsWith("java.")
+                    || p.getName().startsWith("javax.")))
+                return;
+
+            List<MethodHandle> getters = new ArrayList<>();
+            Class cls = type;
+            while (cls != null && !cls.equals(Object.class)) {
+                for (Field f : cls.getDeclaredFields()) {
+                    if (f.getAnnotation(Injectable.class) != null
+                            || f.getType().getAnnotation(Injectable.class) != null) {
+                        f.setAccessible(true);
+                        try {
+                            getters.add(MethodHandles.lookup().unreflectGetter(f).asType(GETTER_TYPE));
+                        } catch (IllegalAccessException e) {
+                            throw new SystemException(e);
+                        }
+                    }
+                }
+                cls = cls.getSuperclass();
+            }
+            if (!getters.isEmpty())
+                injectableGetters = getters.toArray(new MethodHandle[getters.size()]);
         }
 
-        List<Field> getInjectableFields() {
-            return injectableFields;
+        // each getter is of type (Object)Object
+        MethodHandle[] getInjectableGetters() {
+            return injectableGetters;
         }
     }
 }
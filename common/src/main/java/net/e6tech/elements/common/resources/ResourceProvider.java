@@ -33,6 +33,14 @@ public interface ResourceProvider {
         });
     }
 
+    /**
+     * Returns true if onCommit does not depend on the commits of other providers.  When a Resources is
+     * configured with Resources.PARALLEL_COMMIT, onCommit of independent providers runs concurrently on
+     * a commit thread and afterCommit is dispatched asynchronously.
+     * @return true if this provider can be committed concurrently with others.
+     */
+    default boolean isIndependent() { return false; }
+
     default void onOpen(Resources resources) {}
     default void onCommit(Resources resources) {}
     default void afterCommit(Resources resources) {}
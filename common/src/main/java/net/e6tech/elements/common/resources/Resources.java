@@ -17,6 +17,7 @@ package net.e6tech.elements.common.resources;
 
 import net.e6tech.elements.common.inject.Inject;
 import net.e6tech.elements.common.inject.Module;
+import net.e6tech.elements.common.inject.spi.InjectorImpl;
 import net.e6tech.elements.common.logging.Logger;
 import net.e6tech.elements.common.reflection.Reflection;
 import net.e6tech.elements.common.resources.plugin.Plugin;
@@ -25,8 +26,9 @@ import net.e6tech.elements.common.resources.plugin.PluginPath;
 import net.e6tech.elements.common.resources.plugin.PluginPaths;
 import net.e6tech.elements.common.util.ExceptionMapper;
 import net.e6tech.elements.common.util.SystemException;
+import net.e6tech.elements.common.util.concurrent.ThreadPool;
 
-import java.lang.reflect.Field;
+import java.lang.invoke.MethodHandle;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.function.Consumer;
@@ -49,6 +51,15 @@ public class Resources implements AutoCloseable, ResourcePool {
 
     private static Logger logger = Logger.getLogger(Resources.class);
     private static final String ABORT_DUE_TO_EXCEPTION = "Aborting due to exception";
+    private static final String COMMIT_THREAD_POOL = "Resources-commit";
+
+    /**
+     * Configuration key.  When set to Boolean.TRUE, independent ResourceProviders are committed concurrently.
+     * Commits are not atomic across providers: if another provider fails, independent providers that already
+     * committed are neither rolled back nor committed again by the replay, leaving a partial commit.  Their
+     * afterCommit and onClosed run on the commit thread pool after commit() returns.
+     */
+    public static final String PARALLEL_COMMIT = "parallelCommit";
 
     private ResourceManager resourceManager;
 
@@ -60,6 +71,10 @@ public class Resources implements AutoCloseable, ResourcePool {
     protected Configurator initialConfigurator;
     private Consumer<? extends Resources> preOpen;
     private List<Replay<? extends Resources, ?>> replays = new LinkedList<>();
+    // independent providers committed by parallelCommit so that a replay does not commit them again.
+    private Set<ResourceProvider> committedProviders = Collections.newSetFromMap(new IdentityHashMap<>());
+    // independent providers whose afterCommit, followed by onClosed, runs asynchronously; skipped by cleanup.
+    private Set<ResourceProvider> closingProviders = Collections.newSetFromMap(new IdentityHashMap<>());
     Object lastResult;
     boolean submitting = false;
 
@@ -261,55 +276,49 @@ public class Resources implements AutoCloseable, ResourcePool {
 
 
     public <T> T inject(T object) {
-        return inject(object, new HashSet<>());
+        return inject(object, null);
     }
 
-    private <T> T inject(T object, Set<Integer> seen) {
+    /**
+     * Returns false if inject would leave instances of cls untouched, i.e. cls has no injection points,
+     * no Injectable fields and is not an InjectionListener.  Callers injecting large numbers of objects,
+     * e.g. entities, can use it to skip injection altogether.
+     */
+    public boolean isInjectable(Class cls) {
+        return InjectionListener.class.isAssignableFrom(cls)
+                || InjectorImpl.hasInjectionPoints(cls)
+                || resourceManager.getInjectionInfo(cls).getInjectableGetters().length > 0;
+    }
+
+    @SuppressWarnings("squid:S00112")
+    private <T> T inject(T object, Set<Object> seen) {
         if (object == null)
             return null;
-        // the commented out line indicates that we cannot use seen.contains(object)
-        // because it is being injected and its hashCode may not be ready to be computed
-        // so that the object should not be added to seen.
-        // commented out line -- if seen.contains(System.identityHashCode(object)) && seen.contains(object)
-        // as a compromise, we use identifyHashCode
-        if (seen.contains(System.identityHashCode(object)))
+        // seen is an identity set because object is being injected and its hashCode may not be
+        // ready to be computed.
+        if (seen != null && seen.contains(object))
             return object;  // already been injected.
         T injected = state.inject(this, object);
-        seen.add(System.identityHashCode(object));
-        // seen.add(object);  object may not be initialized fully to compute hashCode.
-
-        ResourceManager.ClassInjectionInfo info = resourceManager.getInjections().get(object.getClass());
-
-        if (info == null) {
-            info = new ResourceManager.ClassInjectionInfo();
-            Class cls = object.getClass();
-            Package p = cls.getPackage();
-            if (p == null
-                    || (!p.getName().startsWith("java.")
-                    && !p.getName().startsWith("javax."))) {
-                while (cls != null && !cls.equals(Object.class)) {
-                    for (Field f : cls.getDeclaredFields()) {
-                        if (f.getAnnotation(Injectable.class) != null
-                                || f.getType().getAnnotation(Injectable.class) != null) {
-                            f.setAccessible(true);
-                            info.addInjectableField(f);
-                        }
-                    }
-                    cls = cls.getSuperclass();
-                }
-            }
-            resourceManager.getInjections().put(object.getClass(), info);
-        }
 
-        for (Field f : info.getInjectableFields()) {
+        MethodHandle[] getters = resourceManager.getInjectionInfo(object.getClass()).getInjectableGetters();
+        Set<Object> visited = seen;
+        if (visited == null && getters.length > 0)
+            visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (visited != null)
+            visited.add(object);
+
+        for (MethodHandle getter : getters) {
+            Object injectField;
             try {
-                Object injectField = f.get(object);
-                if (injectField != null) {
-                    inject(injectField, seen);
-                }
-            } catch (IllegalAccessException e) {
+                injectField = (Object) getter.invokeExact((Object) object);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
                 throw new SystemException(e);
             }
+            if (injectField != null) {
+                inject(injectField, visited);
+            }
         }
         return injected;
     }
@@ -451,6 +460,8 @@ public class Resources implements AutoCloseable, ResourcePool {
         } catch (Exception th) {
             ret = replay(th, new Replay<Resources, R>(res -> {return _commit();}));
         } finally {
+            // kept across replays, which abort and reopen, so that independent providers are committed once.
+            committedProviders.clear();
             if (isCommitted()) {
                 // commit successful
                 cleanup();
@@ -469,25 +480,41 @@ public class Resources implements AutoCloseable, ResourcePool {
         if (!isOpen())
             throw new IllegalStateException("Already closed");
 
-        // use index because additional ResourceProviders may be added during the loop.
-        for (int i = 0; i < state.getResourceProviders().size(); i++) {
-            ResourceProvider resourceProvider = state.getResourceProviders().get(i);
-            resourceProvider.onCommit(this);
+        // a replay clears configurator, so check the configuration it was opened with as well.
+        boolean parallel = Boolean.TRUE.equals(configurator.get(PARALLEL_COMMIT))
+                || (initialConfigurator != null && Boolean.TRUE.equals(initialConfigurator.get(PARALLEL_COMMIT)));
+        if (parallel) {
+            parallelCommit();
             if (isAborted()) {
                 return (R) lastResult;
             }
-        }
+        } else {
+            // use index because additional ResourceProviders may be added during the loop.
+            for (int i = 0; i < state.getResourceProviders().size(); i++) {
+                ResourceProvider resourceProvider = state.getResourceProviders().get(i);
+                resourceProvider.onCommit(this);
+                if (isAborted()) {
+                    return (R) lastResult;
+                }
+            }
 
-        for (ResourceProvider p : getExternalResourceProviders()) {
-            p.onCommit(this);
+            for (ResourceProvider p : getExternalResourceProviders()) {
+                p.onCommit(this);
+            }
         }
 
         for (int i = 0; i < state.getResourceProviders().size(); i++) {
             ResourceProvider resourceProvider = state.getResourceProviders().get(i);
-            try {
-                resourceProvider.afterCommit(this);
-            } catch (Exception th) {
-                Logger.suppress(th);
+            if (parallel && resourceProvider.isIndependent()) {
+                // not awaited; the provider is closed by the same task so that cleanup() does not race with it.
+                closingProviders.add(resourceProvider);
+                ThreadPool.cachedThreadPool(COMMIT_THREAD_POOL).execute(() -> afterCommitAndClose(resourceProvider));
+            } else {
+                try {
+                    resourceProvider.afterCommit(this);
+                } catch (Exception th) {
+                    Logger.suppress(th);
+                }
             }
         }
 
@@ -497,6 +524,58 @@ public class Resources implements AutoCloseable, ResourcePool {
         return ret;
     }
 
+    private void afterCommitAndClose(ResourceProvider provider) {
+        try {
+            provider.afterCommit(this);
+        } catch (Exception th) {
+            Logger.suppress(th);
+        }
+        try {
+            provider.onClosed(this);
+        } catch (Exception th) {
+            logger.trace(th.getMessage(), th);
+        }
+    }
+
+    /*
+     * Independent providers are committed on the commit thread pool while the others are committed in order
+     * on the calling thread.  Must be called while holding this monitor; waiting releases it so that
+     * providers may call back into this instance.
+     */
+    private void parallelCommit() {
+        // build the injector now so that providers do not rebuild it concurrently.
+        if (state.isDirty() || state.getInjector() == null)
+            state.createInjector(this);
+
+        ParallelCommit commit = new ParallelCommit();
+        try {
+            for (int i = 0; i < state.getResourceProviders().size(); i++) {
+                ResourceProvider resourceProvider = state.getResourceProviders().get(i);
+                if (resourceProvider.isIndependent()) {
+                    commit.commit(resourceProvider);
+                } else {
+                    resourceProvider.onCommit(this);
+                    if (isAborted()) {
+                        commit.await();
+                        return;
+                    }
+                }
+            }
+
+            for (ResourceProvider p : getExternalResourceProviders()) {
+                if (p.isIndependent())
+                    commit.commit(p);
+                else
+                    p.onCommit(this);
+            }
+        } catch (RuntimeException ex) {
+            // don't let dispatched commits run into the abort that follows.
+            commit.join();
+            throw ex;
+        }
+        commit.await();
+    }
+
     public synchronized void abort() {
         try {
             if (resourceManager == null)
@@ -539,7 +618,8 @@ public class Resources implements AutoCloseable, ResourcePool {
     protected void cleanup() {
         try {
             for (ResourceProvider resourceProvider : state.getResourceProviders()) {
-                resourceProvider.onClosed(this);
+                if (!closingProviders.contains(resourceProvider))
+                    resourceProvider.onClosed(this);
             }
             for (ResourceProvider p : getExternalResourceProviders()) {
                 p.onClosed(this);
@@ -547,6 +627,7 @@ public class Resources implements AutoCloseable, ResourcePool {
         } catch (Exception ex) {
             logger.trace(ex.getMessage(), ex);
         }
+        closingProviders.clear();
         state.cleanup();
         configurator.clear();
         replays.clear();  // cannot be set to null because during replay abort may be called.
@@ -559,6 +640,60 @@ public class Resources implements AutoCloseable, ResourcePool {
         return (T) getInstance(Provision.class);
     }
 
+    private class ParallelCommit {
+        private int pending;
+        private Exception failure;
+
+        void commit(ResourceProvider provider) {
+            if (committedProviders.contains(provider))
+                return;
+            submit(provider, p -> {
+                p.onCommit(Resources.this);
+                synchronized (Resources.this) {
+                    committedProviders.add(p);
+                }
+            });
+        }
+
+        void submit(ResourceProvider provider, Consumer<ResourceProvider> action) {
+            pending++;
+            ThreadPool.cachedThreadPool(COMMIT_THREAD_POOL).execute(() -> {
+                Exception exception = null;
+                try {
+                    action.accept(provider);
+                } catch (Exception ex) {
+                    exception = ex;
+                } finally {
+                    synchronized (Resources.this) {
+                        if (failure == null)
+                            failure = exception;
+                        pending--;
+                        Resources.this.notifyAll();
+                    }
+                }
+            });
+        }
+
+        @SuppressWarnings("squid:S2274")
+        void join() {
+            try {
+                while (pending > 0)
+                    Resources.this.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SystemException(e);
+            }
+        }
+
+        void await() {
+            join();
+            if (failure instanceof RuntimeException)
+                throw (RuntimeException) failure;
+            else if (failure != null)
+                throw new SystemException(failure);
+        }
+    }
+
     private static class Replay<T, R> {
 
         Transactional.ConsumerWithException<T> consumer;
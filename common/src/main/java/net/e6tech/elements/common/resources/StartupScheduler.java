@@ -0,0 +1,320 @@
+/*
+Copyright 2017 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package net.e6tech.elements.common.resources;
+
+import net.e6tech.elements.common.inject.Inject;
+import net.e6tech.elements.common.logging.Logger;
+import net.e6tech.elements.common.util.SystemException;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Starts Startable beans concurrently on a bounded pool.  A bean is started after the beans it depends on,
+ * which are the beans named by its DependsOn annotation and the Startable beans injected into its fields.
+ * Beans are submitted as atoms are processed; await(), called by ResourceManager once the script
+ * has been loaded, resolves dependencies, fails fast on a dependency cycle and starts them on an executor
+ * that lives for the duration of the call.  Enabled by setting the ResourceManager property startup.parallel to true.
+ * Created by futeh.
+ */
+public class StartupScheduler {
+    public static final String PARALLEL = "startup.parallel";
+    public static final String THREADS = "startup.threads";
+    private static Logger logger = Logger.getLogger();
+
+    private ResourceManager resourceManager;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private Map<String, List<Node>> nodes = new HashMap<>();  // beans may share a name
+    private Map<Object, Node> beans = new IdentityHashMap<>();
+    private List<Node> submitted = new ArrayList<>();
+    private List<TimelineEntry> timeline = new ArrayList<>();
+    private long origin;
+
+    public StartupScheduler(ResourceManager resourceManager) {
+        this.resourceManager = resourceManager;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @return entries, ordered by start time, for beans started by the last call to await.
+     */
+    public synchronized List<TimelineEntry> getTimeline() {
+        return Collections.unmodifiableList(new ArrayList<>(timeline));
+    }
+
+    public synchronized void submit(String atom, String name, Startable startable) {
+        if (resourceManager.getBeanLifecycle().isBeanStarted(startable) || beans.containsKey(startable))
+            return;
+        Node node = new Node(name);
+        node.atom = atom;
+        node.bean = startable;
+        node.contextClassLoader = Thread.currentThread().getContextClassLoader();
+        nodes.computeIfAbsent(name, k -> new ArrayList<>()).add(node);
+        beans.put(startable, node);
+        submitted.add(node);
+    }
+
+    /**
+     * Starts submitted beans once all of them are known so that every dependency can be resolved, and waits
+     * for them to finish.
+     */
+    @SuppressWarnings("squid:S1166")
+    public void await() {
+        List<Node> list;
+        synchronized (this) {
+            if (submitted.isEmpty())
+                return;
+            list = new ArrayList<>(submitted);
+            try {
+                for (Node node : list)
+                    node.dependencies = dependencies(node);
+            } finally {
+                submitted.clear();
+                nodes.clear();
+                beans.clear();
+            }
+        }
+        checkCycles(list);
+
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, getClass().getSimpleName() + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        RuntimeException failure = null;
+        try {
+            origin = System.nanoTime();
+            for (Node node : list) {
+                CompletableFuture[] dependencies = node.dependencies.stream().map(n -> n.future).toArray(CompletableFuture[]::new);
+                CompletableFuture.allOf(dependencies)
+                        .whenComplete((v, exception) -> {
+                            if (exception != null)
+                                node.future.completeExceptionally(exception);
+                            else
+                                executor.execute(node::start);
+                        });
+            }
+
+            for (Node node : list) {
+                try {
+                    node.future.join();
+                } catch (CompletionException ex) {
+                    if (failure == null) {
+                        failure = (ex.getCause() instanceof RuntimeException) ? (RuntimeException) ex.getCause() : new SystemException(ex.getCause());
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<TimelineEntry> entries = new ArrayList<>();
+        for (Node node : list) {
+            if (node.startTime > 0)
+                entries.add(new TimelineEntry(node, origin));
+        }
+        entries.sort(Comparator.comparingLong(TimelineEntry::getStartOffset));
+        synchronized (this) {
+            timeline = entries;
+        }
+        logger.info(timelineMessage(entries));
+
+        if (failure != null)
+            throw failure;
+    }
+
+    private String timelineMessage(List<TimelineEntry> entries) {
+        long end = 0;
+        for (TimelineEntry entry : entries)
+            end = Math.max(end, entry.getStartOffset() + entry.getDuration());
+        StringBuilder builder = new StringBuilder();
+        builder.append("Started ").append(entries.size()).append(" startables in ").append(end).append("ms");
+        for (TimelineEntry entry : entries)
+            builder.append("\n    ").append(entry);
+        return builder.toString();
+    }
+
+    // a cycle would leave every bean on it waiting forever.
+    private void checkCycles(List<Node> list) {
+        Map<Node, Boolean> visited = new IdentityHashMap<>(); // false while on the current path
+        for (Node node : list)
+            checkCycles(node, visited, new ArrayDeque<>());
+    }
+
+    private void checkCycles(Node node, Map<Node, Boolean> visited, Deque<Node> path) {
+        Boolean done = visited.get(node);
+        if (Boolean.TRUE.equals(done))
+            return;
+        path.addLast(node);
+        if (done != null)
+            throw new SystemException(cycleMessage(node, path));
+        visited.put(node, false);
+        for (Node dependency : node.dependencies)
+            checkCycles(dependency, visited, path);
+        visited.put(node, true);
+        path.removeLast();
+    }
+
+    private static String cycleMessage(Node node, Deque<Node> path) {
+        StringBuilder builder = new StringBuilder("Startable dependency cycle: ");
+        boolean inCycle = false;
+        boolean first = true;
+        for (Node n : path) {
+            if (n == node)
+                inCycle = true;
+            if (!inCycle)
+                continue;
+            if (!first)
+                builder.append(" -> ");
+            builder.append(n.name);
+            first = false;
+        }
+        return builder.toString();
+    }
+
+    private List<Node> dependencies(Node node) {
+        List<Node> list = new ArrayList<>();
+        DependsOn dependsOn = node.bean.getClass().getAnnotation(DependsOn.class);
+        if (dependsOn != null) {
+            for (String name : dependsOn.value()) {
+                List<Node> named = nodes.getOrDefault(name, Collections.emptyList());
+                for (Node dependency : named) {
+                    if (dependency != node)
+                        list.add(dependency);
+                }
+                if (named.isEmpty() && resourceManager.getBeanLifecycle().getStartedBean(name) == null)
+                    logger.warn("Startable " + node.name + " depends on unknown bean " + name);
+            }
+        }
+
+        Class cls = node.bean.getClass();
+        while (cls != null && cls != Object.class) {
+            for (Field field : cls.getDeclaredFields()) {
+                if (field.getAnnotation(Inject.class) == null && field.getAnnotation(javax.inject.Inject.class) == null)
+                    continue;
+                Node dependency = null;
+                try {
+                    field.setAccessible(true);
+                    Object value = field.get(node.bean);
+                    if (value != null)
+                        dependency = beans.get(value);
+                } catch (IllegalAccessException e) {
+                    Logger.suppress(e);
+                }
+                if (dependency != null && dependency != node)
+                    list.add(dependency);
+            }
+            cls = cls.getSuperclass();
+        }
+        return list;
+    }
+
+    private class Node {
+        String atom;
+        String name;
+        Startable bean;
+        ClassLoader contextClassLoader;
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        List<Node> dependencies = Collections.emptyList();
+        long startTime;
+        long endTime;
+        String thread;
+
+        Node(String name) {
+            this.name = name;
+        }
+
+        @SuppressWarnings("squid:S1181")
+        void start() {
+            Thread current = Thread.currentThread();
+            ClassLoader prev = current.getContextClassLoader();
+            current.setContextClassLoader(contextClassLoader);
+            thread = current.getName();
+            startTime = System.nanoTime();
+            try {
+                bean.start();
+                endTime = System.nanoTime();
+                logger.info("Class {} started in {}ms", bean.getClass().getName(), (endTime - startTime) / 1000000L);
+                resourceManager.getBeanLifecycle().fireBeanStarted(name, bean);
+                future.complete(null);
+            } catch (Throwable ex) {
+                // Errors, and checked exceptions thrown from Groovy, must complete the future as well.  Otherwise
+                // await() and every dependent bean wait forever.
+                endTime = System.nanoTime();
+                logger.error("Error running startable component name = " + atom);
+                future.completeExceptionally(ex);
+            } finally {
+                current.setContextClassLoader(prev);
+            }
+        }
+    }
+
+    public static class TimelineEntry {
+        private String atom;
+        private String name;
+        private String thread;
+        private long startOffset;
+        private long duration;
+
+        TimelineEntry(Node node, long origin) {
+            atom = node.atom;
+            name = node.name;
+            thread = node.thread;
+            startOffset = (node.startTime - origin) / 1000000L;
+            duration = (node.endTime - node.startTime) / 1000000L;
+        }
+
+        public String getAtom() {
+            return atom;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getThread() {
+            return thread;
+        }
+
+        // milliseconds since the first bean was submitted
+        public long getStartOffset() {
+            return startOffset;
+        }
+
+        // in milliseconds
+        public long getDuration() {
+            return duration;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("+%dms %dms %s.%s [%s]", startOffset, duration, atom, name, thread);
+        }
+    }
+}
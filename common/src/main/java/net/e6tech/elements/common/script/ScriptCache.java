@@ -0,0 +1,336 @@
+/*
+Copyright 2017 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package net.e6tech.elements.common.script;
+
+import groovy.lang.*;
+import net.e6tech.elements.common.logging.Logger;
+import net.e6tech.elements.common.util.SystemException;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.tools.GroovyClass;
+
+import java.io.*;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On-disk cache of compiled scripts.  Entries are keyed by a SHA-256 hash of the script source, its name,
+ * the Groovy version, the script base class, the classpath and the sources on script.path so that any change
+ * to them results in recompilation.  Classes are compiled against and defined in the shell's GroovyClassLoader
+ * so that they resolve the same way as scripts evaluated by the shell.  Each entry records how long the original compilation took so that
+ * time saved by loading from the cache can be reported.
+ * Created by futeh.
+ */
+public class ScriptCache {
+    private static Logger logger = Logger.getLogger();
+    private static final int MAGIC = 0x45534331; // ESC1
+    private static final String EXTENSION = ".cache";
+
+    private Path directory;
+    private CompilerConfiguration compilerConfig;
+    private GroovyClassLoader classLoader;
+    private String sourcePath;
+    private byte[] classPathHash;
+    private Set<String> definedClasses = new HashSet<>();
+    private Map<String, Long> savings = new ConcurrentHashMap<>(); // script name -> nanoseconds saved
+    private int hits = 0;
+    private int misses = 0;
+
+    public ScriptCache(Path directory, CompilerConfiguration compilerConfig, GroovyClassLoader classLoader) {
+        this(directory, compilerConfig, classLoader, null);
+    }
+
+    /**
+     * @param classLoader the shell's class loader.
+     * @param sourcePath script.path, i.e. directories of sources that scripts may reference.
+     */
+    public ScriptCache(Path directory, CompilerConfiguration compilerConfig, GroovyClassLoader classLoader, String sourcePath) {
+        this.directory = directory;
+        this.compilerConfig = compilerConfig;
+        this.classLoader = classLoader;
+        this.sourcePath = sourcePath;
+        classPathHash = classPathHash();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return milliseconds saved per script name.
+     */
+    public Map<String, Long> getSavings() {
+        Map<String, Long> map = new TreeMap<>();
+        savings.forEach((name, nanos) -> map.put(name, nanos / 1000000L));
+        return map;
+    }
+
+    public long getTotalSavings() {
+        long total = 0;
+        for (Long nanos : savings.values())
+            total += nanos;
+        return total / 1000000L;
+    }
+
+    /**
+     * Returns the script class compiled from text, loading it from the cache if possible.
+     * Returns null if text does not compile into a script, in which case the caller should fall back to
+     * the regular compilation path.
+     */
+    public synchronized Class<? extends Script> load(String name, String text) {
+        long start = System.nanoTime();
+        Path file = directory.resolve(hash(name, text) + EXTENSION);
+        Entry entry = null;
+        if (Files.exists(file)) {
+            try {
+                entry = read(file);
+            } catch (IOException ex) {
+                logger.warn("Cannot read cached script " + file + ", recompiling " + name, ex);
+            }
+        }
+
+        boolean cached = entry != null;
+        if (entry == null) {
+            entry = compile(name, text);
+            if (entry == null)
+                return null;
+            write(file, entry);
+            misses++;
+        }
+
+        Class<? extends Script> cls = define(entry);
+        if (cached) {
+            hits++;
+            long saved = entry.compileTime - (System.nanoTime() - start);
+            savings.put(name, Math.max(saved, 0L));
+            if (logger.isDebugEnabled())
+                logger.debug("Loaded " + name + " from script cache, saved " + Math.max(saved, 0L) / 1000000L + "ms");
+        }
+        return cls;
+    }
+
+    public void clear() {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path path : stream)
+                Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new SystemException(e);
+        }
+        savings.clear();
+    }
+
+    private Entry compile(String name, String text) {
+        long start = System.nanoTime();
+        CompilationUnit unit = new CompilationUnit(compilerConfig, null, classLoader);
+        unit.addSource(name, text);
+        unit.compile(Phases.CLASS_GENERATION);
+
+        String mainClass = null;
+        for (ModuleNode module : unit.getAST().getModules()) {
+            for (ClassNode classNode : module.getClasses()) {
+                if (classNode.isScript()) {
+                    mainClass = classNode.getName();
+                    break;
+                }
+            }
+        }
+        if (mainClass == null)
+            return null;
+
+        Entry entry = new Entry();
+        entry.mainClass = mainClass;
+        for (Object obj : unit.getClasses()) {
+            GroovyClass groovyClass = (GroovyClass) obj;
+            entry.classes.put(groovyClass.getName(), groovyClass.getBytes());
+        }
+        entry.compileTime = System.nanoTime() - start;
+        return entry;
+    }
+
+    private Class<? extends Script> define(Entry entry) {
+        // define in the shell's loader so that classes declared by this script are visible to later scripts.
+        boolean redefine = false;
+        for (String className : entry.classes.keySet()) {
+            if (definedClasses.contains(className))
+                redefine = true;
+        }
+
+        if (!redefine) {
+            try {
+                Class main = null;
+                for (Map.Entry<String, byte[]> e : entry.classes.entrySet()) {
+                    Class cls = classLoader.defineClass(e.getKey(), e.getValue());
+                    definedClasses.add(e.getKey());
+                    if (e.getKey().equals(entry.mainClass))
+                        main = cls;
+                }
+                return main;
+            } catch (LinkageError ex) {
+                Logger.suppress(ex);
+            }
+        }
+
+        // the same script loaded again: like GroovyClassLoader, use a new InnerLoader that delegates to the shell's loader.
+        GroovyClassLoader.InnerLoader loader = new GroovyClassLoader.InnerLoader(classLoader);
+        Class main = null;
+        for (Map.Entry<String, byte[]> e : entry.classes.entrySet()) {
+            Class cls = loader.defineClass(e.getKey(), e.getValue());
+            if (e.getKey().equals(entry.mainClass))
+                main = cls;
+        }
+        return main;
+    }
+
+    private Entry read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Invalid script cache file " + file);
+            Entry entry = new Entry();
+            entry.mainClass = in.readUTF();
+            entry.compileTime = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String className = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                entry.classes.put(className, bytes);
+            }
+            return entry;
+        }
+    }
+
+    private void write(Path file, Entry entry) {
+        try {
+            Files.createDirectories(directory);
+            Path tmp = Files.createTempFile(directory, "script", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(entry.mainClass);
+                out.writeLong(entry.compileTime);
+                out.writeInt(entry.classes.size());
+                for (Map.Entry<String, byte[]> e : entry.classes.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeInt(e.getValue().length);
+                    out.write(e.getValue());
+                }
+            }
+            // another process may be writing the same entry
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            // caching is an optimization, failing to write is not fatal.
+            logger.warn("Cannot write script cache " + file, ex);
+        }
+    }
+
+    private String hash(String name, String text) {
+        MessageDigest digest = sha256();
+        digest.update(classPathHash);
+        digest.update(name.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(text.getBytes(StandardCharsets.UTF_8));
+        StringBuilder builder = new StringBuilder();
+        for (byte b : digest.digest())
+            builder.append(String.format("%02x", b));
+        return builder.toString();
+    }
+
+    private byte[] classPathHash() {
+        MessageDigest digest = sha256();
+        StringBuilder builder = new StringBuilder();
+        builder.append(GroovySystem.getVersion()).append('\n');
+        builder.append(compilerConfig.getScriptBaseClass()).append('\n');
+        for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator))
+            appendClassPathEntry(builder, new File(entry));
+        ClassLoader loader = classLoader;
+        while (loader != null) {
+            if (loader instanceof URLClassLoader) {
+                for (URL url : ((URLClassLoader) loader).getURLs()) {
+                    if ("file".equals(url.getProtocol()))
+                        appendClassPathEntry(builder, new File(url.getPath()));
+                    else
+                        builder.append(url).append('\n');
+                }
+            }
+            loader = loader.getParent();
+        }
+        if (sourcePath != null) {
+            for (String entry : sourcePath.split(File.pathSeparator))
+                appendSources(builder, Paths.get(entry));
+        }
+        return digest.digest(builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // sources are identified by path, size and modification time.
+    private static void appendSources(StringBuilder builder, Path root) {
+        if (!Files.isDirectory(root))
+            return;
+        List<Path> files = new ArrayList<>();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    files.add(file);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new SystemException(e);
+        }
+        Collections.sort(files);
+        for (Path file : files)
+            appendClassPathEntry(builder, file.toFile());
+    }
+
+    // jars are identified by path, size and modification time.
+    private static void appendClassPathEntry(StringBuilder builder, File file) {
+        builder.append(file.getPath());
+        if (file.isFile())
+            builder.append(':').append(file.length()).append(':').append(file.lastModified());
+        builder.append('\n');
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new SystemException(e);
+        }
+    }
+
+    private static class Entry {
+        String mainClass;
+        long compileTime;
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+    }
+}
@@ -21,6 +21,7 @@ import net.e6tech.elements.common.util.SystemException;
 import net.e6tech.elements.common.util.file.FileUtil;
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.codehaus.groovy.jsr223.GroovyScriptEngineImpl;
+import org.codehaus.groovy.runtime.InvokerHelper;
 
 import javax.script.Bindings;
 import javax.script.ScriptContext;
@@ -41,6 +42,7 @@ public class Scripting {
 
     public static final String SCRIPT_BASE_CLASS = "scriptBaseClass";
     public static final String PATH = "script.path";
+    public static final String CACHE_DIR = "script.cache.dir";
     public static final String __DIR = "__dir";
     public static final String __FILE = "__file";
     public static final String __LOAD_DIR = "__load_dir";
@@ -100,6 +102,13 @@ public class Scripting {
         return engine.getProperties();
     }
 
+    /**
+     * @return the compiled script cache or null if script.cache.dir is not configured.
+     */
+    public ScriptCache getScriptCache() {
+        return engine.scriptCache;
+    }
+
     @SuppressWarnings("squid:S1067")
     private String normalizePath(String originalPath) {
         String dir = (String) get(Scripting.__DIR);
@@ -294,6 +303,10 @@ public class Scripting {
     public void load(String path) throws ScriptException {
         exec(path, true);
         runAfter();
+        ScriptCache cache = getScriptCache();
+        if (cache != null)
+            logger.info("Script cache " + cache.getDirectory() + ": " + cache.getHits() + " hits, "
+                    + cache.getMisses() + " misses, saved " + cache.getTotalSavings() + "ms");
     }
 
     // runAfter is called after scripts are executed.
@@ -360,6 +373,8 @@ public class Scripting {
         GroovyShell shell;
         GroovyScriptEngineImpl scriptEngine;
         ScriptContext scriptContext;
+        ScriptCache scriptCache;
+        String sourceEncoding;
 
         public GroovyEngine(ClassLoader classLoader, Properties properties, boolean useGroovyShell) {
             ClassLoader ctxLoader = classLoader;
@@ -377,12 +392,18 @@ public class Scripting {
                 loader.addClasspath(properties.getProperty(PATH));
             }
 
+            sourceEncoding = compilerConfig.getSourceEncoding();
+
             if (useGroovyShell) {
                 Binding binding = new Binding();
                 for (Map.Entry entry : properties.entrySet()) {
                     binding.setVariable(entry.getKey().toString(), entry.getValue());
                 }
                 shell = new GroovyShell(loader, binding, compilerConfig);
+                if (properties.getProperty(CACHE_DIR) != null) {
+                    scriptCache = new ScriptCache(Paths.get(properties.getProperty(CACHE_DIR)), compilerConfig,
+                            shell.getClassLoader(), properties.getProperty(PATH));
+                }
             } else {
                 scriptEngine = new GroovyScriptEngineImpl(loader);
                 scriptContext = new SimpleScriptContext();
@@ -463,6 +484,12 @@ public class Scripting {
         public Object eval(File file) throws ScriptException {
             try {
                 if (shell != null) {
+                    if (scriptCache != null) {
+                        String text = new String(Files.readAllBytes(file.toPath()), sourceEncoding);
+                        Class<? extends Script> cls = scriptCache.load(file.getName(), text);
+                        if (cls != null)
+                            return InvokerHelper.createScript(cls, shell.getContext()).run();
+                    }
                     return shell.evaluate(file);
                 } else {
                     try (Reader reader = new BufferedReader(new FileReader(file))) {
@@ -476,6 +503,13 @@ public class Scripting {
 
         public Object eval(Reader reader, String fileName) throws ScriptException {
             if (shell != null) {
+                if (scriptCache != null) {
+                    String text = read(reader);
+                    Class<? extends Script> cls = scriptCache.load(scriptName(fileName), text);
+                    if (cls != null)
+                        return InvokerHelper.createScript(cls, shell.getContext()).run();
+                    return shell.evaluate(text, scriptName(fileName));
+                }
                 return shell.evaluate(reader, scriptName(fileName));
             } else {
                 return scriptEngine.eval(reader, scriptContext);
@@ -495,6 +529,19 @@ public class Scripting {
             }
         }
 
+        private static String read(Reader reader) throws ScriptException {
+            StringBuilder builder = new StringBuilder();
+            char[] buffer = new char[4096];
+            try {
+                int n;
+                while ((n = reader.read(buffer)) >= 0)
+                    builder.append(buffer, 0, n);
+            } catch (IOException ex) {
+                throw new ScriptException(ex);
+            }
+            return builder.toString();
+        }
+
         private static String scriptName(String fileName) {
             Path path = Paths.get(fileName);
             Path file = path.getFileName();
@@ -23,30 +23,58 @@ import net.e6tech.elements.common.util.SystemException;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Proxy;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * Balances calls among a set of services.
+ * <p>
+ * By default a service is checked out exclusively for the duration of a call and a service that fails with
+ * IOException is handed to a recovery thread that restarts it every recoveryPeriod.
+ * <p>
+ * When concurrent is true, each service can serve up to maxConcurrency calls at once.  Calls go to the service
+ * with the lowest (outstanding calls + 1) * EWMA latency.  Each service has a circuit breaker.  After
+ * failureThreshold consecutive IOExceptions it opens for openTimeout, which doubles on every failed probe up to
+ * recoveryPeriod.  Once the timeout has passed, the next caller restarts the service and sends one probe call
+ * through it (half-open).  A successful probe closes the breaker.  getBackends exposes per-service metrics.
+ * <p>
  * Created by futeh.
  */
+@SuppressWarnings("squid:MethodCyclomaticComplexity")
 public abstract class Balancer<T> {
 
+    private static final double LATENCY_DECAY = 0.3;
+
     private BlockingQueue<T> liveList = new LinkedBlockingQueue<>();
     private BlockingQueue<T>  deadList = new LinkedBlockingQueue<>();
     private long timeout = 3000L;
     private long recoveryPeriod = 60000L;
     private Thread recoveryThread;
     private volatile boolean stopped = false;
+    private T proxy;
+
+    private boolean concurrent = false;
+    private int maxConcurrency = 16;
+    private int failureThreshold = 3;
+    private long openTimeout = 1000L;
+    private List<Backend<T>> backends = new CopyOnWriteArrayList<>();
+    private final Object monitor = new Object();
+    private volatile int waiters = 0;
 
     @SuppressWarnings({"unchecked"})
-    public T getService() {
+    public synchronized T getService() {
+        if (proxy != null)
+            return proxy;
         Class cls = Reflection.getParametrizedType(getClass(), 0);
-        return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { cls },
-                (proxy,  method, args)->
+        proxy = (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { cls },
+                (p,  method, args)->
                      execute(service -> {
                         try {
                             return method.invoke(service, args);
@@ -54,10 +82,14 @@ public abstract class Balancer<T> {
                             throw new SystemException(e);
                         } catch (InvocationTargetException e) {
                             Logger.suppress(e);
+                            // IOException marks the service as failed, so it must reach execute.
+                            if (e.getCause() instanceof IOException)
+                                throw (IOException) e.getCause();
                             throw new SystemException(e.getCause());
                         }
                     })
                 );
+        return proxy;
     }
 
     public long getTimeout() {
@@ -76,13 +108,65 @@ public abstract class Balancer<T> {
         this.recoveryPeriod = recoveryPeriod;
     }
 
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    public void setConcurrent(boolean concurrent) {
+        this.concurrent = concurrent;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    public long getOpenTimeout() {
+        return openTimeout;
+    }
+
+    public void setOpenTimeout(long openTimeout) {
+        this.openTimeout = openTimeout;
+    }
+
+    /**
+     * @return services with their metrics.  Only maintained when concurrent is true.
+     */
+    public List<Backend<T>> getBackends() {
+        return Collections.unmodifiableList(backends);
+    }
+
     public void addService(T service) {
         liveList.add(service);
+        backends.add(new Backend<>(service));
     }
 
     public void start() {
-        Iterator<T> iterator = liveList.iterator();
         stopped = false;
+        if (concurrent) {
+            for (Backend<T> backend : backends) {
+                try {
+                    start(backend.service);
+                } catch (Exception ex) {
+                    Logger.suppress(ex);
+                    backend.open(System.currentTimeMillis(), openTimeout, recoveryPeriod);
+                }
+            }
+            return;
+        }
+
+        Iterator<T> iterator = liveList.iterator();
         while (iterator.hasNext()) {
             T service = iterator.next();
             try {
@@ -145,6 +229,9 @@ public abstract class Balancer<T> {
     }
 
     public <R> R execute(Submit<T, R> submit) throws IOException {
+        if (concurrent)
+            return executeConcurrently(submit);
+
         while (true) {
             T service;
             try {
@@ -153,6 +240,8 @@ public abstract class Balancer<T> {
                 Thread.currentThread().interrupt();
                 throw new IOException();
             }
+            if (service == null)
+                throw new IOException("No service available after " + timeout + "ms");
 
             try {
                 R ret = submit.apply(service);
@@ -165,6 +254,234 @@ public abstract class Balancer<T> {
         }
     }
 
+    private <R> R executeConcurrently(Submit<T, R> submit) throws IOException {
+        long deadline = System.currentTimeMillis() + timeout;
+        List<Backend<T>> failed = Collections.emptyList();
+        while (true) {
+            Backend<T> backend = acquire(deadline, failed);
+            long start = System.nanoTime();
+            try {
+                R ret = submit.apply(backend.service);
+                backend.success(System.nanoTime() - start);
+                return ret;
+            } catch (IOException ex) {
+                // a failure counts as a call that took the whole timeout so that the service is picked less often.
+                if (backend.failure(System.currentTimeMillis(), TimeUnit.MILLISECONDS.toNanos(timeout),
+                        failureThreshold, openTimeout, recoveryPeriod)) {
+                    try {
+                        stop(backend.service);
+                    } catch (Exception e) {
+                        Logger.suppress(e);
+                    }
+                }
+                if (failed.isEmpty())
+                    failed = new ArrayList<>();
+                failed.add(backend);
+                if (failed.size() >= backends.size())
+                    throw ex;
+                Logger.suppress(ex);
+            } catch (RuntimeException ex) {
+                // not a service failure, but it still answers a half-open probe; otherwise the breaker stays half-open.
+                backend.success(System.nanoTime() - start);
+                throw ex;
+            } finally {
+                // a probe that ended in an Error neither closed nor reopened the breaker; reopen it to be probed again.
+                if (backend.state.get() == Backend.State.HALF_OPEN)
+                    backend.open(System.currentTimeMillis(), openTimeout, recoveryPeriod);
+                release(backend);
+            }
+        }
+    }
+
+    private Backend<T> acquire(long deadline, List<Backend<T>> excluded) throws IOException {
+        while (true) {
+            Backend<T> backend = select(excluded);
+            if (backend != null)
+                return backend;
+
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0)
+                throw new IOException("No service available after " + timeout + "ms");
+            synchronized (monitor) {
+                waiters++;
+                try {
+                    // bounded wait so that breakers whose openTimeout has passed get probed.
+                    monitor.wait(Math.min(remaining, 10L));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                } finally {
+                    waiters--;
+                }
+            }
+        }
+    }
+
+    private void release(Backend<T> backend) {
+        backend.outstanding.decrementAndGet();
+        if (waiters > 0) {
+            synchronized (monitor) {
+                monitor.notifyAll();
+            }
+        }
+    }
+
+    private Backend<T> select(List<Backend<T>> excluded) {
+        for (int tries = 0; tries < 3; tries++) {
+            int size = backends.size();
+            if (size == 0)
+                return null;
+            long now = System.currentTimeMillis();
+            // start at a random position so that ties do not always go to the first service.
+            int offset = ThreadLocalRandom.current().nextInt(size);
+            Backend<T> best = null;
+            double bestScore = Double.MAX_VALUE;
+            for (int i = 0; i < size; i++) {
+                Backend<T> backend = backends.get((offset + i) % size);
+                if (!excluded.isEmpty() && excluded.contains(backend))
+                    continue;
+                Backend.State state = backend.state.get();
+                if (state == Backend.State.OPEN) {
+                    if (now >= backend.openUntil && probe(backend))
+                        return backend;
+                } else if (state == Backend.State.CLOSED && backend.outstanding.get() < maxConcurrency) {
+                    double score = backend.score();
+                    if (score < bestScore) {
+                        best = backend;
+                        bestScore = score;
+                    }
+                }
+            }
+            if (best == null)
+                return null;
+            if (best.tryAcquire(maxConcurrency))
+                return best;
+        }
+        return null;
+    }
+
+    private boolean probe(Backend<T> backend) {
+        if (!backend.state.compareAndSet(Backend.State.OPEN, Backend.State.HALF_OPEN))
+            return false;
+        try {
+            start(backend.service);
+        } catch (Exception ex) {
+            Logger.suppress(ex);
+            backend.open(System.currentTimeMillis(), openTimeout, recoveryPeriod);
+            return false;
+        }
+        backend.outstanding.incrementAndGet();
+        return true;
+    }
+
+    public static class Backend<T> {
+        public enum State {
+            CLOSED,
+            OPEN,
+            HALF_OPEN
+        }
+
+        private final T service;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+        private final LongAdder successCount = new LongAdder();
+        private final LongAdder failureCount = new LongAdder();
+        private volatile double latency = 0;     // EWMA in nanoseconds
+        private volatile long openUntil = 0;
+        private long nextOpenTimeout = 0;        // guarded by this
+        private int consecutiveFailures = 0;     // guarded by this
+
+        Backend(T service) {
+            this.service = service;
+        }
+
+        public T getService() {
+            return service;
+        }
+
+        public State getState() {
+            return state.get();
+        }
+
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        /**
+         * @return EWMA latency in milliseconds.
+         */
+        public double getLatency() {
+            return latency / 1_000_000d;
+        }
+
+        public long getSuccessCount() {
+            return successCount.sum();
+        }
+
+        public long getFailureCount() {
+            return failureCount.sum();
+        }
+
+        public synchronized int getConsecutiveFailures() {
+            return consecutiveFailures;
+        }
+
+        double score() {
+            return (outstanding.get() + 1) * (latency + 1);
+        }
+
+        boolean tryAcquire(int max) {
+            while (true) {
+                int count = outstanding.get();
+                if (count >= max)
+                    return false;
+                if (outstanding.compareAndSet(count, count + 1))
+                    return true;
+            }
+        }
+
+        private void sample(long nanos) {
+            latency = (latency == 0) ? nanos : latency + LATENCY_DECAY * (nanos - latency);
+        }
+
+        synchronized void success(long nanos) {
+            successCount.increment();
+            sample(nanos);
+            consecutiveFailures = 0;
+            if (state.compareAndSet(State.HALF_OPEN, State.CLOSED))
+                nextOpenTimeout = 0;
+        }
+
+        /**
+         * @return true if this failure opened the breaker.
+         */
+        synchronized boolean failure(long now, long penalty, int threshold, long openTimeout, long maxOpenTimeout) {
+            failureCount.increment();
+            sample(penalty);
+            consecutiveFailures++;
+            State current = state.get();
+            if (current == State.HALF_OPEN || (current == State.CLOSED && consecutiveFailures >= threshold)) {
+                open(now, openTimeout, maxOpenTimeout);
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void open(long now, long openTimeout, long maxOpenTimeout) {
+            long wait = (nextOpenTimeout == 0) ? openTimeout : nextOpenTimeout;
+            openUntil = now + wait;
+            nextOpenTimeout = Math.min(wait * 2, Math.max(openTimeout, maxOpenTimeout));
+            state.set(State.OPEN);
+        }
+
+        @Override
+        public String toString() {
+            return service + "[state=" + getState() + ", outstanding=" + getOutstanding()
+                    + ", latency=" + String.format("%.3f", getLatency()) + "ms, success=" + getSuccessCount()
+                    + ", failure=" + getFailureCount() + "]";
+        }
+    }
+
     @FunctionalInterface
     public interface Submit<T, R> {
         R apply(T t) throws IOException;
@@ -16,11 +16,19 @@
 
 package net.e6tech.elements.common.actor;
 
+import net.e6tech.elements.common.actor.pool.WorkStealingPool;
 import net.e6tech.elements.common.resources.Resources;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
 
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
 /**
  * Created by futeh.
  */
@@ -71,4 +79,124 @@ public class GenesisTest {
 
         Thread.sleep(2000L);
     }
+
+    @Test
+    public void workStealing() throws Exception {
+        Genesis genesis = new Genesis();
+        genesis.setName("WorkStealing");
+        genesis.setWorkStealing(true);
+        genesis.initialize((Resources) null);
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            final int id = i;
+            futures.add(genesis.async(() -> id, 1000L).toCompletableFuture());
+        }
+        long sum = 0;
+        for (CompletableFuture<Integer> future : futures)
+            sum += future.get(5, TimeUnit.SECONDS);
+        assertEquals(999 * 1000 / 2, sum);
+
+        AtomicLong ran = new AtomicLong();
+        genesis.async(ran::incrementAndGet, 1000L).toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertEquals(1, ran.get());
+
+        CompletableFuture<Object> failed = genesis.async(() -> { throw new IllegalStateException("failed"); }).toCompletableFuture();
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertTrue(ex.getCause() instanceof IllegalStateException);
+
+        CompletableFuture<Void> slow = genesis.async(() -> sleep(500L), 50L).toCompletableFuture();
+        ex = assertThrows(ExecutionException.class, () -> slow.get(5, TimeUnit.SECONDS));
+        assertTrue(ex.getCause() instanceof TimeoutException);
+
+        System.out.println(genesis.getWorkStealingPool());
+        assertEquals(1003, genesis.getWorkStealingPool().getSubmittedCount());
+        genesis.shutdown();
+    }
+
+    @Test
+    public void workStealingRejection() throws Exception {
+        WorkStealingPool pool = new WorkStealingPool("Bounded", 2, 2, WorkStealingPool.RejectionPolicy.ABORT);
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++)
+            futures.add(pool.submit(() -> await(release), 0));
+
+        assertEquals(4, pool.getPendingCount());
+        assertEquals(2, pool.getRejectedCount());
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> futures.get(5).get(1, TimeUnit.SECONDS));
+        assertTrue(ex.getCause() instanceof RejectedExecutionException);
+
+        release.countDown();
+        for (int i = 0; i < 4; i++)
+            futures.get(i).get(5, TimeUnit.SECONDS);
+
+        WorkStealingPool callerRuns = new WorkStealingPool("CallerRuns", 1, 0, WorkStealingPool.RejectionPolicy.CALLER_RUNS);
+        CountDownLatch block = new CountDownLatch(1);
+        callerRuns.submit(() -> await(block), 0);
+        Thread caller = Thread.currentThread();
+        assertSame(caller, callerRuns.submit(Thread::currentThread, 0).get());
+        block.countDown();
+        pool.shutdown();
+        callerRuns.shutdown();
+    }
+
+    @Test
+    @Tag("benchmark")
+    public void throughput() throws Exception {
+        assumeTrue(Boolean.getBoolean("benchmark"), "run with -Dbenchmark=true");
+        Genesis actors = new Genesis();
+        actors.setName("Actors");
+        actors.initialize((Resources) null);
+        Genesis workStealing = new Genesis();
+        workStealing.setName("WorkStealing");
+        workStealing.setWorkStealing(true);
+        workStealing.setMaxQueueSize(100000);
+        workStealing.initialize((Resources) null);
+
+        int count = 50000;
+        long actorTime = 0;
+        long workStealingTime = 0;
+        try {
+            for (int round = 0; round < 3; round++) { // earlier rounds warm up
+                actorTime = submitAll(actors, count);
+                workStealingTime = submitAll(workStealing, count);
+            }
+        } finally {
+            actors.shutdown();
+            workStealing.shutdown();
+        }
+        assertTrue(workStealingTime < actorTime,
+                count + " tasks: worker pool actor " + actorTime + "ms, work stealing " + workStealingTime + "ms");
+    }
+
+    private long submitAll(Genesis genesis, int count) throws Exception {
+        long start = System.currentTimeMillis();
+        CompletableFuture<?>[] futures = new CompletableFuture[count];
+        for (int i = 0; i < count; i++) {
+            final int id = i;
+            futures[i] = genesis.async(() -> id, 30000L).toCompletableFuture();
+        }
+        CompletableFuture.allOf(futures).get(60, TimeUnit.SECONDS);
+        long elapsed = System.currentTimeMillis() - start;
+        for (int i = 0; i < count; i++)
+            assertEquals(i, futures[i].get());
+        return elapsed;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
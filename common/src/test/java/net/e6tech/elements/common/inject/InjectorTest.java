@@ -0,0 +1,131 @@
+/*
+Copyright 2017 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package net.e6tech.elements.common.inject;
+
+import net.e6tech.elements.common.inject.spi.InjectorImpl;
+import net.e6tech.elements.common.util.SystemException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by futeh.
+ */
+public class InjectorTest {
+
+    @Test
+    void layered() {
+        Module parent = ModuleFactory.getInstance().create();
+        Service service = new Service();
+        parent.bindInstance(Service.class, service);
+        parent.bindClass(Prototype.class, Prototype.class);
+        Injector parentInjector = parent.build();
+        assertSame(parentInjector, parent.build()); // unchanged module returns the same injector
+
+        Module child1 = ModuleFactory.getInstance().create();
+        child1.bindInstance(String.class, "child1");
+        Injector injector1 = child1.build(parent);
+
+        Module child2 = ModuleFactory.getInstance().create();
+        child2.bindInstance(String.class, "child2");
+        Injector injector2 = child2.build(parent);
+
+        Client client1 = new Client();
+        injector1.inject(client1);
+        Client client2 = new Client();
+        injector2.inject(client2);
+        assertSame(service, client1.service);
+        assertEquals("child1", client1.name);
+        assertEquals("child2", client2.name);
+
+        // prototypes bound in the parent are instantiated per child and injected with child bindings
+        assertNotSame(client1.prototype, client2.prototype);
+        assertEquals("child2", client2.prototype.name);
+    }
+
+    @Test
+    void singletonsInjectedOnce() {
+        Module module = ModuleFactory.getInstance().create();
+        module.bindInstance(String.class, "name");
+        module.bindClass(Prototype.class, Prototype.class);
+        Holder holder = new Holder();
+        module.bindInstance(Holder.class, holder);
+        module.build();
+        Prototype prototype = holder.prototype;
+        assertNotNull(prototype);
+
+        // a rebuilt injector would create a new Prototype if holder were injected again
+        module.bindInstance(Integer.class, 1);
+        assertNotNull(module.build());
+        assertSame(prototype, holder.prototype);
+    }
+
+    @Test
+    void singletonsPendingUntilInjected() {
+        Module module = ModuleFactory.getInstance().create();
+        Lazy lazy = new Lazy();
+        module.bindInstance(Lazy.class, lazy);
+        Client client = new Client();
+        module.bindInstance(Client.class, client);
+        assertThrows(SystemException.class, module::build); // Service, String and Prototype are not bound yet
+
+        // the optional dependency is bound after the singleton was first injected
+        Service service = new Service();
+        module.bindInstance(Service.class, service);
+        module.bindInstance(String.class, "name");
+        module.bindClass(Prototype.class, Prototype.class);
+        module.build();
+        assertSame(service, lazy.service);
+        assertSame(service, client.service);
+        assertEquals("name", client.name);
+    }
+
+    @Test
+    void hasInjectionPoints() {
+        assertTrue(InjectorImpl.hasInjectionPoints(Client.class));
+        assertTrue(InjectorImpl.hasInjectionPoints(Prototype.class));
+        assertFalse(InjectorImpl.hasInjectionPoints(Service.class));
+    }
+
+    public static class Service {
+    }
+
+    public static class Prototype {
+        @Inject
+        String name;
+    }
+
+    public static class Client {
+        @Inject
+        Service service;
+
+        @Inject
+        String name;
+
+        @Inject
+        Prototype prototype;
+    }
+
+    public static class Lazy {
+        @Inject(optional = true)
+        Service service;
+    }
+
+    public static class Holder {
+        @Inject
+        Prototype prototype;
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2015 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.common.logging;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Created by futeh.
+ */
+public class AsyncLoggerTest {
+
+    private boolean async = TimedLogger.isAsync();
+
+    @AfterEach
+    void restore() {
+        TimedLogger.removeIncludes(AsyncLoggerTest.class);
+        TimedLogger.setAsync(async);
+    }
+
+    @Test
+    void formattedOnDispatcherThread() throws Exception {
+        Capture capture = new Capture();
+        try (AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(8192)) {
+            formattedOnDispatcherThread(capture, dispatcher);
+        }
+    }
+
+    private void formattedOnDispatcherThread(Capture capture, AsyncLogDispatcher dispatcher) throws Exception {
+        Logger logger = new Slf4jLogger(new LogHandler(new AsyncLogger(new LogHandler(capture), dispatcher)));
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++)
+                    logger.debug("thread {} message {}", id, i);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        RuntimeException error = new RuntimeException("error");
+        logger.error("failed {}", "op", error);
+        assertTrue(dispatcher.flush(5000L));
+
+        assertEquals(0, dispatcher.getDropped());
+        assertEquals(4001, capture.messages.size());
+        assertTrue(capture.messages.contains("thread 0 message 999"));
+        assertEquals("failed op", capture.messages.get(capture.messages.size() - 1));
+        assertSame(error, capture.throwable);
+        assertTrue(new ArrayList<>(capture.threads).stream().allMatch(name -> name.equals("AsyncLogDispatcher")));
+    }
+
+    @Test
+    void dropsWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Capture capture = new Capture() {
+            @Override
+            public void info(String msg, Throwable t) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.info(msg, t);
+            }
+        };
+        try (AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(4)) {
+            AsyncLogger logger = new AsyncLogger(new LogHandler(capture), dispatcher);
+            CallerLocation[] locations = new CallerLocation[20];
+            for (int i = 0; i < 20; i++) {
+                locations[i] = new CallerLocation();
+                logger.info("message {} {}", i, locations[i]);
+            }
+            assertTrue(dispatcher.getDropped() >= 15);
+            // dropped events never capture the stack
+            assertFalse(locations[19].isCaptured());
+            release.countDown();
+            assertTrue(dispatcher.flush(5000L));
+            assertEquals(20 - dispatcher.getDropped(), capture.messages.size());
+            assertTrue(capture.messages.get(0).startsWith("message 0 "));
+        }
+    }
+
+    @Test
+    void lazyCallerLocation() throws Exception {
+        String caller = AsyncLoggerTest.class.getName() + ".lazyCallerLocation(";
+        assertTrue(new CallerLocation().toString().startsWith(caller));
+
+        Capture capture = new Capture();
+        try (AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(16)) {
+            AsyncLogger logger = new AsyncLogger(new LogHandler(capture), dispatcher);
+            CallerLocation location = new CallerLocation();
+            assertFalse(location.isCaptured());
+            logger.debug("at {}", location);
+            assertTrue(location.isCaptured());
+            assertTrue(dispatcher.flush(5000L));
+            assertTrue(capture.messages.get(0).startsWith("at " + caller), capture.messages.get(0));
+            assertEquals("AsyncLogDispatcher", capture.threads.get(0));
+        }
+    }
+
+    @Test
+    void close() throws Exception {
+        Capture capture = new Capture();
+        AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(16);
+        AsyncLogger logger = new AsyncLogger(new LogHandler(capture), dispatcher);
+        logger.info("before close");
+        dispatcher.close();
+        assertTrue(dispatcher.isClosed());
+        assertEquals(Collections.singletonList("before close"), capture.messages);
+
+        // written on the calling thread once closed
+        logger.info("after close");
+        assertEquals("after close", capture.messages.get(1));
+        assertEquals(Thread.currentThread().getName(), capture.threads.get(1));
+    }
+
+    @Test
+    void timedLogger() {
+        TimedLogger.setIncludes(AsyncLoggerTest.class);
+        TimedLogger.setAsync(true);
+        TimedLogger timed = new TimedLogger(0);
+        timed.setLogLevel(LogLevel.INFO);
+        timed.time("async timed logger");
+        assertTrue(AsyncLogDispatcher.getInstance().flush(5000L));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void callerCostBenchmark() {
+        assumeTrue(Boolean.getBoolean("benchmark"), "run with -Dbenchmark=true");
+        Capture capture = new Capture();
+        Object arg = "argument";
+        int iterations = 20_000;
+        long syncTime = 0;
+        long asyncTime = 0;
+        try (AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(1 << 16)) {
+            org.slf4j.Logger async = new AsyncLogger(new LogHandler(capture), dispatcher);
+            for (int round = 0; round < 3; round++) { // earlier rounds warm up
+                capture.messages.clear();
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++)
+                    capture.debug("message {} {} {}", arg, i, new CallerLocation());
+                syncTime = System.nanoTime() - start;
+
+                capture.messages.clear();
+                start = System.nanoTime();
+                for (int i = 0; i < iterations; i++)
+                    async.debug("message {} {} {}", arg, i, new CallerLocation());
+                asyncTime = System.nanoTime() - start;
+                assertTrue(dispatcher.flush(30000L));
+                assertEquals(0, dispatcher.getDropped());
+                assertEquals(iterations, capture.messages.size());
+            }
+        }
+        // the caller thread only captures the stack; resolving and formatting happen on the dispatcher
+        assertTrue(asyncTime < syncTime, String.format("caller thread: sync %.0fns/op, async %.0fns/op",
+                (double) syncTime / iterations, (double) asyncTime / iterations));
+    }
+
+    private static class Capture extends NullLogger {
+        List<String> messages = Collections.synchronizedList(new ArrayList<>());
+        List<String> threads = Collections.synchronizedList(new ArrayList<>());
+        volatile Throwable throwable;
+
+        @Override
+        public boolean isDebugEnabled() {
+            return true;
+        }
+
+        @Override
+        public boolean isInfoEnabled() {
+            return true;
+        }
+
+        @Override
+        public boolean isErrorEnabled() {
+            return true;
+        }
+
+        @Override
+        public void debug(String format, Object... arguments) {
+            debug(org.slf4j.helpers.MessageFormatter.arrayFormat(format, arguments).getMessage(), (Throwable) null);
+        }
+
+        @Override
+        public void debug(String msg, Throwable t) {
+            record(msg, t);
+        }
+
+        @Override
+        public void info(String msg, Throwable t) {
+            record(msg, t);
+        }
+
+        @Override
+        public void error(String msg, Throwable t) {
+            record(msg, t);
+        }
+
+        private void record(String msg, Throwable t) {
+            messages.add(msg);
+            threads.add(Thread.currentThread().getName());
+            if (t != null)
+                throwable = t;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.common.logging;
+
+import net.e6tech.elements.common.util.SystemException;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Created by futeh.
+ */
+public class LoggerTest {
+
+    @Test
+    void direct() {
+        Logger logger = Logger.getLogger();
+        assertFalse(Proxy.isProxyClass(logger.getClass()));
+        assertTrue(logger instanceof Slf4jLogger);
+
+        SystemException ex = logger.systemException("direct logger test");
+        assertEquals("direct logger test", ex.getMessage());
+        IllegalStateException ex2 = logger.exceptionLogger(LogLevel.INFO)
+                .exception(IllegalStateException.class, "info level", new RuntimeException("cause"));
+        assertNotNull(ex2);
+        assertFalse(Logger.nullLogger().isDebugEnabled());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void disabledLevelBenchmark() {
+        assumeTrue(Boolean.getBoolean("benchmark"), "run with -Dbenchmark=true");
+        // a target with trace disabled regardless of the logging configuration
+        org.slf4j.Logger target = new NullLogger();
+        Logger direct = new Slf4jLogger(new LogHandler(target));
+        Logger proxy = (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class[]{Logger.class},
+                new LogHandler(target));
+        Object arg = "arg";
+        int iterations = 10_000_000;
+        long directTime = 0;
+        long proxyTime = 0;
+        for (int round = 0; round < 3; round++) { // earlier rounds warm up
+            long start = System.nanoTime();
+            int enabled = 0;
+            for (int i = 0; i < iterations; i++) {
+                direct.trace("trace {}", arg);
+                if (direct.isTraceEnabled())
+                    enabled++;
+            }
+            directTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                proxy.trace("trace {}", arg);
+                if (proxy.isTraceEnabled())
+                    enabled++;
+            }
+            proxyTime = System.nanoTime() - start;
+            assertEquals(0, enabled);
+        }
+        assertTrue(directTime < proxyTime, String.format("disabled trace + isTraceEnabled: direct %.2fns/op, proxy %.2fns/op",
+                (double) directTime / iterations, (double) proxyTime / iterations));
+    }
+}
@@ -134,6 +134,37 @@ public class ConfigurationTest {
         assertTrue(x.getProperties().getProperty("a").equals("a"));
     }
 
+    @Test
+    public void repeatedConfigure() {
+        Configuration config = new Configuration();
+        String yaml = ""
+                + "x.a: A\n"
+                + "x.b: B\n"
+                + "x.child.a: child A";
+        config.load(yaml);
+
+        for (int i = 0; i < 100; i++) { // later calls are served from the cached key index
+            X x = new X();
+            x.setChild(new X());
+            config.configure(x, "x", null, null);
+            assertTrue(x.getA().equals("A"));
+            assertTrue(x.getChild().getA().equals("child A"));
+        }
+
+        // adding a key must be picked up by the cached key index
+        config.put("x.child.b", "child B");
+        X x = new X();
+        x.setChild(new X());
+        config.configure(x, "x", null, null);
+        assertTrue(x.getChild().getB().equals("child B"));
+
+        config.remove("x.b");
+        x = new X();
+        x.setChild(new X());
+        config.configure(x, "x", null, null);
+        assertTrue(x.getB() == null);
+    }
+
     private static class X {
         String a;
         String b;
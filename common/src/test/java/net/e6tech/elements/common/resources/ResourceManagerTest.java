@@ -16,8 +16,16 @@
 
 package net.e6tech.elements.common.resources;
 
+import net.e6tech.elements.common.inject.Inject;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 /**
  * Created by futeh.
  */
@@ -29,4 +37,153 @@ public class ResourceManagerTest {
         resourceManager.load("src/test/conf/simple.groovy");
         resourceManager.getAtoms();
     }
+
+    @Test
+    void injectable() {
+        ResourceManager resourceManager = new ResourceManager();
+        Resources resources = resourceManager.open(null);
+        try {
+            resources.bind(String.class, "injected");
+            Outer outer = new Outer();
+            outer.inner = new Inner();
+            outer.inner.outer = outer; // cycle
+            resources.inject(outer);
+            assertEquals("injected", outer.name);
+            assertEquals("injected", outer.inner.name);
+            assertSame(resources, outer.inner.resources);
+        } finally {
+            resources.abort();
+        }
+    }
+
+    @Test
+    void parallelCommit() throws Exception {
+        ResourceManager resourceManager = new ResourceManager();
+        Resources resources = resourceManager.open(new Configurator().put(Resources.PARALLEL_COMMIT, true));
+        // each independent provider waits for the other, so they must be committed concurrently.
+        CountDownLatch committing = new CountDownLatch(2);
+        CountDownLatch afterCommit = new CountDownLatch(2);
+        IndependentProvider[] providers = new IndependentProvider[2];
+        // afterCommit blocks until commit() has returned, so commit() must not wait for it.
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 2; i++) {
+            providers[i] = new IndependentProvider(committing, afterCommit);
+            providers[i].release = release;
+            resources.addResourceProvider(providers[i]);
+        }
+        StringBuilder dependent = new StringBuilder();
+        resources.onCommit(() -> dependent.append("committed"));
+        resources.commit();
+
+        assertEquals(0, committing.getCount());
+        assertEquals("committed", dependent.toString());
+        assertTrue(resources.isClosed());
+        assertEquals(2, afterCommit.getCount());
+        release.countDown();
+
+        // independent providers are closed after their afterCommit
+        for (IndependentProvider provider : providers) {
+            assertTrue(provider.closed.await(5, TimeUnit.SECONDS));
+            assertTrue(provider.closedAfterCommit);
+        }
+    }
+
+    @Test
+    void parallelCommitReplay() throws Exception {
+        ResourceManager resourceManager = new ResourceManager();
+        resourceManager.bind(Retry.class, new Retry() {
+            @Override
+            public boolean shouldRetry(Throwable th) {
+                return true;
+            }
+        });
+        CountDownLatch committing = new CountDownLatch(1);
+        CountDownLatch afterCommit = new CountDownLatch(1);
+        IndependentProvider independent = new IndependentProvider(committing, afterCommit);
+        resourceManager.addResourceProvider(independent);
+        // fails the first commit so that it is replayed with a new state.
+        int[] failures = {1};
+        resourceManager.addResourceProvider(new ResourceProvider() {
+            @Override
+            public void onCommit(Resources r) {
+                if (failures[0]-- > 0)
+                    throw new IllegalStateException("fail once");
+            }
+        });
+        Resources resources = resourceManager.open(new Configurator().put(Resources.PARALLEL_COMMIT, true));
+        resources.commit();
+
+        // committed by the first attempt, skipped by the replay: a partial commit had the replay failed.
+        assertEquals(1, independent.commits);
+        assertTrue(resources.isClosed());
+    }
+
+    private static class IndependentProvider implements ResourceProvider {
+        CountDownLatch committing;
+        CountDownLatch afterCommit;
+        CountDownLatch release = new CountDownLatch(0);
+        CountDownLatch closed = new CountDownLatch(1);
+        volatile int commits;
+        volatile int afterCommits;
+        volatile boolean closedAfterCommit;
+
+        IndependentProvider(CountDownLatch committing, CountDownLatch afterCommit) {
+            this.committing = committing;
+            this.afterCommit = afterCommit;
+        }
+
+        @Override
+        public boolean isIndependent() {
+            return true;
+        }
+
+        @Override
+        public void onCommit(Resources resources) {
+            // calls back into resources while commit() holds its monitor
+            assertTrue(resources.isOpen());
+            commits++;
+            committing.countDown();
+            try {
+                assertTrue(committing.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void afterCommit(Resources resources) {
+            try {
+                assertTrue(release.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            afterCommits++;
+            afterCommit.countDown();
+        }
+
+        @Override
+        public void onClosed(Resources resources) {
+            closedAfterCommit = afterCommits > 0;
+            closed.countDown();
+        }
+    }
+
+    public static class Outer {
+        @Inject
+        String name;
+
+        @Injectable
+        Inner inner;
+    }
+
+    public static class Inner {
+        @Inject
+        String name;
+
+        @Inject
+        Resources resources;
+
+        @Injectable
+        Outer outer;
+    }
 }
@@ -0,0 +1,181 @@
+/*
+Copyright 2017 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package net.e6tech.elements.common.resources;
+
+import net.e6tech.elements.common.inject.Inject;
+import net.e6tech.elements.common.util.SystemException;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by futeh.
+ */
+public class StartupSchedulerTest {
+
+    @Test
+    void dependencies() {
+        ResourceManager resourceManager = new ResourceManager();
+        StartupScheduler scheduler = resourceManager.getStartupScheduler();
+        scheduler.setThreads(4);
+
+        Server a = new Server();
+        Server b = new Server();
+        Client c = new Client(); // depends on a by name
+        c.server = a;
+        Injected d = new Injected(); // depends on b by injection
+        d.server = b;
+
+        scheduler.submit("atom", "c", c);
+        scheduler.submit("atom", "d", d);
+        scheduler.submit("atom", "a", a);
+        scheduler.submit("atom", "b", b);
+        scheduler.await();
+
+        assertTrue(c.serverStarted);
+        assertTrue(d.serverStarted);
+
+        Map<String, StartupScheduler.TimelineEntry> entries = new HashMap<>();
+        List<StartupScheduler.TimelineEntry> timeline = scheduler.getTimeline();
+        timeline.forEach(e -> entries.put(e.getName(), e));
+        assertEquals(4, timeline.size());
+        // a and b are independent and run concurrently
+        StartupScheduler.TimelineEntry ea = entries.get("a");
+        StartupScheduler.TimelineEntry eb = entries.get("b");
+        assertTrue(eb.getStartOffset() < ea.getStartOffset() + ea.getDuration());
+        assertTrue(resourceManager.getBeanLifecycle().isBeanStarted(c));
+    }
+
+    @Test
+    void sameName() {
+        ResourceManager resourceManager = new ResourceManager();
+        StartupScheduler scheduler = resourceManager.getStartupScheduler();
+        // one thread: threads is read on every run
+        scheduler.setThreads(1);
+
+        Server a1 = new Server();
+        Server a2 = new Server();
+        Client c = new Client();
+        c.server = a2;
+        scheduler.submit("atom", "c", c);
+        scheduler.submit("atom", "a", a1);
+        scheduler.submit("atom", "a", a2);
+        scheduler.await();
+
+        assertTrue(a1.started && a2.started);
+        assertTrue(c.serverStarted);
+        List<StartupScheduler.TimelineEntry> timeline = scheduler.getTimeline();
+        assertEquals(3, timeline.size());
+        StartupScheduler.TimelineEntry first = timeline.get(0);
+        StartupScheduler.TimelineEntry second = timeline.get(1);
+        assertTrue(second.getStartOffset() >= first.getStartOffset() + first.getDuration());
+    }
+
+    @Test
+    void cycle() {
+        ResourceManager resourceManager = new ResourceManager();
+        StartupScheduler scheduler = resourceManager.getStartupScheduler();
+        CycleX x = new CycleX();
+        CycleY y = new CycleY();
+        scheduler.submit("atom", "x", x);
+        scheduler.submit("atom", "y", y);
+        SystemException ex = assertThrows(SystemException.class, scheduler::await);
+        assertTrue(ex.getMessage().contains("x -> y -> x"), ex.getMessage());
+        assertFalse(x.started || y.started);
+    }
+
+    @Test
+    void startThrowsError() throws Exception {
+        ResourceManager resourceManager = new ResourceManager();
+        StartupScheduler scheduler = resourceManager.getStartupScheduler();
+        Failing a = new Failing();
+        Client c = new Client();
+        c.server = a;
+        scheduler.submit("atom", "a", a);
+        scheduler.submit("atom", "c", c);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> future = executor.submit(scheduler::await);
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertTrue(ex.getCause() instanceof SystemException);
+            assertTrue(ex.getCause().getCause() instanceof Error);
+            assertFalse(resourceManager.getBeanLifecycle().isBeanStarted(c));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static class Server implements Startable {
+        volatile boolean started;
+
+        @Override
+        public void start() {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            started = true;
+        }
+    }
+
+    @DependsOn("a")
+    public static class Client implements Startable {
+        Server server;
+        boolean serverStarted;
+
+        @Override
+        public void start() {
+            serverStarted = server.started;
+        }
+    }
+
+    public static class Failing extends Server {
+        @Override
+        public void start() {
+            throw new Error("failed to start");
+        }
+    }
+
+    @DependsOn("y")
+    public static class CycleX extends Server {
+    }
+
+    @DependsOn("x")
+    public static class CycleY extends Server {
+    }
+
+    public static class Injected implements Startable {
+        @Inject
+        Server server;
+        boolean serverStarted;
+
+        @Override
+        public void start() {
+            serverStarted = server.started;
+        }
+    }
+}
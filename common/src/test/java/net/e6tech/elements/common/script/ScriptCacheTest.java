@@ -0,0 +1,109 @@
+/*
+Copyright 2017 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package net.e6tech.elements.common.script;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Created by futeh.
+ */
+public class ScriptCacheTest {
+
+    @Test
+    void cache() throws Exception {
+        Path dir = Files.createTempDirectory("scripts");
+        Path cacheDir = dir.resolve("cache");
+        Path script = dir.resolve("sample.groovy");
+        Files.write(script, "class Holder { int value = 2 }\n[1, 2, 3].collect { it * new Holder().value }.sum() + offset".getBytes("UTF-8"));
+
+        Properties properties = new Properties();
+        properties.setProperty(Scripting.CACHE_DIR, cacheDir.toString());
+
+        Scripting scripting = Scripting.newInstance(getClass().getClassLoader(), properties);
+        scripting.put("offset", 1);
+        assertEquals(13, scripting.exec(script.toString()));
+        assertEquals(1, scripting.getScriptCache().getMisses());
+
+        // a new instance, e.g. after restart, loads the compiled classes from disk.
+        scripting = Scripting.newInstance(getClass().getClassLoader(), properties);
+        scripting.put("offset", 2);
+        assertEquals(14, scripting.exec(script.toString()));
+        assertEquals(1, scripting.getScriptCache().getHits());
+        assertEquals(0, scripting.getScriptCache().getMisses());
+        System.out.println("saved " + scripting.getScriptCache().getSavings());
+
+        // changing the source causes recompilation
+        Files.write(script, "offset * 10".getBytes("UTF-8"));
+        assertEquals(20, scripting.exec(script.toString()));
+        assertEquals(1, scripting.getScriptCache().getMisses());
+        scripting.getScriptCache().clear();
+    }
+
+    @Test
+    void classesVisibleToLaterScripts() throws Exception {
+        Path dir = Files.createTempDirectory("scripts");
+        Path cacheDir = dir.resolve("cache");
+        Path first = dir.resolve("first.groovy");
+        Path second = dir.resolve("second.groovy");
+        Files.write(first, "class Shared { static int twice(int n) { n * 2 } }\nShared.twice(1)".getBytes("UTF-8"));
+        Files.write(second, "Shared.twice(21)".getBytes("UTF-8"));
+
+        Properties properties = new Properties();
+        properties.setProperty(Scripting.CACHE_DIR, cacheDir.toString());
+        for (int run = 0; run < 2; run++) {
+            // the first run compiles, the second loads from the cache; both must resolve Shared.
+            Scripting scripting = Scripting.newInstance(getClass().getClassLoader(), properties);
+            assertEquals(2, scripting.exec(first.toString()));
+            assertEquals(42, scripting.exec(second.toString()));
+            // evaluating the same script again defines a new class instead of failing.
+            assertEquals(2, scripting.exec(first.toString()));
+            if (run == 1)
+                assertTrue(scripting.getScriptCache().getHits() > 0);
+        }
+    }
+
+    @Test
+    void scriptPathChanges() throws Exception {
+        Path dir = Files.createTempDirectory("scripts");
+        Path cacheDir = dir.resolve("cache");
+        Path sources = dir.resolve("src");
+        Files.createDirectories(sources);
+        Path helper = sources.resolve("Helper.groovy");
+        Files.write(helper, "class Helper { static int value() { 1 } }".getBytes("UTF-8"));
+        Path script = dir.resolve("main.groovy");
+        Files.write(script, "Helper.value()".getBytes("UTF-8"));
+
+        Properties properties = new Properties();
+        properties.setProperty(Scripting.CACHE_DIR, cacheDir.toString());
+        properties.setProperty(Scripting.PATH, sources.toString());
+        Scripting scripting = Scripting.newInstance(getClass().getClassLoader(), properties);
+        assertEquals(1, scripting.exec(script.toString()));
+
+        Files.write(helper, "class Helper { static int value() { 2 } }".getBytes("UTF-8"));
+        helper.toFile().setLastModified(System.currentTimeMillis() + 2000L);
+        scripting = Scripting.newInstance(getClass().getClassLoader(), properties);
+        assertEquals(2, scripting.exec(script.toString()));
+        assertEquals(1, scripting.getScriptCache().getMisses());
+        assertEquals(0, scripting.getScriptCache().getHits());
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2015 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.common.util.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by futeh.
+ */
+public class BalancerTest {
+
+    @Test
+    void exclusive() throws Exception {
+        TestBalancer balancer = new TestBalancer();
+        balancer.addService(new Echo("a", 0));
+        balancer.addService(new Echo("b", 0));
+        balancer.start();
+        Service service = balancer.getService();
+        assertSame(service, balancer.getService());
+        assertEquals("hello", service.call("hello"));
+    }
+
+    @Test
+    void concurrentCalls() throws Exception {
+        TestBalancer balancer = new TestBalancer();
+        balancer.setConcurrent(true);
+        balancer.setMaxConcurrency(4);
+        Echo a = new Echo("a", 20);
+        Echo b = new Echo("b", 20);
+        balancer.addService(a);
+        balancer.addService(b);
+        balancer.start();
+
+        Service service = balancer.getService();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            String msg = "msg" + i;
+            futures.add(executor.submit(() -> service.call(msg)));
+        }
+        for (int i = 0; i < 40; i++)
+            assertEquals("msg" + i, futures.get(i).get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        // 8 callers share 2 services at once; exclusive checkout would take 40 * 20 / 2 = 400ms.
+        assertTrue(a.maxConcurrent.get() > 1 || b.maxConcurrent.get() > 1);
+        assertTrue(a.maxConcurrent.get() <= 4 && b.maxConcurrent.get() <= 4);
+        assertEquals(40, balancer.getBackends().get(0).getSuccessCount() + balancer.getBackends().get(1).getSuccessCount());
+    }
+
+    @Test
+    void prefersFasterService() throws Exception {
+        TestBalancer balancer = new TestBalancer();
+        balancer.setConcurrent(true);
+        Echo fast = new Echo("fast", 1);
+        Echo slow = new Echo("slow", 20);
+        balancer.addService(fast);
+        balancer.addService(slow);
+        balancer.start();
+        Service service = balancer.getService();
+        for (int i = 0; i < 100; i++)
+            service.call("x");
+        assertTrue(fast.calls.get() > slow.calls.get() * 5);
+    }
+
+    @Test
+    void avoidsFailingService() throws Exception {
+        TestBalancer balancer = new TestBalancer();
+        balancer.setConcurrent(true);
+        Echo good = new Echo("good", 0);
+        Echo bad = new Echo("bad", 0);
+        bad.failing = true;
+        balancer.addService(good);
+        balancer.addService(bad);
+        balancer.start();
+        Service service = balancer.getService();
+
+        // failures are retried on the other service and make the failing one expensive to pick.
+        for (int i = 0; i < 50; i++)
+            assertEquals("x", service.call("x"));
+        assertTrue(bad.calls.get() <= 2);
+        assertEquals(50, good.calls.get());
+    }
+
+    @Test
+    void circuitBreaker() throws Exception {
+        TestBalancer balancer = new TestBalancer();
+        balancer.setConcurrent(true);
+        balancer.setTimeout(50L);
+        balancer.setFailureThreshold(2);
+        balancer.setOpenTimeout(100L);
+        Echo echo = new Echo("echo", 0);
+        echo.failing = true;
+        balancer.addService(echo);
+        balancer.start();
+        Service service = balancer.getService();
+        Balancer.Backend<Service> backend = balancer.getBackends().get(0);
+
+        assertThrows(IOException.class, () -> service.call("x"));
+        assertEquals(Balancer.Backend.State.CLOSED, backend.getState());
+        assertThrows(IOException.class, () -> service.call("x"));
+        assertEquals(Balancer.Backend.State.OPEN, backend.getState());
+        assertEquals(1, balancer.stopped.get());
+
+        // still failing when probed: the breaker opens again, now for 200ms.
+        Thread.sleep(150L);
+        assertThrows(IOException.class, () -> service.call("x"));
+        assertEquals(Balancer.Backend.State.OPEN, backend.getState());
+        assertEquals(3, backend.getFailureCount());
+        assertEquals(1, balancer.restarted.get());
+
+        echo.failing = false;
+        Thread.sleep(100L);
+        assertThrows(IOException.class, () -> service.call("x"));
+        assertEquals(3, echo.calls.get());
+
+        Thread.sleep(150L);
+        assertEquals("x", service.call("x"));
+        assertEquals(Balancer.Backend.State.CLOSED, backend.getState());
+        assertEquals(2, balancer.restarted.get());
+        assertEquals(0, backend.getConsecutiveFailures());
+    }
+
+    @Test
+    void probeWithRuntimeException() throws Exception {
+        TestBalancer balancer = new TestBalancer();
+        balancer.setConcurrent(true);
+        balancer.setTimeout(50L);
+        balancer.setFailureThreshold(1);
+        balancer.setOpenTimeout(50L);
+        Echo echo = new Echo("echo", 0);
+        echo.failing = true;
+        balancer.addService(echo);
+        balancer.start();
+        Service service = balancer.getService();
+        Balancer.Backend<Service> backend = balancer.getBackends().get(0);
+
+        assertThrows(IOException.class, () -> service.call("x"));
+        assertEquals(Balancer.Backend.State.OPEN, backend.getState());
+
+        // the probe reaches the service, which answers with an application error.
+        echo.failing = false;
+        echo.rejecting = true;
+        Thread.sleep(80L);
+        assertThrows(RuntimeException.class, () -> service.call("x"));
+        assertEquals(Balancer.Backend.State.CLOSED, backend.getState());
+        echo.rejecting = false;
+        assertEquals("x", service.call("x"));
+    }
+
+    @Test
+    void probeWithError() throws Exception {
+        TestBalancer balancer = new TestBalancer();
+        balancer.setConcurrent(true);
+        balancer.setTimeout(50L);
+        balancer.setFailureThreshold(1);
+        balancer.setOpenTimeout(50L);
+        Echo echo = new Echo("echo", 0);
+        echo.failing = true;
+        balancer.addService(echo);
+        balancer.start();
+        Balancer.Backend<Service> backend = balancer.getBackends().get(0);
+
+        assertThrows(IOException.class, () -> balancer.getService().call("x"));
+        assertEquals(Balancer.Backend.State.OPEN, backend.getState());
+
+        // the probe ends in an Error: the breaker opens again instead of staying half-open.
+        Thread.sleep(80L);
+        assertThrows(Error.class, () -> balancer.execute(s -> {
+            throw new Error("probe failed");
+        }));
+        assertEquals(Balancer.Backend.State.OPEN, backend.getState());
+        assertEquals(0, backend.getOutstanding());
+
+        // and it is probed again once the (doubled) open timeout has passed.
+        echo.failing = false;
+        Thread.sleep(150L);
+        assertEquals("x", balancer.getService().call("x"));
+        assertEquals(Balancer.Backend.State.CLOSED, backend.getState());
+    }
+
+    @Test
+    void allFailing() {
+        TestBalancer balancer = new TestBalancer();
+        balancer.setConcurrent(true);
+        balancer.setTimeout(100L);
+        balancer.setFailureThreshold(2);
+        Echo bad = new Echo("bad", 0);
+        bad.failing = true;
+        balancer.addService(bad);
+        balancer.start();
+        Service service = balancer.getService();
+        assertThrows(IOException.class, () -> service.call("x"));
+        assertThrows(IOException.class, () -> service.call("x"));
+        // breaker is open, so the next call times out waiting for a service.
+        long start = System.currentTimeMillis();
+        assertThrows(IOException.class, () -> service.call("x"));
+        assertTrue(System.currentTimeMillis() - start >= 90L);
+    }
+
+    public interface Service {
+        String call(String msg) throws IOException;
+    }
+
+    private static class Echo implements Service {
+        String name;
+        long delay;
+        volatile boolean failing;
+        volatile boolean rejecting;
+        AtomicInteger calls = new AtomicInteger();
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+
+        Echo(String name, long delay) {
+            this.name = name;
+            this.delay = delay;
+        }
+
+        @Override
+        public String call(String msg) throws IOException {
+            calls.incrementAndGet();
+            int count = concurrent.incrementAndGet();
+            maxConcurrent.accumulateAndGet(count, Math::max);
+            try {
+                if (failing)
+                    throw new IOException(name + " failed");
+                if (rejecting)
+                    throw new IllegalArgumentException(name + " rejected " + msg);
+                if (delay > 0)
+                    Thread.sleep(delay);
+                return msg;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } finally {
+                concurrent.decrementAndGet();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static class TestBalancer extends Balancer<Service> {
+        AtomicInteger restarted = new AtomicInteger();
+        AtomicInteger stopped = new AtomicInteger();
+        boolean started = false;
+
+        @Override
+        protected void start(Service service) {
+            if (started)
+                restarted.incrementAndGet();
+        }
+
+        @Override
+        protected void stop(Service service) {
+            stopped.incrementAndGet();
+        }
+
+        @Override
+        public void start() {
+            super.start();
+            started = true;
+        }
+    }
+}
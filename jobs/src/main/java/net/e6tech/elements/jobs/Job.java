@@ -31,11 +31,14 @@ import org.quartz.impl.JobDetailImpl;
 import org.quartz.impl.StdSchedulerFactory;
 import org.quartz.impl.triggers.CronTriggerImpl;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Created by futeh.
@@ -55,8 +58,11 @@ public class Job implements Initializable, Startable, LaunchListener {
     private long initialDelay = 0;
     private boolean concurrent = false;
     private Method invocation;
+    private MethodHandle handle;  // invocation bound to target
     private Object target;
     private String targetMethod;
+    private LightweightScheduler.Entry entry;  // set when scheduled by a LightweightScheduler
+    private final AtomicBoolean executing = new AtomicBoolean(false);  // kept across stop and resume
 
     public JobServer getJobServer() {
         return jobServer;
@@ -66,13 +72,31 @@ public class Job implements Initializable, Startable, LaunchListener {
         this.jobServer = jobServer;
     }
 
+    private boolean isLightweight() {
+        return jobServer != null && jobServer.isLightweight();
+    }
+
     @JmxOperation
     public void stop() throws SchedulerException {
+        if (isLightweight()) {
+            if (entry != null) {
+                entry.cancel();
+                entry.unregisterMBeans();
+                entry = null;
+            }
+            return;
+        }
         scheduler.deleteJob(new JobKey(name, group));
     }
 
     @JmxOperation
     public void resume() throws SchedulerException {
+        if (isLightweight()) {
+            if (entry == null)
+                scheduleLightweight();
+            return;
+        }
+
         if (scheduler.getJobDetail(new JobKey(name, group))!= null) {
             // job is still scheduled so that we just make sure the trigger is still running.
             CronTriggerImpl trigger = (CronTriggerImpl) scheduler.getTrigger(new TriggerKey(name, group));
@@ -104,6 +128,10 @@ public class Job implements Initializable, Startable, LaunchListener {
 
     @JmxAttributeMethod
     public String getNextFireTime() {
+        if (isLightweight()) {
+            Date date = (entry == null) ? null : entry.getNextFireTime();
+            return (date == null) ? "NA" : date.toString();
+        }
         try {
             Trigger trigger = scheduler.getTrigger(new TriggerKey(name, group));
             return trigger.getNextFireTime().toString();
@@ -117,6 +145,8 @@ public class Job implements Initializable, Startable, LaunchListener {
 
     @JmxAttributeMethod
     public boolean isRunning() {
+        if (isLightweight())
+            return entry != null && entry.getNextFireTime() != null;
         try {
             return scheduler.getJobDetail(new JobKey(name, group)) != null;
         } catch (SchedulerException e) {
@@ -133,11 +163,35 @@ public class Job implements Initializable, Startable, LaunchListener {
                 target = ((Class) target).newInstance();
             }
             invocation = target.getClass().getMethod(targetMethod);
+            handle = bind(invocation);
         } catch (Exception e) {
             throw logger.systemException(e);
         }
     }
 
+    private MethodHandle bind(Method method) throws IllegalAccessException {
+        if (!method.isAccessible())
+            method.setAccessible(true);
+        return MethodHandles.lookup().unreflect(method)
+                .bindTo(target)
+                .asType(MethodType.methodType(Object.class));
+    }
+
+    private void scheduleLightweight() {
+        entry = jobServer.getLightweightScheduler().schedule(this);
+        entry.registerMBeans();
+    }
+
+    // set while a lightweight run is in progress
+    AtomicBoolean executing() {
+        return executing;
+    }
+
+    @JmxAttributeMethod
+    public long getSkippedCount() {
+        return (entry == null) ? 0 : entry.getSkipped();
+    }
+
     @Override
     public void initialize(Resources resources) {
         // do nothing
@@ -147,6 +201,10 @@ public class Job implements Initializable, Startable, LaunchListener {
         try {
             logger.info("Scheduled job=" + getName());
             init();
+            if (isLightweight()) {
+                scheduleLightweight();
+                return;
+            }
             JobDetail jobDetail = newJobDetail();
             CronTrigger trigger = newCronTrigger();
             if (jobServer != null) {
@@ -199,18 +257,16 @@ public class Job implements Initializable, Startable, LaunchListener {
 
     @SuppressWarnings("squid:S00112")
     public Object execute() throws Throwable {
-        try {
-            // this call is executed using a different thread so that we need to set up
-            // logging context.
-            if (jobServer != null &&
-                    jobServer.resourceManager != null) {
-                jobServer.resourceManager.createLoggerContext();
-            }
-            return invocation.invoke(target);
-        } catch (InvocationTargetException ex) {
-            Logger.suppress(ex);
-            throw ex.getTargetException();
+        // this call is executed using a different thread so that we need to set up
+        // logging context.
+        if (jobServer != null &&
+                jobServer.resourceManager != null) {
+            jobServer.resourceManager.createLoggerContext();
         }
+        if (handle == null)
+            handle = bind(invocation);
+        // the handle is bound to target, so there is no reflection or InvocationTargetException wrapping per call.
+        return (Object) handle.invokeExact();
     }
 
     public Scheduler getScheduler() {
@@ -292,6 +348,7 @@ public class Job implements Initializable, Startable, LaunchListener {
 
     public void setInvocation(Method invocation) {
         this.invocation = invocation;
+        this.handle = null;
     }
 
     public Object getTarget() {
@@ -300,6 +357,7 @@ public class Job implements Initializable, Startable, LaunchListener {
 
     public void setTarget(Object target) {
         this.target = target;
+        this.handle = null;
     }
 
     public String getTargetMethod() {
@@ -24,6 +24,9 @@ import org.quartz.SchedulerException;
 import org.quartz.impl.StdSchedulerFactory;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by futeh.
@@ -34,6 +37,10 @@ public class JobServer {
 
     private Map<String, Job> jobs = new LinkedHashMap<>();
     Scheduler scheduler;
+    private boolean lightweight = false;
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private LightweightScheduler lightweightScheduler;
+    private ExecutorService executor;  // owned by this server and stopped by shutdown()
 
     @Inject
     ResourceManager resourceManager;
@@ -65,6 +72,57 @@ public class JobServer {
         return scheduler;
     }
 
+    /**
+     * If true, jobs are scheduled by a LightweightScheduler instead of Quartz.  Must be set before jobs are registered.
+     */
+    public boolean isLightweight() {
+        return lightweight;
+    }
+
+    public void setLightweight(boolean lightweight) {
+        this.lightweight = lightweight;
+    }
+
+    // number of worker threads used by the lightweight scheduler
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public synchronized LightweightScheduler getLightweightScheduler() {
+        if (lightweightScheduler == null || lightweightScheduler.isShutdown()) {
+            String name = "JobServer-" + System.identityHashCode(this);
+            AtomicInteger count = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(workers, runnable -> {
+                Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            lightweightScheduler = new LightweightScheduler(name, executor);
+        }
+        return lightweightScheduler;
+    }
+
+    public synchronized void shutdown() {
+        if (lightweightScheduler != null)
+            lightweightScheduler.shutdown();
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        if (scheduler != null) {
+            try {
+                scheduler.shutdown();
+            } catch (SchedulerException e) {
+                logger.warn(e.getMessage(), e);
+            }
+            scheduler = null;
+        }
+    }
+
     public Job registerJob(String name, Object target) {
         Job job = resourceManager.registerBean(name, Job.class);
         job.setJobServer(this);
@@ -76,7 +134,8 @@ public class JobServer {
 
         JMXService.registerMBean(instance, "net.e6tech:type=JobTarget,name=" + name);
         job.setTarget(instance);
-        job.setScheduler(getScheduler());
+        if (!lightweight)
+            job.setScheduler(getScheduler());
         job.setName(name);
         JMXService.registerMBean(job, "net.e6tech:type=Job,name=" + name);
 
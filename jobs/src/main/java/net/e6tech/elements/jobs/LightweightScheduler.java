@@ -0,0 +1,262 @@
+/*
+Copyright 2015 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package net.e6tech.elements.jobs;
+
+import net.e6tech.elements.common.logging.Logger;
+import net.e6tech.elements.common.util.SystemException;
+import net.e6tech.elements.jmx.JMXService;
+import net.e6tech.elements.jmx.stat.Measurement;
+import org.quartz.CronExpression;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lightweight alternative to Quartz for in-process jobs.  Cron expressions are parsed once per job and
+ * all jobs are driven by a single timer thread using a hashed timing wheel.  Jobs are run on the supplied
+ * executor.  A non-concurrent job that is still running when it is due again is skipped rather than queued.
+ *
+ * Created by futeh.
+ */
+public class LightweightScheduler {
+
+    private static Logger logger = Logger.getLogger();
+    public static final long DEFAULT_TICK = 100L;  // milliseconds
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final long tick;
+    private final List<Entry>[] wheel;  // only accessed by the timer thread
+    private final Queue<Entry> pending = new ConcurrentLinkedQueue<>();
+    private final ExecutorService executor;
+    private final Thread timer;
+    private final long startTime;
+    private long currentTick = 0;
+    private volatile boolean running = true;
+
+    public LightweightScheduler(String name, ExecutorService executor) {
+        this(name, executor, DEFAULT_TICK, DEFAULT_WHEEL_SIZE);
+    }
+
+    @SuppressWarnings("unchecked")
+    public LightweightScheduler(String name, ExecutorService executor, long tick, int wheelSize) {
+        this.executor = executor;
+        this.tick = tick;
+        wheel = new List[wheelSize];
+        for (int i = 0; i < wheelSize; i++)
+            wheel[i] = new LinkedList<>();
+        startTime = System.currentTimeMillis();
+        timer = new Thread(this::runTimer, name + "-timer");
+        timer.setDaemon(true);
+        timer.start();
+    }
+
+    public Entry schedule(Job job) {
+        if (!running)
+            throw new IllegalStateException("Scheduler has been shut down");
+        Entry entry = new Entry(job);
+        entry.nextFire = entry.nextFireAfter(System.currentTimeMillis() + job.getInitialDelay() - 1);
+        if (entry.nextFire > 0) {
+            pending.add(entry);
+            LockSupport.unpark(timer);
+        }
+        return entry;
+    }
+
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(timer);
+    }
+
+    public boolean isShutdown() {
+        return !running;
+    }
+
+    private void runTimer() {
+        long next = startTime + tick;
+        while (running) {
+            long wait = next - System.currentTimeMillis();
+            if (wait > 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(wait));
+                continue;
+            }
+
+            try {
+                Entry entry;
+                while ((entry = pending.poll()) != null)
+                    place(entry);
+                expire();
+            } catch (Exception ex) {
+                logger.warn("Job scheduler timer failed", ex);
+            }
+            currentTick++;
+            next += tick;
+        }
+    }
+
+    private void place(Entry entry) {
+        if (entry.cancelled)
+            return;
+        long deadline = (entry.nextFire - startTime + tick - 1) / tick;
+        if (deadline < currentTick)
+            deadline = currentTick;
+        entry.rounds = (deadline - currentTick) / wheel.length;
+        wheel[(int) (deadline % wheel.length)].add(entry);
+    }
+
+    private void expire() {
+        List<Entry> due = null;
+        Iterator<Entry> iterator = wheel[(int) (currentTick % wheel.length)].iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.cancelled) {
+                iterator.remove();
+            } else if (entry.rounds > 0) {
+                entry.rounds--;
+            } else {
+                iterator.remove();
+                if (due == null)
+                    due = new ArrayList<>();
+                due.add(entry);
+            }
+        }
+
+        if (due == null)
+            return;
+
+        for (Entry entry : due) {
+            fire(entry);
+            entry.nextFire = entry.nextFireAfter(Math.max(entry.nextFire, System.currentTimeMillis()));
+            if (entry.nextFire > 0)
+                place(entry);
+        }
+    }
+
+    private void fire(Entry entry) {
+        long scheduled = entry.nextFire;
+        if (!entry.job.isConcurrent() && !entry.executing.compareAndSet(false, true)) {
+            entry.skipped.increment();
+            return;
+        }
+
+        try {
+            executor.execute(() -> entry.run(scheduled));
+        } catch (RejectedExecutionException ex) {
+            entry.executing.set(false);
+            entry.skipped.increment();
+            logger.warn("Job " + entry.job.getName() + " rejected", ex);
+        }
+    }
+
+    /**
+     * A scheduled job with its parsed cron expression and metrics.
+     */
+    public static class Entry {
+        private final Job job;
+        private final CronExpression cron;
+        private final Measurement latency;
+        private final Measurement lateness;
+        private final AtomicBoolean executing;
+        private final LongAdder skipped = new LongAdder();
+        private volatile long nextFire;
+        private volatile boolean cancelled = false;
+        private long rounds;
+
+        Entry(Job job) {
+            this.job = job;
+            // belongs to the job so that a run from a cancelled entry still blocks the entry that replaces it
+            executing = job.executing();
+            try {
+                cron = new CronExpression(job.getCronExpression());
+            } catch (ParseException e) {
+                throw new SystemException(e);
+            }
+            cron.setTimeZone(job.getTimezone());
+            latency = new Measurement(job.getName() + ".latency", "ms", true);
+            lateness = new Measurement(job.getName() + ".lateness", "ms", true);
+        }
+
+        // returns 0 if there is no more fire time.
+        private long nextFireAfter(long time) {
+            Date date = cron.getNextValidTimeAfter(new Date(time));
+            return (date == null) ? 0 : date.getTime();
+        }
+
+        @SuppressWarnings("squid:S1181")
+        private void run(long scheduled) {
+            long start = System.currentTimeMillis();
+            lateness.add((double) (start - scheduled));
+            try {
+                job.execute();
+                latency.add((double) (System.currentTimeMillis() - start));
+            } catch (Throwable th) {
+                latency.fail();
+                logger.warn("Job " + job.getName() + " failed", th);
+            } finally {
+                executing.set(false);
+            }
+        }
+
+        void registerMBeans() {
+            JMXService.registerMBean(latency, "net.e6tech:type=JobMetrics,name=" + job.getName() + ",metric=latency");
+            JMXService.registerMBean(lateness, "net.e6tech:type=JobMetrics,name=" + job.getName() + ",metric=lateness");
+        }
+
+        void unregisterMBeans() {
+            JMXService.unregisterMBean("net.e6tech:type=JobMetrics,name=" + job.getName() + ",metric=latency");
+            JMXService.unregisterMBean("net.e6tech:type=JobMetrics,name=" + job.getName() + ",metric=lateness");
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public Job getJob() {
+            return job;
+        }
+
+        public Date getNextFireTime() {
+            return (nextFire == 0 || cancelled) ? null : new Date(nextFire);
+        }
+
+        public long getSkipped() {
+            return skipped.sum();
+        }
+
+        public Measurement getLatency() {
+            return latency;
+        }
+
+        public Measurement getLateness() {
+            return lateness;
+        }
+    }
+}
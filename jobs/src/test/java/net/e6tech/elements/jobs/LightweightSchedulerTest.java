@@ -0,0 +1,122 @@
+/*
+Copyright 2015 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package net.e6tech.elements.jobs;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by futeh.
+ */
+public class LightweightSchedulerTest {
+
+    public static class Counter {
+        AtomicInteger count = new AtomicInteger();
+        volatile CountDownLatch fired = new CountDownLatch(0);
+        CountDownLatch release = new CountDownLatch(0);
+        volatile Thread thread;
+
+        public void run() throws InterruptedException {
+            thread = Thread.currentThread();
+            count.incrementAndGet();
+            fired.countDown();
+            release.await();
+        }
+    }
+
+    private Job newJob(JobServer server, String name, Object target) {
+        Job job = new Job();
+        job.setJobServer(server);
+        job.setName(name);
+        job.setTarget(target);
+        job.setTargetMethod("run");
+        job.setCronExpression("* * * * * ?"); // every second
+        return job;
+    }
+
+    @Test
+    public void schedule() throws Exception {
+        JobServer server = new JobServer();
+        server.setLightweight(true);
+        server.setWorkers(2);
+
+        Counter fast = new Counter();
+        fast.fired = new CountDownLatch(3);
+        Job fastJob = newJob(server, "fast", fast);
+        Counter slow = new Counter();
+        slow.release = new CountDownLatch(1);
+        Job slowJob = newJob(server, "slow", slow);
+        try {
+            fastJob.start();
+            slowJob.start();
+            assertTrue(fastJob.isRunning());
+
+            // by the third fast run, the slow job has been due at least once while still running
+            assertTrue(fast.fired.await(5, TimeUnit.SECONDS));
+            assertEquals(1, slow.count.get());
+            assertTrue(slowJob.getSkippedCount() >= 1);
+            slow.release.countDown();
+
+            fastJob.stop();
+            assertFalse(fastJob.isRunning());
+            fast.fired = new CountDownLatch(1);
+            assertFalse(fast.fired.await(1500, TimeUnit.MILLISECONDS));
+        } finally {
+            slow.release.countDown();
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void resumeWhileRunning() throws Exception {
+        JobServer server = new JobServer();
+        server.setLightweight(true);
+        server.setWorkers(2);
+
+        Counter slow = new Counter();
+        slow.fired = new CountDownLatch(1);
+        slow.release = new CountDownLatch(1);
+        Job slowJob = newJob(server, "slow", slow);
+        Counter ticks = new Counter();
+        Job tickJob = newJob(server, "ticks", ticks);
+        try {
+            slowJob.start();
+            assertTrue(slow.fired.await(5, TimeUnit.SECONDS));
+
+            // the first run is still executing, so the resumed schedule must not start another one
+            slowJob.stop();
+            slowJob.resume();
+            ticks.fired = new CountDownLatch(2);
+            tickJob.start();
+            assertTrue(ticks.fired.await(5, TimeUnit.SECONDS));
+            assertEquals(1, slow.count.get());
+            assertTrue(slowJob.getSkippedCount() >= 1);
+        } finally {
+            slow.release.countDown();
+            server.shutdown();
+        }
+
+        // workers belong to the server and stop with it
+        slow.thread.join(5000);
+        assertFalse(slow.thread.isAlive());
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.persist.hibernate;
+
+import net.e6tech.elements.common.logging.Logger;
+import net.e6tech.elements.common.util.SystemException;
+import net.e6tech.elements.common.util.concurrent.ThreadPool;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IntegralDataTypeHolder;
+import org.hibernate.id.enhanced.AccessCallback;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * A table based generator that hands out ids from blocks reserved in the sequence table.  Each reservation
+ * advances the sequence row by blockSize in one round trip, so it is compatible with the rows written by
+ * TableIdGenerator's pooled-lo optimizer.  When no more than prefetchThreshold ids are left in the current block,
+ * the next block is reserved in the background using a separate session, so that inserts rarely wait on the
+ * sequence table.  Block size can be tuned per node; larger blocks mean fewer updates to the sequence row at
+ * the cost of bigger gaps when a node restarts.
+ *
+ * Created by futeh.
+ */
+@SuppressWarnings("squid:S2160")
+public class BlockIdGenerator extends TableIdGenerator {
+
+    private static Logger logger = Logger.getLogger();
+
+    private int blockSize = 1000;
+    private int prefetchThreshold = -1;
+    private boolean prefetch = true;
+
+    private long next = 0;
+    private long end = 0;
+    private Future<Long> prefetched;
+
+    public BlockIdGenerator() {
+        setDefaultIncrementSize(blockSize);
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public void setBlockSize(int blockSize) {
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("blockSize must be positive");
+        this.blockSize = blockSize;
+        setDefaultIncrementSize(blockSize);
+    }
+
+    /**
+     * Number of remaining ids in the current block at which the next block is requested.  Defaults to a quarter of
+     * the block size.
+     */
+    public int getPrefetchThreshold() {
+        return (prefetchThreshold < 0) ? blockSize / 4 : prefetchThreshold;
+    }
+
+    public void setPrefetchThreshold(int prefetchThreshold) {
+        this.prefetchThreshold = prefetchThreshold;
+    }
+
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
+    public void setPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+    }
+
+    @Override
+    public BlockIdGenerator clone() {
+        BlockIdGenerator generator = (BlockIdGenerator) super.clone();
+        generator.next = 0;
+        generator.end = 0;
+        generator.prefetched = null;
+        return generator;
+    }
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) {
+        // every round trip reserves a whole block; blocks are managed here instead of by the optimizer.
+        params.setProperty(OPT_PARAM, BlockOptimizer.class.getName());
+        params.setProperty(INCREMENT_PARAM, Integer.toString(blockSize));
+        super.configure(type, params, serviceRegistry);
+    }
+
+    @Override
+    public synchronized Serializable generate(SharedSessionContractImplementor session, Object obj) {
+        if (next >= end) {
+            long start = (prefetched != null) ? awaitPrefetched(session, obj) : reserve(session, obj);
+            next = start;
+            end = start + blockSize;
+        }
+        long id = next++;
+        if (prefetch && prefetched == null && end - next <= getPrefetchThreshold())
+            prefetched = prefetch(session.getFactory());
+        return toIdentifier(id);
+    }
+
+    private long reserve(SharedSessionContractImplementor session, Object obj) {
+        return ((Number) super.generate(session, obj)).longValue();
+    }
+
+    // reserves the next block with its own session so that it does not share the caller's session across threads.
+    private Future<Long> prefetch(SessionFactoryImplementor factory) {
+        return ThreadPool.cachedThreadPool(getClass().getName()).submit(() -> {
+            try (Session session = factory.withOptions().noInterceptor().openSession()) {
+                return reserve((SharedSessionContractImplementor) session, null);
+            }
+        });
+    }
+
+    private long awaitPrefetched(SharedSessionContractImplementor session, Object obj) {
+        Future<Long> future = prefetched;
+        prefetched = null;
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemException(e);
+        } catch (ExecutionException e) {
+            logger.warn("Unable to prefetch id block for " + getSegmentValue() + ", reserving with the current session", e.getCause());
+            return reserve(session, obj);
+        }
+    }
+
+    private Serializable toIdentifier(long id) {
+        Class cls = getIdentifierType().getReturnedClass();
+        if (cls == Integer.class || cls == int.class)
+            return (int) id;
+        else if (cls == Short.class || cls == short.class)
+            return (short) id;
+        return id;
+    }
+
+    /*
+     * Advances the sequence row by the increment size and returns the start of the reserved block.  Hibernate
+     * instantiates it by class name with a (Class, int) constructor.
+     */
+    public static class BlockOptimizer implements Optimizer {
+        private int incrementSize;
+        private IntegralDataTypeHolder lastSourceValue;
+
+        public BlockOptimizer(Class returnClass, int incrementSize) {
+            this.incrementSize = incrementSize;
+        }
+
+        @Override
+        public synchronized Serializable generate(AccessCallback callback) {
+            IntegralDataTypeHolder value = callback.getNextValue();
+            while (value.lt(1))
+                value = callback.getNextValue();
+            lastSourceValue = value;
+            return value.makeValue();
+        }
+
+        @Override
+        public synchronized IntegralDataTypeHolder getLastSourceValue() {
+            return lastSourceValue;
+        }
+
+        @Override
+        public int getIncrementSize() {
+            return incrementSize;
+        }
+
+        @Override
+        public boolean applyIncrementSizeToSourceValues() {
+            return true;
+        }
+    }
+}
@@ -21,7 +21,9 @@ import net.e6tech.elements.common.logging.Logger;
 import net.e6tech.elements.common.resources.Resources;
 import net.e6tech.elements.common.serialization.ObjectReference;
 import net.e6tech.elements.common.util.InitialContextFactory;
+import net.e6tech.elements.common.util.concurrent.ThreadPool;
 import net.e6tech.elements.persist.*;
+import net.e6tech.elements.persist.criteria.Select;
 import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.id.IdentifierGenerator;
 import org.hibernate.internal.SessionImpl;
@@ -34,6 +36,7 @@ import javax.persistence.EntityManager;
 import java.io.Serializable;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Created by futeh.
@@ -43,6 +46,30 @@ public class HibernateEntityManagerProvider extends EntityManagerProvider {
     private static Logger logger = Logger.getLogger();
 
     private Map<String, IdentifierGenerator> identifierGenerators = new LinkedHashMap<>();
+    private int listenerBatchSize = 256;
+    private ExecutorService listenerExecutor;
+
+    public int getListenerBatchSize() {
+        return listenerBatchSize;
+    }
+
+    /**
+     * Number of PersistenceListener.preFlush calls dispatched as one task.  Flushes with fewer listeners run them
+     * in the flushing thread; 0 always does.
+     */
+    public void setListenerBatchSize(int listenerBatchSize) {
+        this.listenerBatchSize = listenerBatchSize;
+    }
+
+    public synchronized ExecutorService getListenerExecutor() {
+        if (listenerExecutor == null)
+            listenerExecutor = ThreadPool.fixedThreadPool("PersistenceListener", Runtime.getRuntime().availableProcessors());
+        return listenerExecutor;
+    }
+
+    public synchronized void setListenerExecutor(ExecutorService listenerExecutor) {
+        this.listenerExecutor = listenerExecutor;
+    }
 
     @Override
     public void initialize(Resources resources) {
@@ -65,6 +92,7 @@ public class HibernateEntityManagerProvider extends EntityManagerProvider {
             getPersistenceProperties().put(AvailableSettings.IDENTIFIER_GENERATOR_STRATEGY_PROVIDER,
                     (IdentifierGeneratorStrategyProvider)() -> strategies);
         }
+        Select.setScroller(new HibernateScroller());
         super.initialize(resources);
     }
 
@@ -118,6 +146,11 @@ public class HibernateEntityManagerProvider extends EntityManagerProvider {
             PersistenceInterceptor interceptor = (PersistenceInterceptor) session.getInterceptor();
             // cannot call resources.inject(interceptor), it is not open yet
             interceptor.setResources(resources);
+            if (interceptor instanceof Interceptor) {
+                ((Interceptor) interceptor).setListenerBatchSize(listenerBatchSize);
+                if (listenerBatchSize > 0)
+                    ((Interceptor) interceptor).setListenerExecutor(getListenerExecutor());
+            }
         }
     }
 
@@ -0,0 +1,66 @@
+/*
+Copyright 2015 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package net.e6tech.elements.persist.hibernate;
+
+import net.e6tech.elements.persist.criteria.Scroller;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+
+import javax.persistence.Query;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streams query results through a forward-only ScrollableResults.
+ *
+ * Created by futeh.
+ */
+public class HibernateScroller implements Scroller {
+
+    @Override
+    public <R> Stream<R> scroll(Query query, int fetchSize) {
+        org.hibernate.query.Query hibernateQuery = query.unwrap(org.hibernate.query.Query.class);
+        if (fetchSize > 0)
+            hibernateQuery.setFetchSize(fetchSize);
+        ScrollableResults results = hibernateQuery.scroll(ScrollMode.FORWARD_ONLY);
+        Iterator<R> iterator = new Iterator<R>() {
+            private Boolean hasNext;
+
+            @Override
+            public boolean hasNext() {
+                if (hasNext == null)
+                    hasNext = results.next();
+                return hasNext;
+            }
+
+            @Override
+            public R next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                hasNext = null;
+                Object[] row = results.get();
+                return (R) ((row.length == 1) ? row[0] : row);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .onClose(results::close);
+    }
+}
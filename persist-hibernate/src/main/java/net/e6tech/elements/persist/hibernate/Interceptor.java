@@ -31,11 +31,10 @@ import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.type.Type;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 
 /**
@@ -54,6 +53,10 @@ public class Interceptor extends EmptyInterceptor implements PersistenceIntercep
     @Inject(optional = true)
     protected transient NotificationCenter center;
 
+    // set by HibernateEntityManagerProvider.onOpen
+    protected transient int listenerBatchSize = 0;
+    protected transient ExecutorService listenerExecutor;
+
     public Resources getResources() {
         return resources;
     }
@@ -63,12 +66,41 @@ public class Interceptor extends EmptyInterceptor implements PersistenceIntercep
         this.resources = resources;
     }
 
+    public int getListenerBatchSize() {
+        return listenerBatchSize;
+    }
+
+    /**
+     * Number of PersistenceListener.preFlush calls grouped into one task on the listener executor.  If a flush has no
+     * more listeners than that, or the size is 0 or there is no executor, listeners are called in the flushing thread.
+     */
+    public void setListenerBatchSize(int listenerBatchSize) {
+        this.listenerBatchSize = listenerBatchSize;
+    }
+
+    public ExecutorService getListenerExecutor() {
+        return listenerExecutor;
+    }
+
+    public void setListenerExecutor(ExecutorService listenerExecutor) {
+        this.listenerExecutor = listenerExecutor;
+    }
+
     public void cleanup(Resources resources) {
         this.resources = null;
         this.sessionFactory = null;
         this.center = null;
     }
 
+    /*
+     * Injects an entity only if its class has anything to inject.  Entities are not tracked here: holding on to them
+     * would keep them alive after the session is cleared and would skip re-attached entities.
+     */
+    protected void inject(Object entity) {
+        if (resources != null && resources.isInjectable(entity.getClass()))
+            resources.inject(entity);
+    }
+
     @Override
     public boolean onFlushDirty(
             Object entity,
@@ -79,8 +111,7 @@ public class Interceptor extends EmptyInterceptor implements PersistenceIntercep
             Type[] types) {
         boolean modified = false;
         if (entity instanceof PersistenceListener) {
-            if (resources != null)
-                resources.inject(entity);
+            inject(entity);
             long start = System.currentTimeMillis();
             modified = ((PersistenceListener) entity).onFlush(id, currentState, previousState, propertyNames);
             Watcher.addGracePeriod(System.currentTimeMillis() - start);
@@ -96,14 +127,11 @@ public class Interceptor extends EmptyInterceptor implements PersistenceIntercep
             Object[] state,
             String[] propertyNames,
             Type[] types) {
-        // commented out because of performance impact
-        // we could consider if resources is not null then resources.inject(entity)
-        // however, performance may be problem
-        // UPDATE: performance definitely be problematic
+        // injection used to be a performance problem when loading many entities.  inject(entity) now skips
+        // classes without injection points.
         boolean modified = false;
         if (entity instanceof PersistenceListener) {
-            if (resources != null)
-                resources.inject(entity);
+            inject(entity);
             long start = System.currentTimeMillis();
             modified = ((PersistenceListener) entity).onLoad(id, state, propertyNames);
             Watcher.addGracePeriod(System.currentTimeMillis() - start);
@@ -121,14 +149,9 @@ public class Interceptor extends EmptyInterceptor implements PersistenceIntercep
             Object[] state,
             String[] propertyNames,
             Type[] types) {
-        // commented out because of performance impact
-        // we could consider if resources is not null then resources.inject(entity)
-        // however, performance may be problem.
-        // UPDATE: performance definitely be problematic
         boolean modified = false;
         if (entity instanceof PersistenceListener) {
-            if (resources != null)
-                resources.inject(entity);
+            inject(entity);
             long start = System.currentTimeMillis();
             modified = ((PersistenceListener) entity).onSave(id, state, propertyNames);
             Watcher.addGracePeriod(System.currentTimeMillis() - start);
@@ -154,17 +177,33 @@ public class Interceptor extends EmptyInterceptor implements PersistenceIntercep
             }
         }
         if (listeners != null) {
-            // this can be parallelized.
-            try {
-                long start = System.currentTimeMillis();
-                listeners.stream()
-                        .map(listener -> CompletableFuture.runAsync(listener::preFlush))
-                        .collect(Collectors.toList())
-                        .forEach(CompletableFuture::join);
-                Watcher.addGracePeriod(System.currentTimeMillis() - start);
-            } catch (Exception e) {
-                throw new SystemException(e);
+            long start = System.currentTimeMillis();
+            if (listenerExecutor == null || listenerBatchSize <= 0 || listeners.size() <= listenerBatchSize) {
+                listeners.forEach(PersistenceListener::preFlush);
+            } else {
+                preFlush(listeners);
             }
+            Watcher.addGracePeriod(System.currentTimeMillis() - start);
+        }
+    }
+
+    // runs preFlush in groups of listenerBatchSize on the listener executor.
+    private void preFlush(List<PersistenceListener> listeners) {
+        List<Future<?>> futures = new ArrayList<>(listeners.size() / listenerBatchSize + 1);
+        for (int i = 0; i < listeners.size(); i += listenerBatchSize) {
+            List<PersistenceListener> group = listeners.subList(i, Math.min(i + listenerBatchSize, listeners.size()));
+            futures.add(listenerExecutor.submit(() -> group.forEach(PersistenceListener::preFlush)));
+        }
+        try {
+            for (Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            throw new SystemException(e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw new SystemException(e.getCause());
         }
     }
 
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.persist.hibernate;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.Configurable;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates time ordered 64 bit ids without a database round trip.  An id consists of
+ * 41 bits of milliseconds since epoch, 10 bits of node id and 12 bits of sequence, so each node can generate
+ * 4096 ids per millisecond; beyond that, ids borrow from the next millisecond.  Ids are unique as long as
+ * every node uses a distinct nodeId, so nodeId must be set explicitly, either on the generator or as the
+ * nodeId parameter of the generator mapping; configure fails otherwise.  The entity's id must be a long.
+ *
+ * Created by futeh.
+ */
+public class TimeOrderedIdGenerator implements IdentifierGenerator, Configurable {
+
+    public static final int NODE_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    public static final String NODE_ID_PARAM = "nodeId";
+
+    // shared by all entities so that ids are ordered across tables as well.
+    private static final AtomicLong lastTick = new AtomicLong();
+
+    private long epoch = 1420070400000L; // 2015-01-01T00:00:00Z
+    private int nodeId = -1;  // not set
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @param nodeId between 0 and MAX_NODE_ID, or -1 for not set.  Prototype classes copy every property,
+     *               so an unset nodeId is copied as -1 and left for the mapping's nodeId parameter.
+     */
+    public void setNodeId(int nodeId) {
+        if (nodeId < -1 || nodeId > MAX_NODE_ID)
+            throw new IllegalArgumentException("nodeId must be between 0 and " + MAX_NODE_ID);
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) {
+        Class cls = type.getReturnedClass();
+        if (cls != Long.class && cls != long.class)
+            throw new MappingException(getClass().getSimpleName() + " requires a long id, found " + cls.getName());
+        String param = params.getProperty(NODE_ID_PARAM);
+        if (param != null) {
+            try {
+                setNodeId(Integer.parseInt(param.trim()));
+            } catch (IllegalArgumentException ex) {
+                throw new MappingException("Invalid " + NODE_ID_PARAM + " " + param + " for " + getClass().getSimpleName(), ex);
+            }
+        }
+        if (nodeId < 0)
+            throw new MappingException(getClass().getSimpleName() + " requires a nodeId that is unique to each node");
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        return nextId();
+    }
+
+    public long nextId() {
+        if (nodeId < 0)
+            throw new IllegalStateException("nodeId is not set");
+        return compose(nextTick(System.currentTimeMillis() - epoch));
+    }
+
+    // a tick is (millis << SEQUENCE_BITS) | sequence; it only moves forward even if the clock goes backward.
+    static long nextTick(long millis) {
+        long now = millis << SEQUENCE_BITS;
+        while (true) {
+            long last = lastTick.get();
+            long tick = (now > last) ? now : last + 1;
+            if (lastTick.compareAndSet(last, tick))
+                return tick;
+        }
+    }
+
+    long compose(long tick) {
+        return ((tick >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS))
+                | ((long) nodeId << SEQUENCE_BITS)
+                | (tick & SEQUENCE_MASK);
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.persist.hibernate;
+
+import net.e6tech.elements.common.interceptor.Interceptor;
+import org.hibernate.MappingException;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.jpa.AvailableSettings;
+import org.hibernate.jpa.spi.IdentifierGeneratorStrategyProvider;
+import org.hibernate.type.LongType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Created by futeh.
+ */
+public class IdGeneratorTest {
+
+    private static final int BLOCK_SIZE = 100;
+    private static EntityManagerFactory factory;
+
+    @BeforeAll
+    static void setup() {
+        Map<String, IdentifierGenerator> generators = new LinkedHashMap<>();
+        generators.put("tableId", new TableIdGenerator());
+        BlockIdGenerator block = new BlockIdGenerator();
+        block.setBlockSize(BLOCK_SIZE);
+        generators.put("blockId", block);
+        TimeOrderedIdGenerator time = new TimeOrderedIdGenerator();
+        time.setNodeId(7);
+        generators.put("timeId", time);
+        // nodeId comes from the mapping
+        generators.put("mappedNodeId", new TimeOrderedIdGenerator());
+
+        // same registration as HibernateEntityManagerProvider
+        Map<String, Class<?>> strategies = new LinkedHashMap<>();
+        for (Map.Entry<String, IdentifierGenerator> entry : generators.entrySet())
+            strategies.put(entry.getKey(), Interceptor.newPrototypeClass((Class<IdentifierGenerator>) entry.getValue().getClass(), entry.getValue()));
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(AvailableSettings.IDENTIFIER_GENERATOR_STRATEGY_PROVIDER, (IdentifierGeneratorStrategyProvider) () -> strategies);
+        factory = Persistence.createEntityManagerFactory("id-generators", properties);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        factory.close();
+    }
+
+    @Test
+    void timeOrderedRequiresNodeId() {
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator();
+        assertThrows(MappingException.class, () -> generator.configure(LongType.INSTANCE, new Properties(), null));
+        assertThrows(IllegalStateException.class, generator::nextId);
+
+        Properties params = new Properties();
+        params.setProperty(TimeOrderedIdGenerator.NODE_ID_PARAM, "3");
+        generator.configure(LongType.INSTANCE, params, null);
+        assertEquals(3, generator.getNodeId());
+        assertEquals(3, (generator.nextId() >>> TimeOrderedIdGenerator.SEQUENCE_BITS) & TimeOrderedIdGenerator.MAX_NODE_ID);
+    }
+
+    @Test
+    void timeOrderedPrototype() throws Exception {
+        Class<TimeOrderedIdGenerator> cls = Interceptor.newPrototypeClass(TimeOrderedIdGenerator.class, new TimeOrderedIdGenerator());
+        TimeOrderedIdGenerator generator = cls.newInstance();
+        assertEquals(-1, generator.getNodeId());
+        assertThrows(MappingException.class, () -> generator.configure(LongType.INSTANCE, new Properties(), null));
+
+        List<Long> ids = insert(MappedNodeEntity.class, 1, 3);
+        for (Long id : ids)
+            assertEquals(5, (id >>> TimeOrderedIdGenerator.SEQUENCE_BITS) & TimeOrderedIdGenerator.MAX_NODE_ID);
+    }
+
+    @Test
+    void timeOrderedUniqueAndMonotonic() throws Exception {
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator();
+        generator.setNodeId(1);
+        int threads = 8;
+        int count = 20000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                long last = 0;
+                boolean monotonic = true;
+                for (int i = 0; i < count; i++) {
+                    long id = generator.nextId();
+                    monotonic &= id > last;
+                    last = id;
+                    ids.add(id);
+                }
+                return monotonic;
+            }));
+        }
+        for (Future<Boolean> future : futures)
+            assertTrue(future.get());
+        executor.shutdown();
+        assertEquals(threads * count, ids.size());
+    }
+
+    @Test
+    void blockRefill() {
+        BlockIdGenerator generator = generator(BlockEntity.class);
+        long accessCount = generator.getTableAccessCount();
+        List<Long> ids = insert(BlockEntity.class, 10, 50);
+
+        for (int i = 1; i < ids.size(); i++)
+            assertTrue(ids.get(i) > ids.get(i - 1));
+        // 500 ids from blocks of 100, plus at most one prefetched block
+        long reservations = generator.getTableAccessCount() - accessCount;
+        assertTrue(reservations >= 5 && reservations <= 6, "reservations " + reservations);
+    }
+
+    @Test
+    void uniqueAcrossThreads() throws Exception {
+        for (Class<?> cls : new Class<?>[] {TableEntity.class, BlockEntity.class, TimeEntity.class}) {
+            int threads = 8;
+            Set<Long> ids = ConcurrentHashMap.newKeySet();
+            insertConcurrently(cls, threads, 10, 50, ids);
+            assertEquals(threads * 10 * 50, ids.size(), cls.getSimpleName());
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void insertBenchmark() throws Exception {
+        assumeTrue(Boolean.getBoolean("benchmark"), "run with -Dbenchmark=true");
+        TableIdGenerator table = generator(TableEntity.class);
+        BlockIdGenerator block = generator(BlockEntity.class);
+        long tableAccess = table.getTableAccessCount();
+        long blockAccess = block.getTableAccessCount();
+        int threads = 8;
+        int total = threads * 200 * 50;
+        long[] elapsed = new long[3];
+        Class<?>[] classes = {TableEntity.class, BlockEntity.class, TimeEntity.class};
+        for (int i = 0; i < classes.length; i++) {
+            Set<Long> ids = ConcurrentHashMap.newKeySet();
+            long start = System.nanoTime();
+            insertConcurrently(classes[i], threads, 200, 50, ids);
+            elapsed[i] = (System.nanoTime() - start) / 1000000L;
+            assertEquals(total, ids.size());
+        }
+        String summary = total + " inserts on " + threads + " threads: table " + elapsed[0] + "ms, block " + elapsed[1]
+                + "ms, time ordered " + elapsed[2] + "ms";
+        // a block of 100 vs pooled-lo increments of 100 reserve the same number of ids per round trip
+        assertTrue(block.getTableAccessCount() - blockAccess <= table.getTableAccessCount() - tableAccess + 1, summary);
+        assertTrue(elapsed[2] <= elapsed[0] * 2, summary);
+    }
+
+    private <T extends IdentifierGenerator> T generator(Class<?> entityClass) {
+        SessionFactoryImplementor sessionFactory = factory.unwrap(SessionFactoryImplementor.class);
+        return (T) sessionFactory.getIdentifierGenerator(entityClass.getName());
+    }
+
+    private List<Long> insert(Class<?> cls, int transactions, int perTransaction) {
+        List<Long> ids = new ArrayList<>();
+        for (int t = 0; t < transactions; t++) {
+            EntityManager em = factory.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                List<Identified> list = new ArrayList<>();
+                for (int i = 0; i < perTransaction; i++) {
+                    Identified entity = (Identified) cls.newInstance();
+                    em.persist(entity);
+                    list.add(entity);
+                }
+                em.getTransaction().commit();
+                list.forEach(e -> ids.add(e.getId()));
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                em.close();
+            }
+        }
+        return ids;
+    }
+
+    private void insertConcurrently(Class<?> cls, int threads, int transactions, int perTransaction, Set<Long> ids) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<List<Long>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++)
+            futures.add(executor.submit(() -> insert(cls, transactions, perTransaction)));
+        for (Future<List<Long>> future : futures)
+            ids.addAll(future.get());
+        executor.shutdown();
+    }
+
+    public interface Identified {
+        Long getId();
+    }
+
+    @Entity(name = "TableEntity")
+    public static class TableEntity implements Identified {
+        @Id
+        @GeneratedValue(generator = "tableId")
+        @GenericGenerator(name = "tableId", strategy = "tableId")
+        private Long id;
+
+        public Long getId() {
+            return id;
+        }
+    }
+
+    @Entity(name = "BlockEntity")
+    public static class BlockEntity implements Identified {
+        @Id
+        @GeneratedValue(generator = "blockId")
+        @GenericGenerator(name = "blockId", strategy = "blockId")
+        private Long id;
+
+        public Long getId() {
+            return id;
+        }
+    }
+
+    @Entity(name = "MappedNodeEntity")
+    public static class MappedNodeEntity implements Identified {
+        @Id
+        @GeneratedValue(generator = "mappedNodeId")
+        @GenericGenerator(name = "mappedNodeId", strategy = "mappedNodeId",
+                parameters = @Parameter(name = TimeOrderedIdGenerator.NODE_ID_PARAM, value = "5"))
+        private Long id;
+
+        public Long getId() {
+            return id;
+        }
+    }
+
+    @Entity(name = "TimeEntity")
+    public static class TimeEntity implements Identified {
+        @Id
+        @GeneratedValue(generator = "timeId")
+        @GenericGenerator(name = "timeId", strategy = "timeId")
+        private Long id;
+
+        public Long getId() {
+            return id;
+        }
+    }
+}
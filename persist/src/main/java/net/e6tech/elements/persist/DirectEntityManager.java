@@ -0,0 +1,86 @@
+/*
+Copyright 2015 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package net.e6tech.elements.persist;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.implementation.FieldAccessor;
+import net.bytebuddy.implementation.MethodCall;
+import net.bytebuddy.matcher.ElementMatchers;
+import net.e6tech.elements.common.util.SystemException;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Creates EntityManagers that forward every call directly to a target EntityManager.  The class is generated once
+ * so that each call is a plain interface call on a field, without the reflection and allocation of a
+ * java.lang.reflect.Proxy.  The wrapper also carries per-transaction state for EntityManagerProvider.
+ *
+ * Created by futeh.
+ */
+public class DirectEntityManager {
+
+    private static final String TARGET_FIELD = "targetEntityManager";
+    private static final String MONITOR_FIELD = "monitor";
+    private static Class<? extends EntityManager> wrapperClass;
+
+    private DirectEntityManager() {
+    }
+
+    /*
+     * Implemented by the generated class.
+     */
+    public interface Accessor {
+        EntityManager getTargetEntityManager();
+        void setTargetEntityManager(EntityManager entityManager);
+        Object getMonitor();
+        void setMonitor(Object monitor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static synchronized Class<? extends EntityManager> wrapperClass() {
+        if (wrapperClass == null) {
+            wrapperClass = (Class) new ByteBuddy()
+                    .subclass(Object.class)
+                    .implement(EntityManager.class)
+                    .defineField(TARGET_FIELD, EntityManager.class, Visibility.PRIVATE)
+                    .defineField(MONITOR_FIELD, Object.class, Visibility.PRIVATE)
+                    .method(ElementMatchers.isAbstract().or(ElementMatchers.named("toString").and(ElementMatchers.takesArguments(0))))
+                        .intercept(MethodCall.invokeSelf().onField(TARGET_FIELD).withAllArguments())
+                    .implement(Accessor.class).intercept(FieldAccessor.ofBeanProperty())
+                    .make()
+                    .load(DirectEntityManager.class.getClassLoader(), ClassLoadingStrategy.Default.WRAPPER)
+                    .getLoaded();
+        }
+        return wrapperClass;
+    }
+
+    public static EntityManager wrap(EntityManager target) {
+        try {
+            EntityManager wrapper = wrapperClass().newInstance();
+            ((Accessor) wrapper).setTargetEntityManager(target);
+            return wrapper;
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new SystemException(e);
+        }
+    }
+
+    public static boolean isWrapper(Object object) {
+        return object instanceof Accessor;
+    }
+}
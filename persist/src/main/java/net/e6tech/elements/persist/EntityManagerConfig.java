@@ -30,4 +30,5 @@ public @interface EntityManagerConfig {
     long timeoutExtension() default 0L;
     boolean monitor() default true;
     long longTransaction() default 0L;
+    int openSiteSampling() default -1;  // see EntityManagerProvider.setOpenSiteSampling, -1 uses the provider's setting.
 }
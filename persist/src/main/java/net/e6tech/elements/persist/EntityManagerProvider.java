@@ -29,6 +29,7 @@ import java.lang.reflect.Proxy;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by futeh.
@@ -53,14 +54,56 @@ public abstract class EntityManagerProvider implements ResourceProvider, Initial
     private long longTransaction = 200L;  // queries that exceeds this value is considered a long transaction.
     private boolean firstQuery = true;
     private AtomicInteger ignoreInitialLongTransactions = new AtomicInteger(1);
-    private BlockingQueue<EntityManagerMonitor> monitorQueue = new LinkedBlockingQueue<>();
-    private List<EntityManagerMonitor> entityManagerMonitors = new ArrayList<>();
+    private ConcurrentSkipListSet<EntityManagerMonitor> entityManagerMonitors = new ConcurrentSkipListSet<>(); // ordered by expiration
+    private AtomicLong monitorSequence = new AtomicLong();
+    private final Object monitorLock = new Object();
     private long monitorIdle = 60000;
-    private boolean monitoring = false;
+    private boolean monitoring = false;  // guarded by monitorLock
+    private int openSiteSampling = 0;
+    private int interceptorSampling = 1;
+    private boolean independent = false;
 
     public EntityManagerProvider() {
     }
 
+    /**
+     * When true, commits of this persistence unit may run concurrently with other independent providers
+     * if the Resources is configured with Resources.PARALLEL_COMMIT.
+     */
+    @Override
+    public boolean isIndependent() {
+        return independent;
+    }
+
+    public void setIndependent(boolean independent) {
+        this.independent = independent;
+    }
+
+    /**
+     * Controls capturing the stack trace of where an EntityManager is opened, which is reported when its transaction
+     * times out.  0 means never, 1 means every transaction and n means about one in n transactions.  When not captured,
+     * the current stack of the thread that opened the EntityManager is reported instead.
+     */
+    public int getOpenSiteSampling() {
+        return openSiteSampling;
+    }
+
+    public void setOpenSiteSampling(int openSiteSampling) {
+        this.openSiteSampling = openSiteSampling;
+    }
+
+    /**
+     * When long transaction logging is enabled, 1 times calls on every EntityManager, n on about one in n
+     * EntityManagers and 0 on none.
+     */
+    public int getInterceptorSampling() {
+        return interceptorSampling;
+    }
+
+    public void setInterceptorSampling(int interceptorSampling) {
+        this.interceptorSampling = interceptorSampling;
+    }
+
     public long getMonitorIdle() {
         return monitorIdle;
     }
@@ -188,32 +231,53 @@ public abstract class EntityManagerProvider implements ResourceProvider, Initial
         }
 
         EntityManager em = emf.createEntityManager();
+        EntityManagerMonitor entityManagerMonitor = null;
         if (monitor) {
-            monitor(new EntityManagerMonitor(em, System.currentTimeMillis() + timeout, new Throwable()));
+            int sampling = config.map(EntityManagerConfig::openSiteSampling).orElse(-1);
+            if (sampling < 0)
+                sampling = openSiteSampling;
+            boolean capture = sampling == 1 || (sampling > 1 && ThreadLocalRandom.current().nextInt(sampling) == 0);
+            entityManagerMonitor = new EntityManagerMonitor(em, System.currentTimeMillis() + timeout,
+                    monitorSequence.incrementAndGet(), capture ? new Throwable() : null);
+            monitor(entityManagerMonitor);
         }
 
+        EntityManager wrapper = DirectEntityManager.wrap(intercept(resources, em, longQuery));
+        ((DirectEntityManager.Accessor) wrapper).setMonitor(entityManagerMonitor);
+        resources.bind(EntityManager.class, wrapper);
+        em.getTransaction().begin();
+    }
+
+    /**
+     * Returns the EntityManager that calls are forwarded to.  By default, when long transaction logging is
+     * enabled, i.e. debug logging, and the EntityManager is sampled, calls go through an EntityManagerInvocationHandler
+     * that times them.  Otherwise the EntityManager is returned as is so that there is no per-call overhead.
+     * Subclasses may override this to plug in a different interceptor.
+     */
+    protected EntityManager intercept(Resources resources, EntityManager em, long longQuery) {
+        if (!Watcher.isLogging() || interceptorSampling <= 0
+                || (interceptorSampling > 1 && ThreadLocalRandom.current().nextInt(interceptorSampling) != 0))
+            return em;
         EntityManagerInvocationHandler emHandler = new EntityManagerInvocationHandler(resources, em);
         emHandler.setLongTransaction(longQuery);
         emHandler.setIgnoreInitialLongTransactions(ignoreInitialLongTransactions);
-        resources.bind(EntityManager.class, (EntityManager) Proxy.newProxyInstance(getClass().getClassLoader(),
-                new Class[]{EntityManager.class}, emHandler));
-        em.getTransaction().begin();
+        return (EntityManager) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{EntityManager.class}, emHandler);
     }
 
-    // Submits a thread task to monitor expired EntityManagers.
-    // the thread would break out after monitorIdle time.
-    // when another monitor shows up, the thread task would resume.
-    @SuppressWarnings({"squid:S1188", "squid:S134"})
+    // Adds a monitor and, if needed, submits a thread task to roll back expired EntityManagers.
+    // The thread would break out after monitorIdle time without any monitors.
+    // When another monitor shows up, a new thread task is started.
     private void monitor(EntityManagerMonitor monitor) {
-
-        // entityManagerMonitors contains open, committed and aborted entityManagers.
-        synchronized (monitorQueue) {
-            monitorQueue.offer(monitor);
+        entityManagerMonitors.add(monitor);
+        synchronized (monitorLock) {
             if (monitoring) {
+                // wake up the monitor thread if this is the new earliest deadline.
+                if (firstMonitor() == monitor)
+                    monitorLock.notifyAll();
                 return;
-            } else {
-                monitoring = true;
             }
+            monitoring = true;
         }
 
         // starting a thread to monitor
@@ -227,95 +291,78 @@ public abstract class EntityManagerProvider implements ResourceProvider, Initial
             });
         }
 
-        threadPool.execute(()->{
-            try {
-                while (true) {
-                    synchronized (monitorQueue) {
-                        monitoring = true;
-                    }
+        threadPool.execute(this::runMonitor);
+    }
 
-                    long start = System.currentTimeMillis();
-                    long expiration = 0;
-
-                    synchronized (entityManagerMonitors) {
-                        monitorQueue.drainTo(entityManagerMonitors);
-                        Iterator<EntityManagerMonitor> iterator = entityManagerMonitors.iterator();
-                        while (iterator.hasNext()) {
-                            EntityManagerMonitor m = iterator.next();
-                            if (!m.entityManager.isOpen()) { // already closed
-                                iterator.remove();
-                            } else if (m.expiration < System.currentTimeMillis()) {
-                                m.rollback();  // rollback
-                                iterator.remove();
-                            } else {
-                                // for find out the shortest sleep time
-                                if (expiration == 0 || m.expiration < expiration) expiration = m.expiration;
-                            }
-                        }
-                    }
+    // transaction ended normally, O(log n).
+    private void cancelMonitor(EntityManager em) {
+        if (DirectEntityManager.isWrapper(em)) {
+            Object monitor = ((DirectEntityManager.Accessor) em).getMonitor();
+            if (monitor != null)
+                entityManagerMonitors.remove(monitor);
+        }
+    }
 
-                    long sleep = 0L;
-                    if (expiration > 0) {
-                        sleep = expiration - System.currentTimeMillis();
-                        if (sleep < 0) {
-                            // probably due to debugging
-                            if (!entityManagerMonitors.isEmpty()) sleep = 1;
-                            else sleep = 0;
-                        }
-                    }
+    private EntityManagerMonitor firstMonitor() {
+        try {
+            return entityManagerMonitors.first();
+        } catch (NoSuchElementException ex) {
+            Logger.suppress(ex);
+            return null;
+        }
+    }
 
-                    EntityManagerMonitor newMonitor = null;
-                    try {
-                        if (sleep == 0) {
-                            newMonitor = monitorQueue.poll(monitorIdle, TimeUnit.MILLISECONDS);
-                        } else {
-                            // What if an EntityManager closed during the sleep?
-                            newMonitor = monitorQueue.poll(sleep, TimeUnit.MILLISECONDS);
-                        }
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
+    @SuppressWarnings("squid:S134")
+    private void runMonitor() {
+        boolean idle = false;
+        try {
+            long idleSince = System.currentTimeMillis();
+            while (!idle) {
+                long now = System.currentTimeMillis();
+                EntityManagerMonitor first;
+                while ((first = firstMonitor()) != null && first.expiration <= now) {
+                    if (entityManagerMonitors.remove(first))
+                        first.rollback();
+                }
 
-                    if (newMonitor != null) {
-                        synchronized (entityManagerMonitors) {
-                            entityManagerMonitors.add(newMonitor);
+                synchronized (monitorLock) {
+                    first = firstMonitor();
+                    if (first == null) {
+                        if (now - idleSince >= monitorIdle) {
+                            // monitor() starts a new task once monitoring is false.
+                            monitoring = false;
+                            idle = true;
+                        } else {
+                            monitorLock.wait(monitorIdle - (now - idleSince));
                         }
                     } else {
-                        // Some thread may just add a monitor at this point so that
-                        // we need to check the monitorQueue size before we break out.
-                        // Also, we need to make sure entityManagerMonitors is empty as well.
-                        synchronized (monitorQueue) {
-                            if (monitorQueue.isEmpty()
-                                    && entityManagerMonitors.isEmpty()
-                                    && System.currentTimeMillis() - start > monitorIdle) {
-                                monitoring = false;
-                                break;
-                            }
-                        }
+                        idleSince = now;
+                        long sleep = first.expiration - System.currentTimeMillis();
+                        if (sleep > 0)
+                            monitorLock.wait(sleep);
                     }
                 }
-            } finally {
-                // in case of some exception, we make sure monitoring is set to false.
-                synchronized (monitorQueue) {
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // in case of some exception, we make sure monitoring is set to false.
+            if (!idle) {
+                synchronized (monitorLock) {
                     monitoring = false;
                 }
             }
-        });
+        }
     }
 
     @Override
     public void onCommit(Resources resources) {
         try {
             EntityManager em = resources.getInstance(EntityManager.class);
+            cancelMonitor(em);
             em.getTransaction().commit();
             em.clear();
             em.close();
-            // to break out the
-            Optional<EntityManagerConfig> config = resources.configurator().annotation(EntityManagerConfig.class);
-            boolean monitor = config.map(EntityManagerConfig::monitor).orElse(monitorTransaction);
-            if (monitor) {
-                monitor(new EntityManagerMonitor(em, System.currentTimeMillis(), new Throwable()));
-            }
         } catch (InstanceNotFoundException ex) {
             Logger.suppress(ex);
         } finally {
@@ -331,14 +378,10 @@ public abstract class EntityManagerProvider implements ResourceProvider, Initial
     public void onAbort(Resources resources) {
         try {
             EntityManager em = resources.getInstance(EntityManager.class);
+            cancelMonitor(em);
             em.getTransaction().rollback();
             em.clear();
             em.close();
-            Optional<EntityManagerConfig> config = resources.configurator().annotation(EntityManagerConfig.class);
-            boolean monitor = config.map(EntityManagerConfig::monitor).orElse(monitorTransaction);
-            if (monitor) {
-                monitor(new EntityManagerMonitor(em, System.currentTimeMillis(), new Throwable()));
-            }
         } catch (Exception th) {
             Logger.suppress(th);
         }  finally {
@@ -362,21 +405,47 @@ public abstract class EntityManagerProvider implements ResourceProvider, Initial
         }
     }
 
-    private static class EntityManagerMonitor {
+    static class EntityManagerMonitor implements Comparable<EntityManagerMonitor> {
         EntityManager entityManager;
         long expiration;
-        Throwable throwable;
+        long sequence;  // breaks ties between monitors with the same expiration
+        Throwable openSite;
+        Thread owner;
 
-        EntityManagerMonitor(EntityManager entityManager, long expiration, Throwable throwable) {
+        EntityManagerMonitor(EntityManager entityManager, long expiration, long sequence, Throwable openSite) {
             this.entityManager = entityManager;
             this.expiration = expiration;
-            this.throwable = throwable;
+            this.sequence = sequence;
+            this.openSite = openSite;
+            this.owner = Thread.currentThread();
+        }
+
+        @Override
+        public int compareTo(EntityManagerMonitor o) {
+            int c = Long.compare(expiration, o.expiration);
+            return (c != 0) ? c : Long.compare(sequence, o.sequence);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof EntityManagerMonitor && compareTo((EntityManagerMonitor) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(sequence);
         }
 
         boolean rollback() {
             if (entityManager.isOpen()) {
                 entityManager.getTransaction().setRollbackOnly();
                 entityManager.close();
+                Throwable throwable = openSite;
+                if (throwable == null) {
+                    // open site not captured, report where the owning thread is now.
+                    throwable = new Throwable("Current stack of " + owner.getName());
+                    throwable.setStackTrace(owner.getStackTrace());
+                }
                 logger.warn("EntityManagerProvider timeout", throwable);
                 return true;
             }
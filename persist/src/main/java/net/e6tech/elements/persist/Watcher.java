@@ -41,6 +41,11 @@ public class Watcher implements InvocationHandler {
         this.target = target;
     }
 
+    // long transactions are only logged at debug level
+    public static boolean isLogging() {
+        return logger.isDebugEnabled();
+    }
+
     // disable long transaction monitoring if time is greater than longTransaction
     public static void addGracePeriod(long time) {
         if (!logger.isDebugEnabled())
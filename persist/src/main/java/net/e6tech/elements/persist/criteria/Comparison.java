@@ -25,45 +25,61 @@ import javax.persistence.criteria.Predicate;
  */
 @SuppressWarnings("squid:S00115")
 public enum Comparison {
-    equal {
+    equal("=") {
         Predicate compare(CriteriaBuilder builder, Expression expression, Object object) {
             return builder.equal(expression, object);
         }
     },
-    not_equal {
+    not_equal("<>") {
         Predicate compare(CriteriaBuilder builder, Expression expression, Object object) {
             return builder.notEqual(expression, object);
         }
     },
-    less_than {
+    less_than("<") {
         Predicate compare(CriteriaBuilder builder, Expression expression, Object object) {
             return builder.lessThan(expression, (Comparable) object);
         }
     },
-    less_than_or_equal {
+    less_than_or_equal("<=") {
         Predicate compare(CriteriaBuilder builder, Expression expression, Object object) {
             return builder.lessThanOrEqualTo(expression, (Comparable) object);
         }
     },
-    greater_than {
+    greater_than(">") {
         Predicate compare(CriteriaBuilder builder, Expression expression, Object object) {
             return builder.greaterThan(expression, (Comparable) object);
         }
     },
-    greater_than_or_equal {
+    greater_than_or_equal(">=") {
         Predicate compare(CriteriaBuilder builder, Expression expression, Object object) {
             return builder.greaterThanOrEqualTo(expression, (Comparable) object);
         }
     },
-    like {
+    like("like") {
         Predicate compare(CriteriaBuilder builder, Expression expression, Object object) {
             return builder.like(expression, (String) object);
         }
     },
-    in {
+    in("in") {
         Predicate compare(CriteriaBuilder builder, Expression expression, Object object) {
             return builder.in(expression).value(object);
         }
+
+        @Override
+        String jpql(String path, String parameter) {
+            return path + " in (" + parameter + ")";
+        }
     };
+
+    private String operator;
+
+    Comparison(String operator) {
+        this.operator = operator;
+    }
+
+    String jpql(String path, String parameter) {
+        return path + " " + operator + " " + parameter;
+    }
+
     abstract Predicate compare(CriteriaBuilder builder, Expression expression, Object object);
 }
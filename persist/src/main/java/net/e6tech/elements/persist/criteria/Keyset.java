@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.persist.criteria;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Keyset (seek) pagination over a Select.  Instead of skipping rows with an offset, each page
+ * continues after the order by values of the last row of the previous page, so that later pages
+ * cost the same as the first one.  The order by clauses should end with a unique attribute, e.g.
+ * the id, otherwise rows sharing the same key across a page boundary are skipped.
+ *
+ * Created by futeh.
+ */
+public class Keyset<R> implements Iterator<List<R>> {
+
+    private Select<?> select;
+    private int pageSize;
+    private Object[] lastKey;
+    private boolean exhausted = false;
+
+    Keyset(Select<?> select, int pageSize) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("pageSize must be positive");
+        this.select = select;
+        this.pageSize = pageSize;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return order by values of the last row returned so far.  They can be handed back to setLastKey
+     * in order to resume paging, e.g. in a different transaction.
+     */
+    public Object[] getLastKey() {
+        return lastKey;
+    }
+
+    public void setLastKey(Object... lastKey) {
+        this.lastKey = lastKey;
+        exhausted = false;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !exhausted;
+    }
+
+    @Override
+    public List<R> next() {
+        if (exhausted)
+            throw new NoSuchElementException();
+        List<R> page = select.createKeysetQuery(lastKey, pageSize).getResultList();
+        if (page.size() < pageSize)
+            exhausted = true;
+        if (!page.isEmpty())
+            lastKey = select.where.shape.keyOf(page.get(page.size() - 1));
+        return page;
+    }
+}
@@ -38,9 +38,11 @@ public class OrderBy<T> extends Handler {
     boolean desc = true;
     List<Order> orderByList = new ArrayList<>();
     T template;
+    QueryShape shape;
 
     public OrderBy(EntityManager entityManager, CriteriaBuilder builder, CriteriaQuery query, Path path) {
         super(entityManager, builder, query, path);
+        shape = new QueryShape(path);
         template = interceptor.newInstance(path.getJavaType(), this);
     }
 
@@ -60,13 +62,15 @@ public class OrderBy<T> extends Handler {
         if (thisMethod.equals(descriptor.getReadMethod())) {
             // getter
             Class cls = thisMethod.getReturnType();
-            Order order = (this.desc) ? builder.desc(getPath().get(property))
-                    : builder.asc(getPath().get(property));
+            Path current = getPath().get(property);
+            Order order = (this.desc) ? builder.desc(current) : builder.asc(current);
             orderByList.add(order);
+            shape.orderBy(current, this.desc);
             if (!Modifier.isFinal(cls.getModifiers())) {
                 OrderBy orderBy = new OrderBy(getEntityManager(), getBuilder(), getQuery(), getPath());
                 orderBy.orderByList = orderByList;
                 orderBy.desc = this.desc;
+                orderBy.shape = shape;
                 return orderBy.getTemplate();
             }
             if (cls.isPrimitive()) {
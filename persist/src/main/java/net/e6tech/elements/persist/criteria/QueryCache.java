@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.persist.criteria;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches the JPQL compiled from Select statements, keyed by query shape, i.e. entity, predicates,
+ * fetches, ordering and selections.  Values are always bound as positional parameters so that
+ * repeated lookups reuse both this cache and the provider's own query plan cache.
+ *
+ * Created by futeh.
+ */
+public class QueryCache {
+
+    private static final QueryCache instance = new QueryCache();
+
+    private Map<String, String> plans = new ConcurrentHashMap<>();
+    private int maxSize = 2048;
+    private boolean enabled = true;
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+    private AtomicLong bypassed = new AtomicLong();
+
+    public static QueryCache getInstance() {
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getSize() {
+        return plans.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of queries that could not be expressed as a cached shape, e.g. joins or
+     * arbitrary expressions, and went through the criteria API instead.
+     */
+    public long getBypassed() {
+        return bypassed.get();
+    }
+
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get() + bypassed.get();
+        return (total == 0) ? 0 : (double) h / total;
+    }
+
+    public void clear() {
+        plans.clear();
+    }
+
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        bypassed.set(0);
+    }
+
+    String get(String key, Supplier<String> compiler) {
+        String jpql = plans.get(key);
+        if (jpql != null) {
+            hits.incrementAndGet();
+            return jpql;
+        }
+        misses.incrementAndGet();
+        jpql = compiler.get();
+        if (plans.size() < maxSize)
+            plans.putIfAbsent(key, jpql);
+        return jpql;
+    }
+
+    void bypass() {
+        bypassed.incrementAndGet();
+    }
+}
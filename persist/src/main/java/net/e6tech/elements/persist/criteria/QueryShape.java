@@ -0,0 +1,273 @@
+/*
+ * Copyright 2015 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.persist.criteria;
+
+import net.e6tech.elements.common.reflection.Reflection;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the shape of a Select statement alongside the criteria tree it builds.  As long as the
+ * statement only uses constructs that map directly to JPQL (root attributes, comparisons, or-groups,
+ * fetches, ordering and path selections), it can be compiled to a parameterized JPQL string once and
+ * executed afterwards by binding the parameter values only.  Anything else disables the shape and the
+ * statement falls back to the criteria query.
+ *
+ * Created by futeh.
+ */
+class QueryShape {
+    static final String ALIAS = "e0";
+    private static final String SEPARATOR = "|";
+
+    private Root root;
+    private boolean cacheable;
+    private List<String> selections = new ArrayList<>();
+    private List<String> fetches = new ArrayList<>();
+    private List<String> terms = new ArrayList<>();
+    private List<Object> parameters = new ArrayList<>();
+    private List<String> orders = new ArrayList<>();
+    private List<String> orderPaths = new ArrayList<>();
+    private List<Boolean> descending = new ArrayList<>();
+
+    QueryShape(Path path) {
+        if (path instanceof Root) {
+            root = (Root) path;
+            cacheable = true;
+        }
+    }
+
+    boolean isCacheable() {
+        return cacheable;
+    }
+
+    void disable() {
+        cacheable = false;
+    }
+
+    void where(Path path, Comparison comparison, Object value) {
+        if (!cacheable)
+            return;
+        String name = pathOf(path);
+        if (name == null || value == null) {
+            // null comparisons are left to the criteria API so that their semantics do not change.
+            disable();
+            return;
+        }
+        parameters.add(value);
+        terms.add(comparison.jpql(name, "?" + parameters.size()));
+    }
+
+    int mark() {
+        return terms.size();
+    }
+
+    void or(int mark) {
+        if (!cacheable || terms.size() <= mark)
+            return;
+        List<String> group = terms.subList(mark, terms.size());
+        String term = "(" + String.join(" or ", group) + ")";
+        group.clear();
+        terms.add(term);
+    }
+
+    void fetch(Path from, String property, JoinType type) {
+        if (!cacheable)
+            return;
+        String name = pathOf(from);
+        if (name == null || type == JoinType.RIGHT) {
+            disable();
+            return;
+        }
+        fetches.add(((type == JoinType.LEFT) ? "left join fetch " : "join fetch ") + name + "." + property);
+    }
+
+    void select(Path path) {
+        selectExpression(pathOf(path));
+    }
+
+    void selectCount(Path path) {
+        String name = pathOf(path);
+        selectExpression((name == null) ? null : "count(" + name + ")");
+    }
+
+    private void selectExpression(String expression) {
+        if (!cacheable)
+            return;
+        if (expression == null)
+            disable();
+        else
+            selections.add(expression);
+    }
+
+    void orderBy(Path path, boolean desc) {
+        if (!cacheable)
+            return;
+        String name = pathOf(path);
+        if (name == null) {
+            disable();
+        } else {
+            orders.add(name + ((desc) ? " desc" : " asc"));
+            orderPaths.add(name);
+            descending.add(desc);
+        }
+    }
+
+    boolean isOrdered() {
+        return !orderPaths.isEmpty();
+    }
+
+    /**
+     * Extracts the values of the order by paths from a result row, either from the selections
+     * or by reading the properties of the selected entity.
+     */
+    Object[] keyOf(Object row) {
+        Object[] key = new Object[orderPaths.size()];
+        for (int i = 0; i < key.length; i++) {
+            String path = orderPaths.get(i);
+            if (selections.contains(path)) {
+                key[i] = column(row, selections.indexOf(path));
+            } else if (selections.isEmpty() || selections.contains(ALIAS)) {
+                Object value = selections.isEmpty() ? row : column(row, selections.indexOf(ALIAS));
+                String[] properties = path.split("\\.");
+                for (int j = 1; j < properties.length && value != null; j++)
+                    value = Reflection.getProperty(value, properties[j]);
+                key[i] = value;
+            } else {
+                throw new IllegalStateException("Order by " + path + " is neither selected nor a property of the selected entity");
+            }
+            if (key[i] == null)
+                throw new IllegalStateException("Keyset pagination does not support null values for order by " + path);
+        }
+        return key;
+    }
+
+    private Object column(Object row, int index) {
+        return (selections.size() == 1) ? row : ((Object[]) row)[index];
+    }
+
+    /**
+     * Returns the JPQL path of a criteria path rooted at this shape's root, or null if the path
+     * cannot be expressed, e.g. it goes through a join or a different root.
+     */
+    String pathOf(Path path) {
+        if (path == root)
+            return ALIAS;
+        Path parent = (path == null) ? null : path.getParentPath();
+        if (parent == null || !(path.getModel() instanceof Attribute))
+            return null;
+        String parentName = pathOf(parent);
+        if (parentName == null)
+            return null;
+        return parentName + "." + ((Attribute) path.getModel()).getName();
+    }
+
+    /**
+     * Returns true if the recorded shape still describes the criteria query, i.e. nothing has been
+     * added to the predicates, selections or ordering behind the DSL's back.
+     */
+    boolean matches(int predicateCount, int selectionCount, int orderCount) {
+        return cacheable
+                && terms.size() == predicateCount
+                && selections.size() == selectionCount
+                && orders.size() == orderCount;
+    }
+
+    String key() {
+        StringBuilder builder = new StringBuilder(128);
+        builder.append(root.getJavaType().getName());
+        appendKey(builder, selections);
+        appendKey(builder, fetches);
+        appendKey(builder, terms);
+        appendKey(builder, orders);
+        return builder.toString();
+    }
+
+    private void appendKey(StringBuilder builder, List<String> list) {
+        builder.append(SEPARATOR);
+        for (int i = 0; i < list.size(); i++) {
+            if (i > 0)
+                builder.append(',');
+            builder.append(list.get(i));
+        }
+    }
+
+    String toJpql() {
+        return toJpql(false);
+    }
+
+    /**
+     * @param seek if true, adds a keyset predicate that only accepts rows after the key bound as
+     *             the parameters following the statement's own parameters.
+     */
+    String toJpql(boolean seek) {
+        StringBuilder builder = new StringBuilder(128);
+        builder.append("select ");
+        builder.append((selections.isEmpty()) ? ALIAS : String.join(", ", selections));
+        builder.append(" from ").append(((EntityType) root.getModel()).getName()).append(' ').append(ALIAS);
+        for (String fetch : fetches)
+            builder.append(' ').append(fetch);
+        List<String> conditions = terms;
+        if (seek) {
+            conditions = new ArrayList<>(terms);
+            conditions.add(seekTerm());
+        }
+        if (!conditions.isEmpty())
+            builder.append(" where ").append(String.join(" and ", conditions));
+        if (!orders.isEmpty())
+            builder.append(" order by ").append(String.join(", ", orders));
+        return builder.toString();
+    }
+
+    // (a > ?1) or (a = ?1 and b < ?2) ... for order by a asc, b desc
+    private String seekTerm() {
+        int base = parameters.size();
+        List<String> alternatives = new ArrayList<>();
+        for (int i = 0; i < orderPaths.size(); i++) {
+            StringBuilder builder = new StringBuilder();
+            for (int j = 0; j < i; j++)
+                builder.append(orderPaths.get(j)).append(" = ?").append(base + j + 1).append(" and ");
+            builder.append(orderPaths.get(i)).append(descending.get(i) ? " < ?" : " > ?").append(base + i + 1);
+            alternatives.add(builder.toString());
+        }
+        return "((" + String.join(") or (", alternatives) + "))";
+    }
+
+    Query createQuery(EntityManager entityManager, QueryCache cache) {
+        return createQuery(entityManager, cache, null);
+    }
+
+    Query createQuery(EntityManager entityManager, QueryCache cache, Object[] after) {
+        boolean seek = after != null;
+        String jpql = cache.get(seek ? key() + SEPARATOR + "seek" : key(), () -> toJpql(seek));
+        Query query = entityManager.createQuery(jpql);
+        for (int i = 0; i < parameters.size(); i++)
+            query.setParameter(i + 1, parameters.get(i));
+        if (seek) {
+            for (int i = 0; i < after.length; i++)
+                query.setParameter(parameters.size() + i + 1, after[i]);
+        }
+        return query;
+    }
+}
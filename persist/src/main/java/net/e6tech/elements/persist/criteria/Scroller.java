@@ -0,0 +1,32 @@
+/*
+ * Copyright 2015 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.persist.criteria;
+
+import javax.persistence.Query;
+import java.util.stream.Stream;
+
+/**
+ * Opens a forward-only cursor over a query.  JPA 2.1 has no portable cursor so the default
+ * implementation simply streams the result list; providers such as Hibernate install a scrolling
+ * implementation via Select.setScroller.  The returned stream must release the cursor when closed.
+ *
+ * Created by futeh.
+ */
+@FunctionalInterface
+public interface Scroller {
+    <R> Stream<R> scroll(Query query, int fetchSize);
+}
@@ -24,10 +24,11 @@ import javax.persistence.Query;
 import javax.persistence.criteria.*;
 import javax.persistence.metamodel.EntityType;
 import java.beans.PropertyDescriptor;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Created by futeh.
@@ -35,9 +36,17 @@ import java.util.function.Consumer;
 public class Select<T> extends Statement<T> {
 
     private static final String GETTER_MSG = "Only accepts getter";
+    private static Scroller scroller = new Scroller() {
+        @Override
+        public <R> Stream<R> scroll(Query query, int fetchSize) {
+            return query.getResultList().stream();
+        }
+    };
 
     Select parent;
     int maxResults = -1;
+    int fetchSize = 0;
+    int clearInterval = 0;
     List<Selection<?>> selections = new ArrayList<>();
 
     public Select(Where where, Root<T> root) {
@@ -50,6 +59,14 @@ public class Select<T> extends Statement<T> {
         this.selections = parent.selections;
     }
 
+    public static Scroller getScroller() {
+        return scroller;
+    }
+
+    public static void setScroller(Scroller scroller) {
+        Select.scroller = scroller;
+    }
+
     public static <T> Select<T> create(EntityManager entityManager, Class<T> cls) {
         CriteriaBuilder builder = entityManager.getCriteriaBuilder();
         CriteriaQuery query = builder.createQuery();
@@ -71,47 +88,105 @@ public class Select<T> extends Statement<T> {
     }
 
     public <R> R getSingleResult() {
-        where.onQuery();
-        if (selections.size() == 1) {
-            getQuery().select((Selection<? extends T>) selections.get(0));
-        } else if (!selections.isEmpty()) {
-            getQuery().multiselect(selections);
-        } else {
-            getQuery().select(getFrom());
-        }
-        Query query = where.getEntityManager().createQuery(getQuery());
-        if (maxResults >= 0)
-            query.setMaxResults(maxResults);
-        return (R) query.getSingleResult();
+        return (R) createQuery().getSingleResult();
     }
 
     public <R> List<R> getResultList() {
-        where.onQuery();
-        if (selections.size() == 1) {
-            getQuery().select((Selection<? extends T>) selections.get(0));
-        } else if (!selections.isEmpty()) {
-            getQuery().multiselect(selections.toArray(new Selection[selections.size()]));
+        return createQuery().getResultList();
+    }
+
+    /**
+     * Streams the results through a forward-only cursor instead of materializing them.  The stream must be closed,
+     * preferably with try-with-resources, in order to release the cursor.  If a clear interval is set, the
+     * persistence context is cleared after every clearInterval rows so that it does not grow with the result;
+     * rows that have been handed out are detached at that point.
+     */
+    public <R> Stream<R> stream() {
+        Stream<R> source = scroller.scroll(createQuery(), fetchSize);
+        if (clearInterval <= 0)
+            return source;
+        Iterator<R> iterator = new ClearingIterator<>(source.iterator());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .onClose(source::close);
+    }
+
+    public <R> void forEach(Consumer<R> consumer) {
+        try (Stream<R> stream = stream()) {
+            stream.forEach(consumer);
+        }
+    }
+
+    /**
+     * Keyset pagination derived from the asc/desc clauses of this statement.  The ordering and the predicates
+     * must only involve attributes of the root entity, i.e. no joins, and the order by attributes must either be
+     * selected or belong to the selected entity.
+     */
+    public <R> Keyset<R> keyset(int pageSize) {
+        checkKeyset();
+        return new Keyset<>(this, pageSize);
+    }
+
+    Query createKeysetQuery(Object[] after, int pageSize) {
+        checkKeyset();
+        Query query = where.shape.createQuery(where.getEntityManager(), QueryCache.getInstance(), after);
+        query.setMaxResults(pageSize);
+        return query;
+    }
+
+    private void checkKeyset() {
+        QueryShape shape = where.shape;
+        if (!shape.matches(where.getPredicates().size(), selections.size(), where.getOrderByList().size()))
+            throw new IllegalStateException("Keyset pagination requires a statement without joins or custom expressions");
+        if (!shape.isOrdered())
+            throw new IllegalStateException("Keyset pagination requires asc or desc ordering");
+    }
+
+    /**
+     * Creates the query for this statement.  If the statement's shape can be expressed in JPQL, the compiled
+     * JPQL is looked up from the QueryCache and only parameter values are bound; otherwise, the criteria query
+     * is used.
+     */
+    protected Query createQuery() {
+        Query query;
+        QueryCache cache = QueryCache.getInstance();
+        QueryShape shape = where.shape;
+        if (cache.isEnabled()
+                && shape.matches(where.getPredicates().size(), selections.size(), where.getOrderByList().size())) {
+            query = shape.createQuery(where.getEntityManager(), cache);
         } else {
-            getQuery().select(getFrom());
+            cache.bypass();
+            where.onQuery();
+            if (selections.size() == 1) {
+                getQuery().select((Selection<? extends T>) selections.get(0));
+            } else if (!selections.isEmpty()) {
+                getQuery().multiselect(selections.toArray(new Selection[selections.size()]));
+            } else {
+                getQuery().select(getFrom());
+            }
+            query = where.getEntityManager().createQuery(getQuery());
         }
-        Query query = where.getEntityManager().createQuery(getQuery());
         if (maxResults >= 0)
             query.setMaxResults(maxResults);
-        return query.getResultList();
+        return query;
     }
 
     public Select<T> selectEntity() {
         selections.add(getFrom());
+        where.shape.select(getFrom());
         return this;
     }
 
     public <R> Select<T> select(Expression<R> expression) {
         selections.add(expression);
+        if (expression instanceof Path)
+            where.shape.select((Path) expression);
+        else
+            where.shape.disable();
         return this;
     }
 
     public Select<T> select(Runnable runnable) {
-        Interceptor.setInterceptorHandler(where.getTemplate(), getter(path -> selections.add(path)));
+        Interceptor.setInterceptorHandler(where.getTemplate(), getter(this::addSelection));
         runnable.run();
         Interceptor.setInterceptorHandler(where.getTemplate(), where);
         return this;
@@ -119,11 +194,16 @@ public class Select<T> extends Statement<T> {
 
     public Select<T> select(Consumer<T> consumer) {
         Class<T> entityClass = Interceptor.getTargetClass(where.getTemplate());
-        T t = applyGetter(entityClass, path -> selections.add(path));
+        T t = applyGetter(entityClass, this::addSelection);
         consumer.accept(t);
         return this;
     }
 
+    private void addSelection(Path path) {
+        selections.add(path);
+        where.shape.select(path);
+    }
+
     public <R> Select<T> crossJoinManyToOneWhere(Class<R> entityClass, Consumer<T> joinCondition, Consumer<R> consumer) {
         return crossJoinManyToOne(entityClass, joinCondition, nestedSelect -> nestedSelect.where(consumer));
     }
@@ -135,6 +215,7 @@ public class Select<T> extends Statement<T> {
     @SuppressWarnings("squid:S1188")
     public <R> Select<T> crossJoinManyToOne(Class<R> entityClass, Consumer<T> joinCondition, Consumer<Select<R>> consumer) {
         From<R, R> jointRoot = getQuery().from(entityClass);
+        where.shape.disable();
         Interceptor.setInterceptorHandler(where.getTemplate(), (target, thisMethod, args) -> {
             PropertyDescriptor desc = Reflection.propertyDescriptor(thisMethod);
             String property = desc.getName();
@@ -177,6 +258,7 @@ public class Select<T> extends Statement<T> {
     @SuppressWarnings("squid:S1188")
     public <R> Select<T> crossJoinOneToMany(Class<R> entityClass, Consumer<R> joinCondition, Consumer<Select<R>> consumer) {
         From<R, R> joinRoot = getQuery().from(entityClass);
+        where.shape.disable();
         R joinTemplate = Handler.interceptor.newInstance(entityClass,  (target, thisMethod, args) -> {
             PropertyDescriptor desc = Reflection.propertyDescriptor(thisMethod);
             String property = desc.getName();
@@ -232,6 +314,7 @@ public class Select<T> extends Statement<T> {
     }
 
     protected <R> Select<T> join(JoinType type, Runnable joinCondition, BiConsumer<Select<R>, R> consumer) {
+        where.shape.disable();
         Interceptor.setInterceptorHandler(where.getTemplate(), (target, thisMethod, args) -> {
             PropertyDescriptor desc = Reflection.propertyDescriptor(thisMethod);
             String property = desc.getName();
@@ -278,6 +361,7 @@ public class Select<T> extends Statement<T> {
             String property = desc.getName();
             if (thisMethod.equals(desc.getReadMethod())) {
                 getFrom().fetch(property, type);
+                where.shape.fetch(getFrom(), property, type);
             } else {
                 throw new UnsupportedOperationException(GETTER_MSG);
             }
@@ -295,8 +379,37 @@ public class Select<T> extends Statement<T> {
         return this;
     }
 
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Sets the JDBC fetch size used by stream and forEach.
+     */
+    public Select<T> setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        if (parent != null)
+            parent.setFetchSize(fetchSize);
+        return this;
+    }
+
+    public int getClearInterval() {
+        return clearInterval;
+    }
+
+    /**
+     * Sets the number of rows after which stream and forEach clear the persistence context.  0 disables clearing.
+     */
+    public Select<T> setClearInterval(int clearInterval) {
+        this.clearInterval = clearInterval;
+        if (parent != null)
+            parent.setClearInterval(clearInterval);
+        return this;
+    }
+
     public void count() {
         selections.add(getBuilder().count(getFrom()));
+        where.shape.selectCount(getFrom());
     }
 
     public Select<T> asc(Runnable runnable) {
@@ -304,6 +417,7 @@ public class Select<T> extends Statement<T> {
         Interceptor.setInterceptorHandler(where.getTemplate(), orderBy);
         orderBy.desc = false;
         orderBy.orderByList = where.orderByList;
+        orderBy.shape = where.shape;
         runnable.run();
         Interceptor.setInterceptorHandler(where.getTemplate(), where);
         return this;
@@ -314,6 +428,7 @@ public class Select<T> extends Statement<T> {
         Interceptor.setInterceptorHandler(where.getTemplate(), orderBy);
         orderBy.desc = true;
         orderBy.orderByList = where.orderByList;
+        orderBy.shape = where.shape;
         runnable.run();
         Interceptor.setInterceptorHandler(where.getTemplate(), where);
         return this;
@@ -329,6 +444,32 @@ public class Select<T> extends Statement<T> {
         coalesce.value(value);
         return coalesce;
     }
-}
 
+    // clears the persistence context before the cursor advances past every clearInterval rows so that
+    // the row just handed out has been processed but the next one is not loaded yet.
+    private class ClearingIterator<R> implements Iterator<R> {
+        private Iterator<R> iterator;
+        private int count = 0;
+
+        ClearingIterator(Iterator<R> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (count >= clearInterval) {
+                where.getEntityManager().clear();
+                count = 0;
+            }
+            return iterator.hasNext();
+        }
 
+        @Override
+        public R next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            count++;
+            return iterator.next();
+        }
+    }
+}
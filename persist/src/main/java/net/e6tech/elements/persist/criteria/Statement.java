@@ -59,6 +59,7 @@ public class Statement<T> {
         Where wh = new Where(this.where, this.where.getPath());
         Interceptor.setInterceptorHandler(wh.getTemplate(), wh);
         wh.predicates = new ArrayList<>();
+        int mark = where.shape.mark();
         runnable.run();
         Interceptor.setInterceptorHandler(wh.getTemplate(), this.where);
 
@@ -67,6 +68,7 @@ public class Statement<T> {
             CriteriaBuilder builder = this.where.getBuilder();
             Predicate predicate = builder.or(predicates.toArray(new Predicate[predicates.size()]));
             this.where.getPredicates().add(predicate);
+            this.where.shape.or(mark);
         }
     }
 
@@ -87,6 +89,7 @@ public class Statement<T> {
         return applyGetter(entityClass, path ->  {
             Predicate predicate = Comparison.in.compare(getBuilder(), path, list);
             where.getPredicates().add(predicate);
+            where.shape.where(path, Comparison.in, list);
         });
     }
 
@@ -111,6 +114,7 @@ public class Statement<T> {
         return applySetter(entityClass, (path, args) ->  {
             Predicate predicate = comparison.compare(getBuilder(), path, args[0]);
             where.getPredicates().add(predicate);
+            where.shape.where(path, comparison, args[0]);
         });
     }
 
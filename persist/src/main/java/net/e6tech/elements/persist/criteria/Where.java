@@ -38,6 +38,7 @@ public class Where<T> extends Handler {
     Comparison comparison = Comparison.equal;
     List<Predicate> predicates = new ArrayList<>();
     List<Order> orderByList = new ArrayList<>();
+    QueryShape shape;
 
     public Where(Where parent, Path path) {
         this(parent.getEntityManager(), parent.getBuilder(), parent.getQuery(), path);
@@ -45,10 +46,12 @@ public class Where<T> extends Handler {
         this.predicates = parent.predicates;
         this.comparison = parent.getComparison();
         this.orderByList = parent.getOrderByList();
+        this.shape = parent.shape;
     }
 
     public Where(EntityManager entityManager, CriteriaBuilder builder, CriteriaQuery query, Path path) {
         super(entityManager, builder, query, path);
+        shape = new QueryShape(path);
         template = Handler.interceptor.newInstance(path.getJavaType(), this);
     }
 
@@ -113,6 +116,7 @@ public class Where<T> extends Handler {
             // setter
             Path current = getPath().get(property);
             predicates.add(comparison.compare(builder, current, args[0]));
+            shape.where(current, comparison, args[0]);
             return null;
         }
     }
@@ -0,0 +1,344 @@
+/*
+Copyright 2015 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package net.e6tech.elements.rules;
+
+import groovy.lang.Closure;
+import net.e6tech.elements.common.util.SystemException;
+import net.e6tech.elements.jmx.stat.Measurement;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.e6tech.elements.rules.ControlFlow.Continue;
+import static net.e6tech.elements.rules.ControlFlow.Failed;
+import static net.e6tech.elements.rules.ControlFlow.Success;
+
+/**
+ * Evaluator compiled from a loaded Rule tree.  The tree is flattened into arrays and every closure
+ * is cloned exactly once, with a shared ContextDelegate as its delegate, so that evaluations
+ * do not clone closures or touch the original Rule objects.  Instances are immutable and can be
+ * used concurrently; all per-evaluation state lives in the RuleContext.
+ *
+ * Created by futeh.
+ */
+public final class CompiledRule {
+
+    private static final ContextDelegate delegate = new ContextDelegate();
+
+    private final Rule rule;
+    private final Closure condition;
+    private final Closure halted;
+    private final Closure proceed;
+    private final Closure failed;
+    private final Object[] steps;  // either CompiledRule or Object[] of verify values
+    private final Measurement measurement;
+    private final boolean independent;
+
+    private CompiledRule(Rule rule, Map<Rule, CompiledRule> compiled) {
+        this.rule = rule;
+        condition = bind(rule.condition);
+        halted = bind(rule.halted);
+        proceed = bind(rule.proceed);
+        failed = bind(rule.failed);
+        measurement = rule.getMeasurement();
+        independent = rule.isIndependent();
+        compiled.put(rule, this);
+
+        List<Object> list = new ArrayList<>(rule.verifies.size());
+        for (Object object : rule.verifies) {
+            if (object instanceof Rule) {
+                Rule child = (Rule) object;
+                CompiledRule c = compiled.get(child);
+                list.add(c != null ? c : new CompiledRule(child, compiled));
+            } else if (object instanceof Object[]) {
+                list.add(bindAll((Object[]) object));
+            } else {
+                list.add(bindAll(new Object[] { object }));
+            }
+        }
+        steps = list.toArray();
+    }
+
+    public static CompiledRule compile(Rule root) {
+        return new CompiledRule(root, new IdentityHashMap<>());
+    }
+
+    private static Closure bind(Closure closure) {
+        if (closure == null)
+            return null;
+        Closure c = (Closure) closure.clone();
+        c.setResolveStrategy(Closure.DELEGATE_FIRST);
+        c.setDelegate(delegate);
+        return c;
+    }
+
+    private static Object[] bindAll(Object[] objects) {
+        Object[] bound = new Object[objects.length];
+        for (int i = 0; i < objects.length; i++) {
+            Object value = objects[i];
+            if (value instanceof Closure) {
+                bound[i] = bind((Closure) value);
+            } else if (value instanceof Verify) {
+                Verify verify = (Verify) value;
+                bound[i] = new Verify(verify.getName(), bind(verify.getClosure()));
+            } else {
+                bound[i] = value;
+            }
+        }
+        return bound;
+    }
+
+    public Rule getRule() {
+        return rule;
+    }
+
+    public void run(RuleContext context) {
+        RuleContext previous = ContextDelegate.bind(context);
+        try {
+            context.setCompleted(evaluate(context) != Failed);
+        } finally {
+            ContextDelegate.restore(previous);
+        }
+    }
+
+    @SuppressWarnings({"squid:MethodCyclomaticComplexity", "squid:S134", "squid:S1141"})
+    private ControlFlow evaluate(RuleContext context) {
+        boolean timed = measurement != null && measurement.isEnabled();
+        long start = timed ? System.currentTimeMillis() : 0;
+        boolean cond = true;
+        context.setCurrentRule(rule);
+
+        // evaluate this rule's condition
+        if (condition != null) {
+            try {
+                Object obj = condition.call();
+                if (obj instanceof Boolean)
+                    cond = (Boolean) obj;
+                else if (Failed == obj)
+                    cond = false;
+                // null or anything else is treated as true, same as Rule.
+            } catch (Exception ex) {
+                return handleException(context, ex);
+            }
+        }
+
+        if (!cond) {
+            try {
+                // halt just means the rule did not fired.
+                call(halted);
+                context.ruleHalted(rule);
+            } catch (Exception ex) {
+                return handleException(context, ex);
+            }
+            return Continue;
+        }
+
+        RuleSet ruleSet = context.getRuleSet();
+        boolean parallel = ruleSet != null && ruleSet.isParallel();
+        ControlFlow flow = Continue;
+        Exception exception = null;
+        int i = 0;
+        while (i < steps.length) {
+            Object step = steps[i];
+            context.setCurrentRule(rule);
+            if (step instanceof CompiledRule) {
+                int end = parallel ? branchEnd(i) : i + 1;
+                if (flow == Failed || flow == Success) { // if there are previous failure from children, simply mark halted and not run further.
+                    for (int k = i; k < end; k++)
+                        context.ruleHalted(((CompiledRule) steps[k]).rule);
+                } else if (end - i > 1) {
+                    Branches branches = new Branches(context, i, end);
+                    branches.run(ruleSet);
+                    flow = branches.flow;
+                    if (branches.exception != null)
+                        exception = branches.exception;
+                } else {
+                    CompiledRule child = (CompiledRule) step;
+                    try {
+                        flow = child.evaluate(context);
+                    } catch (Exception ex) {
+                        context.ruleHalted(child.rule);
+                        flow = Failed;
+                        exception = ex;
+                    }
+                }
+                i = end;
+            } else {
+                if (flow == Continue) { // only run if it is still Continue.
+                    try {
+                        flow = context.verify(true, (Object[]) step);
+                    } catch (Exception ex) {
+                        flow = Failed;
+                        exception = ex;
+                    }
+                }
+                i++;
+            }
+        }
+
+        try {
+            context.setCurrentRule(rule); // because child rule changed it.
+            if (flow == Failed) {
+                if (exception != null)
+                    handleException(context, exception);
+                else {
+                    call(failed);
+                    if (timed)
+                        measurement.fail();
+                }
+                context.setCompleted(false);
+                context.ruleHalted(rule);
+                return Failed; // pass it up
+            }
+
+            call(proceed);
+            context.ruleExecuted(rule);
+            if (timed)
+                measurement.add((double) (System.currentTimeMillis() - start));
+        } catch (Exception ex) {
+            return handleException(context, ex);
+        }
+        return flow;
+    }
+
+    // returns the end, exclusive, of the run of independent child rules starting at index.
+    private int branchEnd(int index) {
+        int end = index;
+        while (end < steps.length && steps[end] instanceof CompiledRule && ((CompiledRule) steps[end]).independent)
+            end++;
+        return Math.max(end, index + 1);
+    }
+
+    private ControlFlow handleException(RuleContext context, Exception throwable) {
+        if (measurement != null)
+            measurement.fail();
+        context.setCurrentRule(rule);
+        try {
+            call(failed);
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception th) {
+            throw new SystemException(th);
+        }
+        context.ruleFailed(rule, throwable);
+        return Failed;
+    }
+
+    private static void call(Closure closure) {
+        if (closure != null)
+            closure.call();
+    }
+
+    /*
+     * Evaluates a run of independent sibling rules concurrently, each against its own fork of the context.
+     * Forks are merged back in declaration order up to and including the first branch that does not return
+     * Continue, which is exactly the state a sequential evaluation would have produced.  Branches after
+     * that one are cancelled and marked halted.
+     */
+    private class Branches {
+        private RuleContext context;
+        private int from;
+        private int to;
+        private ControlFlow flow = Continue;
+        private Exception exception;
+        private AtomicInteger stopAt;
+
+        Branches(RuleContext context, int from, int to) {
+            this.context = context;
+            this.from = from;
+            this.to = to;
+            stopAt = new AtomicInteger(to - from);
+        }
+
+        @SuppressWarnings({"squid:MethodCyclomaticComplexity", "squid:S1166"})
+        void run(RuleSet ruleSet) {
+            int size = to - from;
+            RuleContext[] forks = new RuleContext[size];
+            List<Future<ControlFlow>> futures = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                CompiledRule child = (CompiledRule) steps[from + i];
+                RuleContext fork = context.fork();
+                forks[i] = fork;
+                int index = i;
+                futures.add(ruleSet.getExecutor().submit(() -> evaluate(child, fork, index)));
+            }
+
+            long timeout = ruleSet.getBranchTimeout();
+            long deadline = System.currentTimeMillis() + timeout;
+            int index = 0;
+            try {
+                for (; index < size; index++) {
+                    CompiledRule child = (CompiledRule) steps[from + index];
+                    try {
+                        ControlFlow result = (timeout > 0) ?
+                                futures.get(index).get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS) :
+                                futures.get(index).get();
+                        context.merge(forks[index]);
+                        flow = result;
+                    } catch (ExecutionException ex) {
+                        Throwable cause = ex.getCause();
+                        if (cause instanceof Error)
+                            throw (Error) cause;
+                        context.merge(forks[index]);
+                        fail(child, (cause instanceof Exception) ? (Exception) cause : ex);
+                    } catch (TimeoutException ex) {
+                        futures.get(index).cancel(true);
+                        fail(child, new TimeoutException("Rule " + child.rule.getName() + " did not complete within " + timeout + "ms"));
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        fail(child, ex);
+                    }
+                    if (flow != Continue)
+                        break;
+                }
+            } finally {
+                // short-circuit remaining branches
+                stopAt.accumulateAndGet(index, Math::min);
+                for (int i = index + 1; i < size; i++) {
+                    futures.get(i).cancel(true);
+                    context.ruleHalted(((CompiledRule) steps[from + i]).rule);
+                }
+            }
+        }
+
+        private ControlFlow evaluate(CompiledRule child, RuleContext fork, int index) {
+            if (stopAt.get() < index)  // a branch before this one has already stopped the evaluation
+                return Continue;
+            RuleContext previous = ContextDelegate.bind(fork);
+            try {
+                ControlFlow result = child.evaluate(fork);
+                if (result != Continue)
+                    stopAt.accumulateAndGet(index, Math::min);
+                return result;
+            } finally {
+                ContextDelegate.restore(previous);
+            }
+        }
+
+        private void fail(CompiledRule child, Exception ex) {
+            context.ruleHalted(child.rule);
+            flow = Failed;
+            exception = ex;
+        }
+    }
+}
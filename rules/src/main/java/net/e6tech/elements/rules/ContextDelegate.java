@@ -0,0 +1,66 @@
+/*
+Copyright 2015 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package net.e6tech.elements.rules;
+
+import groovy.lang.GroovyObjectSupport;
+
+/**
+ * Delegate shared by all closures of a CompiledRule.  Instead of cloning a closure and setting
+ * its delegate for every evaluation, closures are cloned once at compile time with this object
+ * as their delegate.  Property and method resolution is forwarded to the RuleContext bound
+ * to the current thread for the duration of an evaluation.
+ *
+ * Created by futeh.
+ */
+class ContextDelegate extends GroovyObjectSupport {
+
+    private static final ThreadLocal<RuleContext> current = new ThreadLocal<>();
+
+    static RuleContext bind(RuleContext context) {
+        RuleContext previous = current.get();
+        current.set(context);
+        return previous;
+    }
+
+    static void restore(RuleContext previous) {
+        if (previous == null)
+            current.remove();
+        else
+            current.set(previous);
+    }
+
+    private static RuleContext context() {
+        RuleContext context = current.get();
+        if (context == null)
+            throw new IllegalStateException("No RuleContext bound to the current thread");
+        return context;
+    }
+
+    @Override
+    public Object getProperty(String property) {
+        return context().getProperty(property);
+    }
+
+    @Override
+    public void setProperty(String property, Object newValue) {
+        context().setProperty(property, newValue);
+    }
+
+    @Override
+    public Object invokeMethod(String name, Object args) {
+        return context().invokeMethod(name, args);
+    }
+}
@@ -29,7 +29,8 @@ import static net.e6tech.elements.rules.ControlFlow.Success;
 
 /**
  * VERY IMPORTANT.  This class must be thread safe and not keep any mutable data.
- * All of the closure are cloned before executing.
+ * All of the closure are cloned before executing.  RuleSet normally runs rules through CompiledRule,
+ * which binds the closures once instead.
  *
  * Created by futeh.
  */
@@ -45,6 +46,7 @@ public class Rule {
     Rule parent;
     RuleSet ruleSet;
     Measurement measurement = new Measurement();
+    boolean independent = false;
 
     public void addChild(Rule rule) {
         rule.setParent(this);
@@ -127,6 +129,20 @@ public class Rule {
         this.failed = closure;
     }
 
+    /**
+     * Marks this rule as not depending on its siblings, so that it can be evaluated concurrently with
+     * adjacent independent siblings when the RuleSet is in parallel mode.  Each branch sees the properties and
+     * result set by earlier rules and its changes are merged back in declaration order.  The context's
+     * verifyObject and onCheckFailed are called one at a time on its behalf.
+     */
+    public void independent(boolean b) {
+        this.independent = b;
+    }
+
+    public boolean isIndependent() {
+        return independent;
+    }
+
     public RuleSet getRuleSet() {
         return ruleSet;
     }
@@ -24,8 +24,11 @@ import org.codehaus.groovy.runtime.InvokerHelper;
 import static net.e6tech.elements.rules.ControlFlow.*;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * Created by futeh.
@@ -47,6 +50,8 @@ public class RuleContext implements GroovyObject {
     private String failedMessage;
     private Throwable exception;
     private RuleSet ruleSet;
+    private Set<String> modified; // properties set on a forked context, see fork()
+    private Map<String, Object> forkedResult; // result entries when the context was forked, see fork()
 
     public Object getDelegate() {
         return delegate;
@@ -145,21 +150,18 @@ public class RuleContext implements GroovyObject {
     }
 
     public ControlFlow verify(Object ... objects) {
+        return verify(false, objects);
+    }
+
+    // bound is true when closures have already been bound to a ContextDelegate by CompiledRule.
+    ControlFlow verify(boolean bound, Object ... objects) {
         ControlFlow flow = Continue;
         for (Object value : objects) {
             if (value instanceof Closure) {
-                Closure c1 = (Closure) ((Closure)value).clone();
-                c1.setResolveStrategy(Closure.DELEGATE_FIRST);
-                c1.setDelegate(this);
-                Object obj = c1.call();
-                flow = interpret(obj);
+                flow = interpret(call((Closure) value, bound));
             } else if (value instanceof Verify) {
                 Verify verify = (Verify) value;
-                Closure c1 = (Closure) verify.getClosure().clone();
-                c1.setResolveStrategy(Closure.DELEGATE_FIRST);
-                c1.setDelegate(this);
-                Object obj = c1.call();
-                flow = interpret(obj);
+                flow = interpret(call(verify.getClosure(), bound));
             } else if (value instanceof Boolean) {
                 flow = interpret(value);
             } else {
@@ -175,6 +177,15 @@ public class RuleContext implements GroovyObject {
         return flow;
     }
 
+    private Object call(Closure closure, boolean bound) {
+        if (bound)
+            return closure.call();
+        Closure c1 = (Closure) closure.clone();
+        c1.setResolveStrategy(Closure.DELEGATE_FIRST);
+        c1.setDelegate(this);
+        return c1.call();
+    }
+
     private ControlFlow interpret(Object obj) {
         ControlFlow flow = Continue;
         if (obj == null)
@@ -207,6 +218,48 @@ public class RuleContext implements GroovyObject {
 
     public void setProperty(String property, Object newValue) {
         properties.put(property, newValue);
+        if (modified != null)
+            modified.add(property);
+    }
+
+    /**
+     * Creates a context for evaluating an independent rule on another thread.  The fork starts with a copy
+     * of this context's properties and result, as a sequential run would see them, so that nothing is shared
+     * between threads until the fork is merged back.
+     */
+    RuleContext fork() {
+        RuleContext fork = new Fork(this);
+        fork.properties = new HashMap<>(properties);
+        fork.modified = new HashSet<>();
+        fork.result.putAll(result);
+        fork.forkedResult = new HashMap<>(result);
+        fork.delegate = delegate;
+        fork.ruleSet = ruleSet;
+        fork.currentRule = currentRule;
+        return fork;
+    }
+
+    // merges a fork back into this context.  Must be called from the thread evaluating this context.
+    void merge(RuleContext fork) {
+        rulesExecuted.putAll(fork.rulesExecuted);
+        rulesHalted.putAll(fork.rulesHalted);
+        // only entries the fork changed, so that a later branch does not undo an earlier one with stale copies
+        for (Map.Entry<String, Object> entry : fork.result.entrySet()) {
+            if (!fork.forkedResult.containsKey(entry.getKey())
+                    || !Objects.equals(fork.forkedResult.get(entry.getKey()), entry.getValue()))
+                result.put(entry.getKey(), entry.getValue());
+        }
+        for (String key : fork.forkedResult.keySet()) {
+            if (!fork.result.containsKey(key))
+                result.remove(key);
+        }
+        for (String property : fork.modified)
+            setProperty(property, fork.properties.get(property));
+        if (fork.ruleFailed != null) {
+            ruleFailed = fork.ruleFailed;
+            failedMessage = fork.failedMessage;
+            exception = fork.exception;
+        }
     }
 
     public Object invokeMethod(String name, Object args) {
@@ -230,4 +283,35 @@ public class RuleContext implements GroovyObject {
         throw new UnsupportedOperationException();
     }
 
+    // subclasses customize verifyObject and onCheckFailed, so a fork defers to the context it was forked from.
+    // Calls are serialized on that context because subclasses are not expected to be thread safe.
+    private static class Fork extends RuleContext {
+        private RuleContext parent;
+
+        Fork(RuleContext parent) {
+            this.parent = parent;
+        }
+
+        @Override
+        protected void onCheckFailed() {
+            synchronized (parent) {
+                parent.onCheckFailed();
+            }
+        }
+
+        @Override
+        protected ControlFlow verifyObject(Object object) {
+            synchronized (parent) {
+                return parent.verifyObject(object);
+            }
+        }
+
+        @Override
+        RuleContext fork() {
+            RuleContext fork = super.fork();
+            ((Fork) fork).parent = parent;
+            return fork;
+        }
+    }
+
 }
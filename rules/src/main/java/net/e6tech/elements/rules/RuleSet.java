@@ -20,12 +20,15 @@ import net.e6tech.elements.common.logging.Logger;
 import net.e6tech.elements.common.resources.ResourceManager;
 import net.e6tech.elements.common.script.AbstractScriptShell;
 import net.e6tech.elements.common.util.SystemException;
+import net.e6tech.elements.common.util.concurrent.ThreadPool;
 import net.e6tech.elements.jmx.JMXService;
 
 import javax.script.ScriptException;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Created by futeh.
@@ -39,7 +42,12 @@ public class RuleSet extends AbstractScriptShell {
     private Rule root;  // this is only used during load and then set to null
     private Map<String, Rule> rootSet = new LinkedHashMap<>();
     private Map<String, Map<String, Rule>> rootRules = new LinkedHashMap<>();
+    private Map<String, CompiledRule> compiledRoots = new ConcurrentHashMap<>();
     private boolean measurement = false;
+    private boolean compile = true;
+    private boolean parallel = false;
+    private long branchTimeout = 0;  // in milliseconds, 0 means no timeout
+    private ExecutorService executor;
 
     public RuleSet(Properties properties) {
         super(properties);
@@ -67,10 +75,21 @@ public class RuleSet extends AbstractScriptShell {
         rules = new LinkedHashMap<>();
         super.load(str);
         registerMBean("", root);
+        if (compile)
+            compileRoots();
         root = null;
         rules = null;
     }
 
+    /**
+     * Compiles loaded roots so that runRule does not need to clone closures for every evaluation.
+     * Called at the end of load; needs to be called again if rules are modified afterward.
+     */
+    public void compileRoots() {
+        for (Map.Entry<String, Rule> entry : rootSet.entrySet())
+            compiledRoots.put(entry.getKey(), CompiledRule.compile(entry.getValue()));
+    }
+
     protected void registerMBean(String path, Rule rule) {
         if (rule.getMeasurement() != null) {
             rule.getMeasurement().setName(rule.getName());
@@ -105,6 +124,7 @@ public class RuleSet extends AbstractScriptShell {
         }
         rootSet.put(ruleSet, root);
         rootRules.put(ruleSet, rules);
+        compiledRoots.remove(ruleSet);
         this.root = root;
     }
 
@@ -142,7 +162,11 @@ public class RuleSet extends AbstractScriptShell {
             throw new SystemException("ruleSet " + ruleSet + " not found");
         try {
             context.setRuleSet(this);
-            rootSet.get(ruleSet).run(context);
+            CompiledRule compiled = compiledRoots.get(ruleSet);
+            if (compiled != null)
+                compiled.run(context);
+            else
+                rootSet.get(ruleSet).run(context);
         } finally {
             context.setRuleSet(null);
         }
@@ -157,6 +181,48 @@ public class RuleSet extends AbstractScriptShell {
        return measurement;
     }
 
+    public RuleSet compile(boolean b) {
+        compile = b;
+        if (!b)
+            compiledRoots.clear();
+        return this;
+    }
+
+    public boolean compile() {
+        return compile;
+    }
+
+    /**
+     * When enabled, adjacent sibling rules marked as independent are evaluated concurrently by compiled roots.
+     */
+    public RuleSet parallel(boolean b) {
+        parallel = b;
+        return this;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public long getBranchTimeout() {
+        return branchTimeout;
+    }
+
+    public void setBranchTimeout(long branchTimeout) {
+        this.branchTimeout = branchTimeout;
+    }
+
+    // independent rules may themselves have independent children, so the default pool must not be bounded.
+    public synchronized ExecutorService getExecutor() {
+        if (executor == null)
+            executor = ThreadPool.cachedThreadPool(RuleSet.class.getName());
+        return executor;
+    }
+
+    public synchronized void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
     public String log() {
         StringBuilder builder = new StringBuilder();
         for (Map.Entry<String, Rule> entry : rootSet.entrySet()) {
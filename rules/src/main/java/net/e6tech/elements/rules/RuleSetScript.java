@@ -35,6 +35,10 @@ public abstract class RuleSetScript extends AbstractScriptBase<RuleSet> {
         getShell().measurement(b);
     }
 
+    public void parallel(boolean b) {
+        getShell().parallel(b);
+    }
+
     // called by Groovy config scripts
     public void root(String ruleName, Closure<String> closure) {
         // runAfter because we need to have all of the rules loaded.
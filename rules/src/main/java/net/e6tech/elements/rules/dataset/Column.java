@@ -22,16 +22,19 @@ import java.util.*;
  * Created by futeh.
  */
 public class Column implements Iterable {
+
     DataSet dataSet;
     String name;
     int columnIndex;
     Class dataType;
+    ColumnData data;
 
     public Column(DataSet dataSet, String name, Class type, int index) {
         this.dataSet = dataSet;
         this.name = name;
         this.columnIndex = index;
         this.dataType = type;
+        this.data = ColumnData.create(type);
     }
 
     public String getName() {
@@ -42,8 +45,8 @@ public class Column implements Iterable {
         return columnIndex;
     }
 
-    void setDataType(Class cls) {
-        this.dataType = cls;
+    public Class getDataType() {
+        return dataType;
     }
 
     public Iterator iterator() {
@@ -51,34 +54,61 @@ public class Column implements Iterable {
     }
 
     public BigDecimal sum() {
-        Calculate calculate = new Calculate(dataType) {
-            @Override
-            public long calculateLong(long current, long value) {
-                return current + value;
-            }
+        return statistics().getSum();
+    }
 
-            @Override
-            public double calculateDouble(double current, double value) {
-                return current + value;
-            }
+    public BigDecimal max() {
+        return statistics().getMax();
+    }
 
-            @Override
-            public BigDecimal calculateBigDecimal(BigDecimal current, BigDecimal value) {
-                return current.add(value);
-            }
-        };
-        return calculate.calculate(this);
+    public BigDecimal min() {
+        return statistics().getMin();
     }
 
-    public BigDecimal max() {
-        Number number = (Number) Collections.max(getData());
-        if (number == null)
-            return null;
-        return new BigDecimal(number.toString());
+    public BigDecimal avg() {
+        return statistics().getAverage();
+    }
+
+    public long count() {
+        return statistics().getCount();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return nearest-rank percentile of the non-null values
+     */
+    public BigDecimal percentile(double percentile) {
+        return data.percentile(percentile);
+    }
+
+    /**
+     * Computes count, sum, min, max and average in one pass.
+     */
+    public Statistics statistics() {
+        return statistics(false);
+    }
+
+    /**
+     * @param parallel if true, the reduction is split across the common ForkJoinPool.  Only worthwhile for large data sets.
+     */
+    public Statistics statistics(boolean parallel) {
+        return data.statistics(parallel);
+    }
+
+    void add(Object value) {
+        if (!data.accepts(value))
+            data = data.promote();
+        data.add(value);
+    }
+
+    void set(int row, Object value) {
+        if (!data.accepts(value))
+            data = data.promote();
+        data.set(row, value);
     }
 
     public List getData() {
-        List list = new ArrayList<>();
+        List list = new ArrayList<>(data.size());
         for (Object obj : this)
             list.add(obj);
         return list;
@@ -102,7 +132,7 @@ public class Column implements Iterable {
                 throw new NoSuchElementException();
             cursor = i + 1;
             lastRet = i;
-            return dataSet.get(i, columnIndex);
+            return data.get(i);
         }
 
         @Override
@@ -0,0 +1,380 @@
+/*
+Copyright 2015 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package net.e6tech.elements.rules.dataset;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LongSummaryStatistics;
+import java.util.DoubleSummaryStatistics;
+import java.util.stream.IntStream;
+
+/**
+ * Columnar storage for a DataSet column.  Integral columns are kept in a long[], floating point columns in a
+ * double[] and everything else, e.g. BigDecimal, in an Object[].  Null values are tracked in a BitSet.
+ * A value that the column's declared type cannot hold exactly, e.g. 1.5 or 5000000000 in an Integer column,
+ * promotes the column to an Object[] so that values are returned as they were set.
+ *
+ * Created by futeh.
+ */
+abstract class ColumnData {
+    private static final int INITIAL_CAPACITY = 16;
+
+    protected Class type;
+    protected BitSet nulls = new BitSet();
+    protected int size;
+
+    ColumnData(Class type) {
+        this.type = type;
+    }
+
+    // only exact types are stored as primitives; a column declared as Number or Object may hold anything.
+    static ColumnData create(Class type) {
+        if (type == Integer.class || type == Integer.TYPE
+                || type == Long.class || type == Long.TYPE
+                || type == Short.class || type == Short.TYPE
+                || type == Byte.class || type == Byte.TYPE)
+            return new LongData(type);
+        else if (type == Float.class || type == Float.TYPE
+                || type == Double.class || type == Double.TYPE)
+            return new DoubleData(type);
+        return new ObjectData(type);
+    }
+
+    int size() {
+        return size;
+    }
+
+    void add(Object value) {
+        ensureCapacity(size + 1);
+        size++;
+        set(size - 1, value);
+    }
+
+    void set(int row, Object value) {
+        if (value == null) {
+            nulls.set(row);
+            setValue(row, null);
+        } else {
+            nulls.clear(row);
+            setValue(row, value);
+        }
+    }
+
+    Object get(int row) {
+        if (nulls.get(row))
+            return null;
+        return getValue(row);
+    }
+
+    // whether value can be stored without losing information.  Null is always accepted.
+    boolean accepts(Object value) {
+        return true;
+    }
+
+    // copies this column into an Object[] backed column.
+    ColumnData promote() {
+        ObjectData data = new ObjectData(type);
+        data.ensureCapacity(size);
+        for (int i = 0; i < size; i++)
+            data.values[i] = get(i);
+        data.nulls = (BitSet) nulls.clone();
+        data.size = size;
+        return data;
+    }
+
+    protected int grow(int capacity, int minCapacity) {
+        int newCapacity = Math.max(capacity, INITIAL_CAPACITY);
+        while (newCapacity < minCapacity)
+            newCapacity += newCapacity >> 1;
+        return newCapacity;
+    }
+
+    // indices of non-null rows
+    protected IntStream rows(boolean parallel) {
+        IntStream stream = IntStream.range(0, size);
+        if (parallel)
+            stream = stream.parallel();
+        return nulls.isEmpty() ? stream : stream.filter(i -> !nulls.get(i));
+    }
+
+    protected abstract void ensureCapacity(int minCapacity);
+
+    protected abstract void setValue(int row, Object value);
+
+    protected abstract Object getValue(int row);
+
+    abstract Statistics statistics(boolean parallel);
+
+    // statistics over a subset of rows, used by group by.
+    abstract Statistics statistics(int[] rows, int length);
+
+    /**
+     * @param percentile between 0 and 100
+     * @return nearest-rank percentile of non-null values, or null if there are none.
+     */
+    abstract BigDecimal percentile(double percentile);
+
+    protected static int rank(double percentile, int count) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentile);
+        int rank = (int) Math.ceil(percentile / 100 * count);
+        return Math.min(Math.max(rank, 1), count) - 1;
+    }
+
+    static class LongData extends ColumnData {
+        long[] values = new long[0];
+
+        private final long min;  // range of the declared type, which getValue narrows to
+        private final long max;
+
+        LongData(Class type) {
+            super(type);
+            if (type == Integer.class || type == Integer.TYPE) {
+                min = Integer.MIN_VALUE;
+                max = Integer.MAX_VALUE;
+            } else if (type == Short.class || type == Short.TYPE) {
+                min = Short.MIN_VALUE;
+                max = Short.MAX_VALUE;
+            } else if (type == Byte.class || type == Byte.TYPE) {
+                min = Byte.MIN_VALUE;
+                max = Byte.MAX_VALUE;
+            } else {
+                min = Long.MIN_VALUE;
+                max = Long.MAX_VALUE;
+            }
+        }
+
+        @Override
+        protected void ensureCapacity(int minCapacity) {
+            if (minCapacity > values.length)
+                values = Arrays.copyOf(values, grow(values.length, minCapacity));
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            if (value == null)
+                return true;
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                long l = ((Number) value).longValue();
+                return l >= min && l <= max;
+            }
+            if (value instanceof Double || value instanceof Float) {
+                double d = ((Number) value).doubleValue();
+                // max + 1.0 is exact for every declared type, including 2^63 for Long
+                return d == Math.rint(d) && d >= min && d < max + 1.0;
+            }
+            BigInteger integer = null;
+            if (value instanceof BigInteger) {
+                integer = (BigInteger) value;
+            } else if (value instanceof BigDecimal) {
+                BigDecimal decimal = (BigDecimal) value;
+                if (decimal.signum() != 0 && decimal.stripTrailingZeros().scale() > 0)
+                    return false;
+                integer = decimal.toBigInteger();
+            }
+            return integer != null && integer.bitLength() < Long.SIZE
+                    && integer.longValue() >= min && integer.longValue() <= max;
+        }
+
+        @Override
+        protected void setValue(int row, Object value) {
+            values[row] = (value == null) ? 0 : ((Number) value).longValue();
+        }
+
+        @Override
+        protected Object getValue(int row) {
+            long value = values[row];
+            if (type == Long.class || type == Long.TYPE)
+                return value;
+            else if (type == Integer.class || type == Integer.TYPE)
+                return (int) value;
+            else if (type == Short.class || type == Short.TYPE)
+                return (short) value;
+            return (byte) value;
+        }
+
+        @Override
+        Statistics statistics(boolean parallel) {
+            if (nulls.isEmpty()) {
+                return new Statistics(parallel ? Arrays.stream(values, 0, size).parallel().summaryStatistics()
+                        : Arrays.stream(values, 0, size).summaryStatistics());
+            }
+            return new Statistics(rows(parallel).mapToLong(i -> values[i]).summaryStatistics());
+        }
+
+        @Override
+        Statistics statistics(int[] rows, int length) {
+            LongSummaryStatistics stats = new LongSummaryStatistics();
+            for (int i = 0; i < length; i++) {
+                if (!nulls.get(rows[i]))
+                    stats.accept(values[rows[i]]);
+            }
+            return new Statistics(stats);
+        }
+
+        @Override
+        BigDecimal percentile(double percentile) {
+            long[] sorted = rows(false).mapToLong(i -> values[i]).toArray();
+            if (sorted.length == 0)
+                return null;
+            Arrays.sort(sorted);
+            return BigDecimal.valueOf(sorted[rank(percentile, sorted.length)]);
+        }
+    }
+
+    static class DoubleData extends ColumnData {
+        double[] values = new double[0];
+
+        private final long exactLimit;  // integers up to this magnitude are exact in the declared type
+
+        DoubleData(Class type) {
+            super(type);
+            exactLimit = (type == Float.class || type == Float.TYPE) ? 1L << 24 : 1L << 53;
+        }
+
+        @Override
+        protected void ensureCapacity(int minCapacity) {
+            if (minCapacity > values.length)
+                values = Arrays.copyOf(values, grow(values.length, minCapacity));
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            if (value == null || value instanceof Float || value instanceof Short || value instanceof Byte)
+                return true;
+            if (value instanceof Double)
+                return type == Double.class || type == Double.TYPE;
+            if (value instanceof Integer || value instanceof Long) {
+                long l = ((Number) value).longValue();
+                return l >= -exactLimit && l <= exactLimit;
+            }
+            return false;
+        }
+
+        @Override
+        protected void setValue(int row, Object value) {
+            values[row] = (value == null) ? 0 : ((Number) value).doubleValue();
+        }
+
+        @Override
+        protected Object getValue(int row) {
+            if (type == Double.class || type == Double.TYPE)
+                return values[row];
+            return (float) values[row];
+        }
+
+        @Override
+        Statistics statistics(boolean parallel) {
+            if (nulls.isEmpty()) {
+                return new Statistics(parallel ? Arrays.stream(values, 0, size).parallel().summaryStatistics()
+                        : Arrays.stream(values, 0, size).summaryStatistics());
+            }
+            return new Statistics(rows(parallel).mapToDouble(i -> values[i]).summaryStatistics());
+        }
+
+        @Override
+        Statistics statistics(int[] rows, int length) {
+            DoubleSummaryStatistics stats = new DoubleSummaryStatistics();
+            for (int i = 0; i < length; i++) {
+                if (!nulls.get(rows[i]))
+                    stats.accept(values[rows[i]]);
+            }
+            return new Statistics(stats);
+        }
+
+        @Override
+        BigDecimal percentile(double percentile) {
+            double[] sorted = rows(false).mapToDouble(i -> values[i]).toArray();
+            if (sorted.length == 0)
+                return null;
+            Arrays.sort(sorted);
+            return BigDecimal.valueOf(sorted[rank(percentile, sorted.length)]);
+        }
+    }
+
+    static class ObjectData extends ColumnData {
+        Object[] values = new Object[0];
+
+        ObjectData(Class type) {
+            super(type);
+        }
+
+        @Override
+        protected void ensureCapacity(int minCapacity) {
+            if (minCapacity > values.length)
+                values = Arrays.copyOf(values, grow(values.length, minCapacity));
+        }
+
+        @Override
+        protected void setValue(int row, Object value) {
+            values[row] = value;
+        }
+
+        @Override
+        protected Object getValue(int row) {
+            return values[row];
+        }
+
+        private boolean numeric() {
+            return Number.class.isAssignableFrom(type);
+        }
+
+        private BigDecimal decimal(int row) {
+            Object value = values[row];
+            if (value == null || value instanceof BigDecimal)
+                return (BigDecimal) value;
+            return new BigDecimal(value.toString());
+        }
+
+        @Override
+        Statistics statistics(boolean parallel) {
+            if (!numeric())
+                return new Statistics(size - nulls.cardinality());
+            return rows(parallel).mapToObj(this::decimal)
+                    .collect(Statistics::ofBigDecimal, Statistics::accept, Statistics::combine);
+        }
+
+        @Override
+        Statistics statistics(int[] rows, int length) {
+            if (!numeric()) {
+                long count = 0;
+                for (int i = 0; i < length; i++) {
+                    if (!nulls.get(rows[i]))
+                        count++;
+                }
+                return new Statistics(count);
+            }
+            Statistics statistics = Statistics.ofBigDecimal();
+            for (int i = 0; i < length; i++)
+                statistics.accept(decimal(rows[i]));
+            return statistics;
+        }
+
+        @Override
+        BigDecimal percentile(double percentile) {
+            if (!numeric())
+                return null;
+            BigDecimal[] sorted = rows(false).mapToObj(this::decimal).toArray(BigDecimal[]::new);
+            if (sorted.length == 0)
+                return null;
+            Arrays.sort(sorted);
+            return sorted[rank(percentile, sorted.length)];
+        }
+    }
+}
@@ -21,7 +21,7 @@ import java.util.*;
  * Created by futeh.
  */
 public class DataSet implements Map<String, Column> {
-    List<List> data = new ArrayList<>();
+    int rowSize = 0;
     Map<String, Column> columnMap = new LinkedHashMap<>();
     Column[] columns;
     int modCount = 0;
@@ -39,38 +39,64 @@ public class DataSet implements Map<String, Column> {
     public void addRow(List row) {
         if (row.size() != columns.length)
             throw new IllegalArgumentException();
-        List r = new ArrayList();
-        r.addAll(row);
-        data.add(r);
+        int i = 0;
+        for (Object value : row)
+            columns[i++].add(value);
+        rowSize++;
         modCount = (modCount + 1) & Integer.MAX_VALUE;
     }
 
+    public void addRow(Object ... row) {
+        addRow(Arrays.asList(row));
+    }
 
     public Object get(int row, int column) {
         if (row >= getRowSize())
             throw new NoSuchElementException();
-        List list = data.get(row);
-        if (column >= list.size())
+        if (column >= columns.length)
             throw new NoSuchElementException();
-        return list.get(column);
+        return columns[column].data.get(row);
     }
 
     public void set(int row, int column, Object object) {
         if (row >= getRowSize())
             throw new NoSuchElementException();
-        List list = data.get(row);
-        if (column >= list.size())
+        if (column >= columns.length)
             throw new NoSuchElementException();
-        list.set(column, object);
+        columns[column].set(row, object);
         modCount = (modCount + 1) & Integer.MAX_VALUE;
     }
 
+    /**
+     * Aggregates valueColumn for each distinct value of keyColumn.  Groups are returned in the order
+     * their keys first appear.
+     */
+    public Map<Object, Statistics> groupBy(String keyColumn, String valueColumn) {
+        Column key = getRequiredColumn(keyColumn);
+        Column value = getRequiredColumn(valueColumn);
+        Map<Object, Rows> groups = new LinkedHashMap<>();
+        for (int row = 0; row < rowSize; row++)
+            groups.computeIfAbsent(key.data.get(row), k -> new Rows()).add(row);
+
+        Map<Object, Statistics> result = new LinkedHashMap<>();
+        for (Map.Entry<Object, Rows> entry : groups.entrySet())
+            result.put(entry.getKey(), value.data.statistics(entry.getValue().rows, entry.getValue().length));
+        return result;
+    }
+
+    private Column getRequiredColumn(String name) {
+        Column column = columnMap.get(name);
+        if (column == null)
+            throw new IllegalArgumentException("No such column: " + name);
+        return column;
+    }
+
     public int getColumnSize() {
         return columnMap.size();
     }
 
     public int getRowSize() {
-        return data.size();
+        return rowSize;
     }
 
     public Column getColumn(String key) {
@@ -140,4 +166,15 @@ public class DataSet implements Map<String, Column> {
     public Set<Entry<String, Column>> entrySet() {
         return columnMap.entrySet();
     }
+
+    private static class Rows {
+        int[] rows = new int[16];
+        int length;
+
+        void add(int row) {
+            if (length == rows.length)
+                rows = Arrays.copyOf(rows, length * 2);
+            rows[length++] = row;
+        }
+    }
 }
@@ -0,0 +1,115 @@
+/*
+Copyright 2015 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package net.e6tech.elements.rules.dataset;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.DoubleSummaryStatistics;
+import java.util.LongSummaryStatistics;
+
+/**
+ * Result of a single pass aggregation over a column: count of non-null values, sum, min, max and average.
+ * Also used as the accumulator when reducing BigDecimal columns.
+ *
+ * Created by futeh.
+ */
+public class Statistics {
+    private long count;
+    private BigDecimal sum;
+    private BigDecimal min;
+    private BigDecimal max;
+
+    public Statistics() {
+    }
+
+    // for non-numeric columns
+    Statistics(long count) {
+        this.count = count;
+    }
+
+    Statistics(LongSummaryStatistics stats) {
+        count = stats.getCount();
+        sum = BigDecimal.valueOf(stats.getSum());
+        if (count > 0) {
+            min = BigDecimal.valueOf(stats.getMin());
+            max = BigDecimal.valueOf(stats.getMax());
+        }
+    }
+
+    Statistics(DoubleSummaryStatistics stats) {
+        count = stats.getCount();
+        sum = BigDecimal.valueOf(stats.getSum());
+        if (count > 0) {
+            min = BigDecimal.valueOf(stats.getMin());
+            max = BigDecimal.valueOf(stats.getMax());
+        }
+    }
+
+    static Statistics ofBigDecimal() {
+        Statistics statistics = new Statistics();
+        statistics.sum = BigDecimal.ZERO;
+        return statistics;
+    }
+
+    public void accept(BigDecimal value) {
+        if (value == null)
+            return;
+        count++;
+        sum = (sum == null) ? value : sum.add(value);
+        if (min == null || value.compareTo(min) < 0)
+            min = value;
+        if (max == null || value.compareTo(max) > 0)
+            max = value;
+    }
+
+    public void combine(Statistics other) {
+        if (other.count == 0)
+            return;
+        count += other.count;
+        sum = (sum == null) ? other.sum : sum.add(other.sum);
+        if (min == null || other.min.compareTo(min) < 0)
+            min = other.min;
+        if (max == null || other.max.compareTo(max) > 0)
+            max = other.max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public BigDecimal getSum() {
+        return sum;
+    }
+
+    public BigDecimal getMin() {
+        return min;
+    }
+
+    public BigDecimal getMax() {
+        return max;
+    }
+
+    public BigDecimal getAverage() {
+        if (count == 0 || sum == null)
+            return null;
+        return sum.divide(BigDecimal.valueOf(count), MathContext.DECIMAL64);
+    }
+
+    public String toString() {
+        return "count=" + count + ", sum=" + sum + ", min=" + min + ", max=" + max + ", avg=" + getAverage();
+    }
+}
@@ -15,10 +15,21 @@ limitations under the License.
 */
 package net.e6tech.elements.rules;
 
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
 import java.util.LinkedHashMap;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 /**
  * Created by futeh.
@@ -36,6 +47,144 @@ public class RuleSetTest {
         System.out.println(attributes);
     }
 
+    private RuleContext fraudContext(int i) {
+        RuleContext context = new RuleContext();
+        context.setProperty("amount", (i % 5) * 700);
+        context.setProperty("count", i % 10);
+        context.setProperty("country", (i % 3 == 0) ? "US" : "CA");
+        context.setProperty("merchant", (i % 4 == 0) ? "5999" : "4111");
+        return context;
+    }
+
+    private void runInterpreted(RuleSet ruleSet, RuleContext context) {
+        context.setRuleSet(ruleSet);
+        ruleSet.getRoot("fraud").run(context);
+    }
+
+    @Test
+    public void compiled() throws Exception {
+        RuleSet ruleSet = new RuleSet(new Properties());
+        ruleSet.load("classpath://net/e6tech/elements/rules/fraud.groovy");
+
+        // compiled and interpreted evaluation must agree
+        for (int i = 0; i < 20; i++) {
+            RuleContext compiled = fraudContext(i);
+            ruleSet.runRule("fraud", compiled);
+            RuleContext interpreted = fraudContext(i);
+            runInterpreted(ruleSet, interpreted);
+            assertEquals(interpreted.isCompleted(), compiled.isCompleted());
+            assertEquals(interpreted.getResult(), compiled.getResult());
+            assertEquals(interpreted.getRuleFailed(), compiled.getRuleFailed());
+        }
+
+        RuleContext declined = fraudContext(4); // amount 2800, merchant 5999
+        ruleSet.runRule("fraud", declined);
+        assertFalse(declined.isCompleted());
+        assertEquals("declined", declined.getResult().get("category"));
+
+        // concurrent evaluations share the compiled tree
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        RuleContext context = fraudContext(i);
+                        ruleSet.runRule("fraud", context);
+                        RuleContext expected = fraudContext(i);
+                        runInterpreted(ruleSet, expected);
+                        if (!expected.getResult().equals(context.getResult()))
+                            return false;
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> future : futures)
+                assertTrue(future.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    public void benchmark() throws Exception {
+        assumeTrue(Boolean.getBoolean("benchmark"), "run with -Dbenchmark=true");
+        RuleSet ruleSet = new RuleSet(new Properties());
+        ruleSet.load("classpath://net/e6tech/elements/rules/fraud.groovy");
+        int iterations = 100000;
+
+        long interpreted = 0;
+        long compiled = 0;
+        for (int round = 0; round < 5; round++) { // earlier rounds warm up
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                runInterpreted(ruleSet, fraudContext(i));
+            interpreted = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                ruleSet.runRule("fraud", fraudContext(i));
+            compiled = System.nanoTime() - start;
+        }
+        assertTrue(compiled < interpreted, String.format("interpreted %d ns/op, compiled %d ns/op",
+                interpreted / iterations, compiled / iterations));
+    }
+
+    @Test
+    public void parallel() throws Exception {
+        RuleSet ruleSet = new RuleSet(new Properties());
+        ruleSet.load("classpath://net/e6tech/elements/rules/parallel.groovy");
+        assertTrue(ruleSet.isParallel());
+
+        RuleContext context = new RuleContext();
+        context.setProperty("delay", 20);
+        ruleSet.runRule("parallel", context);
+        assertTrue(context.isCompleted());
+        assertEquals(100, context.getResult().get("total"));
+        assertEquals(true, context.getProperty("lookup 4"));
+        // branches see results of earlier rules and later branches do not undo branch 1's change
+        assertEquals("open", context.getProperty("status 4"));
+        assertEquals("review", context.getResult().get("status"));
+        assertTrue(context.getRuleExecuted("summary") != null);
+
+        // branch 2 fails: branch 1 is merged, later branches are halted and summary does not run.
+        context = new RuleContext();
+        context.setProperty("delay", 50);
+        context.setProperty("failAt", 2);
+        ruleSet.runRule("parallel", context);
+        assertFalse(context.isCompleted());
+        assertEquals(10, context.getResult().get("score 1"));
+        assertTrue(context.getResult().get("score 3") == null);
+        assertEquals("lookup 2", context.getRuleFailed().getName());
+        assertTrue(context.getRuleHalted("lookup 3") != null);
+        assertTrue(context.getRuleHalted("summary") != null);
+
+        // per branch timeout
+        ruleSet.setBranchTimeout(100);
+        context = new RuleContext();
+        context.setProperty("delay", 1000);
+        ruleSet.runRule("parallel", context);
+        assertFalse(context.isCompleted());
+        assertTrue(context.getRuleHalted("lookup 1") != null);
+    }
+
+    @Test
+    @Tag("benchmark")
+    public void parallelSpeedup() throws Exception {
+        assumeTrue(Boolean.getBoolean("benchmark"), "run with -Dbenchmark=true");
+        RuleSet ruleSet = new RuleSet(new Properties());
+        ruleSet.load("classpath://net/e6tech/elements/rules/parallel.groovy");
+
+        // 4 independent branches of 200ms each, or 800ms if run one after another
+        RuleContext context = new RuleContext();
+        context.setProperty("delay", 200);
+        long start = System.currentTimeMillis();
+        ruleSet.runRule("parallel", context);
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue(context.isCompleted());
+        assertTrue(elapsed < 700, "4 branches of 200ms took " + elapsed + "ms");
+    }
 
     public static class ResultMap extends LinkedHashMap<String, Object> {
         public Object get(String key) {
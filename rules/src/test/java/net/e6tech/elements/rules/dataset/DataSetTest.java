@@ -15,13 +15,17 @@ limitations under the License.
 */
 package net.e6tech.elements.rules.dataset;
 
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 /**
  * Created by futeh.
@@ -56,4 +60,121 @@ public class DataSetTest {
         assertTrue(dataSet.getColumn("number").sum().equals(new BigDecimal("6.6")));
         assertTrue(dataSet.getColumn("number").max().equals(new BigDecimal("3.3")));
     }
+
+    @Test
+    public void aggregations() {
+        DataSet dataSet = new DataSet(new String[] {"merchant", "amount", "rate"}, new Class[] {String.class, Long.class, Double.class});
+        dataSet.addRow("a", 10L, 0.5);
+        dataSet.addRow("b", 20L, 1.5);
+        dataSet.addRow("a", null, 2.5);
+        dataSet.addRow("a", 40L, null);
+        dataSet.addRow("b", 30L, 3.5);
+
+        Column amount = dataSet.getColumn("amount");
+        assertEquals(4, amount.count());
+        assertEquals(new BigDecimal(100), amount.sum());
+        assertEquals(new BigDecimal(10), amount.min());
+        assertEquals(new BigDecimal(40), amount.max());
+        assertEquals(0, amount.avg().compareTo(new BigDecimal(25)));
+        assertEquals(new BigDecimal(20), amount.percentile(50));
+        assertEquals(new BigDecimal(40), amount.percentile(100));
+        assertEquals(amount.statistics().getSum(), amount.statistics(true).getSum());
+        assertEquals(amount.statistics().getMin(), amount.statistics(true).getMin());
+        assertEquals(null, dataSet.get(2, 1));
+        assertEquals(40L, dataSet.get(3, 1));
+        assertEquals(0, dataSet.getColumn("rate").sum().compareTo(new BigDecimal("8")));
+        assertEquals(5, dataSet.getColumn("merchant").count());
+
+        Map<Object, Statistics> groups = dataSet.groupBy("merchant", "amount");
+        assertEquals(2, groups.size());
+        assertEquals(new BigDecimal(50), groups.get("a").getSum());
+        assertEquals(2, groups.get("a").getCount());
+        assertEquals(new BigDecimal(30), groups.get("b").getMax());
+    }
+
+    @Test
+    public void promotion() {
+        DataSet dataSet = new DataSet(new String[] {"count", "rate"}, new Class[] {Integer.class, Float.class});
+        dataSet.addRow(1, 0.5f);
+        dataSet.addRow(2.0, 1);
+        assertTrue(dataSet.getColumn("count").data instanceof ColumnData.LongData);
+        assertTrue(dataSet.getColumn("rate").data instanceof ColumnData.DoubleData);
+        assertEquals(2, dataSet.get(1, 0));
+
+        // values that would be truncated or cannot be converted keep the column's values as they were set
+        dataSet.addRow(new BigDecimal("1.5"), 0.1);
+        dataSet.set(0, 0, "n/a");
+        assertTrue(dataSet.getColumn("count").data instanceof ColumnData.ObjectData);
+        assertTrue(dataSet.getColumn("rate").data instanceof ColumnData.ObjectData);
+        assertEquals("n/a", dataSet.get(0, 0));
+        assertEquals(new BigDecimal("1.5"), dataSet.get(2, 0));
+        assertEquals(0.1, dataSet.get(2, 1));
+        assertEquals(0.5f, dataSet.get(0, 1));
+
+        dataSet.set(0, 0, null);
+        assertEquals(0, dataSet.getColumn("count").sum().compareTo(new BigDecimal("3.5")));
+        assertEquals(2, dataSet.getColumn("count").count());
+    }
+
+    @Test
+    public void promotionOutOfRange() {
+        DataSet dataSet = new DataSet(new String[] {"int", "short", "float", "double"},
+                new Class[] {Integer.class, Short.class, Float.class, Double.class});
+        dataSet.addRow(1, (short) 1, 3, 1L << 53);
+        assertTrue(dataSet.getColumn("int").data instanceof ColumnData.LongData);
+        assertTrue(dataSet.getColumn("short").data instanceof ColumnData.LongData);
+        assertTrue(dataSet.getColumn("float").data instanceof ColumnData.DoubleData);
+        assertTrue(dataSet.getColumn("double").data instanceof ColumnData.DoubleData);
+
+        // in range of long or double storage, but not of the declared type
+        dataSet.addRow(5_000_000_000L, 70000, 16_777_217, (1L << 53) + 1);
+        assertTrue(dataSet.getColumn("int").data instanceof ColumnData.ObjectData);
+        assertTrue(dataSet.getColumn("short").data instanceof ColumnData.ObjectData);
+        assertTrue(dataSet.getColumn("float").data instanceof ColumnData.ObjectData);
+        assertTrue(dataSet.getColumn("double").data instanceof ColumnData.ObjectData);
+        assertEquals(5_000_000_000L, dataSet.get(1, 0));
+        assertEquals(new BigDecimal(5_000_000_001L), dataSet.getColumn("int").sum());
+        assertEquals(70000, dataSet.get(1, 1));
+        assertEquals(16_777_217, dataSet.get(1, 2));
+        assertEquals((1L << 53) + 1, dataSet.get(1, 3));
+        assertEquals(1, dataSet.get(0, 0));
+
+        DataSet bytes = new DataSet(new String[] {"byte"}, new Class[] {Byte.class});
+        bytes.addRow(127.0);
+        assertTrue(bytes.getColumn("byte").data instanceof ColumnData.LongData);
+        bytes.addRow(128.0);
+        assertTrue(bytes.getColumn("byte").data instanceof ColumnData.ObjectData);
+        assertEquals(128.0, bytes.get(1, 0));
+    }
+
+    @Test
+    @Tag("benchmark")
+    public void largeDataSet() {
+        assumeTrue(Boolean.getBoolean("benchmark"), "run with -Dbenchmark=true");
+        int rows = 1000000;
+        DataSet dataSet = new DataSet(new String[] {"account", "amount", "fee"}, new Class[] {Integer.class, Long.class, BigDecimal.class});
+        for (int i = 0; i < rows; i++)
+            dataSet.addRow(i % 100, (long) i, BigDecimal.valueOf(i % 7, 2));
+
+        Column amount = dataSet.getColumn("amount");
+        long start = System.currentTimeMillis();
+        Statistics sequential = amount.statistics();
+        long sequentialTime = System.currentTimeMillis() - start;
+        start = System.currentTimeMillis();
+        Statistics parallel = amount.statistics(true);
+        long parallelTime = System.currentTimeMillis() - start;
+        String timing = "1M rows sequential " + sequentialTime + "ms, parallel " + parallelTime + "ms";
+
+        BigDecimal expected = BigDecimal.valueOf((long) rows * (rows - 1) / 2);
+        assertEquals(expected, sequential.getSum(), timing);
+        assertEquals(expected, parallel.getSum(), timing);
+        assertEquals(sequential.getMax(), parallel.getMax());
+        assertEquals(dataSet.getColumn("fee").statistics().getSum(), dataSet.getColumn("fee").statistics(true).getSum());
+
+        start = System.currentTimeMillis();
+        Map<Object, Statistics> groups = dataSet.groupBy("account", "amount");
+        timing = "1M rows group by " + (System.currentTimeMillis() - start) + "ms";
+        assertEquals(100, groups.size(), timing);
+        assertEquals(rows / 100, groups.get(0).getCount(), timing);
+    }
 }
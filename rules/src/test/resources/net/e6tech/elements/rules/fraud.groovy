@@ -0,0 +1,68 @@
+rule ("screen") {
+    condition {
+        amount != null
+    }
+}
+
+rule ("amount limit") {
+    verify "under limit", { amount < 10000 }
+    proceed {
+        result['limit'] = true
+    }
+}
+
+rule ("velocity") {
+    condition {
+        count != null
+    }
+    verify({ count < 20 }, { count >= 0 })
+    proceed {
+        result['velocity'] = count
+    }
+}
+
+rule ("country") {
+    condition {
+        country != 'US'
+    }
+    verify "allowed country", { !(country in ['XX', 'YY']) }
+    proceed {
+        result['foreign'] = true
+    }
+    halted {
+        result['domestic'] = true
+    }
+}
+
+rule ("merchant") {
+    verify { merchant != null }
+    rule ("merchant category") {
+        condition {
+            merchant.startsWith('59')
+        }
+        verify { amount < 2000 }
+        failed {
+            result['category'] = 'declined'
+        }
+    }
+    proceed {
+        result['merchant'] = merchant
+    }
+}
+
+rule ("score") {
+    proceed {
+        result['score'] = (amount / 100) + count
+    }
+}
+
+root ("fraud") {
+    '''
+    "screen" :
+        - "amount limit"
+        - "velocity"
+        - "country"
+        - "merchant"
+        - "score"
+'''
+}
@@ -0,0 +1,45 @@
+parallel(true)
+
+rule ("decision") {
+    proceed {
+        result['decision'] = 'approved'
+    }
+}
+
+rule ("prepare") {
+    proceed {
+        result['status'] = 'open'
+    }
+}
+
+(1..4).each { n ->
+    rule ("lookup $n") {
+        independent true
+        verify { sleep(delay); failAt != n }
+        proceed {
+            result["score $n"] = n * 10
+            setProperty("lookup $n", true)
+            setProperty("status $n", result['status'])
+            if (n == 1)
+                result['status'] = 'review'
+        }
+    }
+}
+
+rule ("summary") {
+    proceed {
+        result['total'] = (1..4).sum { result["score $it"] ?: 0 }
+    }
+}
+
+root ("parallel") {
+    '''
+    "decision" :
+        - "prepare"
+        - "lookup 1"
+        - "lookup 2"
+        - "lookup 3"
+        - "lookup 4"
+        - "summary"
+'''
+}
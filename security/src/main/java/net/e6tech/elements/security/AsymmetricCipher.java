@@ -18,14 +18,20 @@ package net.e6tech.elements.security;
 import net.e6tech.elements.common.util.SystemException;
 
 import javax.crypto.Cipher;
+import java.nio.ByteBuffer;
 import java.security.*;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Created by futeh.
  */
 public class AsymmetricCipher {
 
+    // see SymmetricCipher, one cipher per thread, transformation and mode.
+    private static final ThreadLocal<Map<String, Cipher[]>> ciphers = ThreadLocal.withInitial(HashMap::new);
+
     private String algorithm;
     private String transformation;
     private int keyLength = 2048;
@@ -68,9 +74,11 @@ public class AsymmetricCipher {
     }
 
     public byte[] encryptBytes(PublicKey publicKey, byte[] plain) throws GeneralSecurityException {
-        Cipher cipher = Cipher.getInstance(transformation, "BC");
-        cipher.init(Cipher.ENCRYPT_MODE, publicKey);
-        return cipher.doFinal(plain);
+        return cipher(Cipher.ENCRYPT_MODE, publicKey).doFinal(plain);
+    }
+
+    public int encrypt(PublicKey publicKey, ByteBuffer input, ByteBuffer output) throws GeneralSecurityException {
+        return cipher(Cipher.ENCRYPT_MODE, publicKey).doFinal(input, output);
     }
 
     public byte[] decrypt(PrivateKey key, String encrypted) throws GeneralSecurityException {
@@ -84,9 +92,23 @@ public class AsymmetricCipher {
     }
 
     public byte[] decryptBytes(PrivateKey privateKey, byte[] encrypted) throws GeneralSecurityException {
-        Cipher cipher = Cipher.getInstance(transformation, "BC");
-        cipher.init(Cipher.DECRYPT_MODE, privateKey);
-        return cipher.doFinal(encrypted);
+        return cipher(Cipher.DECRYPT_MODE, privateKey).doFinal(encrypted);
+    }
+
+    public int decrypt(PrivateKey privateKey, ByteBuffer input, ByteBuffer output) throws GeneralSecurityException {
+        return cipher(Cipher.DECRYPT_MODE, privateKey).doFinal(input, output);
+    }
+
+    private Cipher cipher(int mode, Key key) throws GeneralSecurityException {
+        Cipher[] modes = ciphers.get().computeIfAbsent(transformation, t -> new Cipher[2]);
+        int index = (mode == Cipher.ENCRYPT_MODE) ? 0 : 1;
+        Cipher cipher = modes[index];
+        if (cipher == null) {
+            cipher = Cipher.getInstance(transformation, "BC");
+            modes[index] = cipher;
+        }
+        cipher.init(mode, key);
+        return cipher;
     }
 
     public KeyPair generateKeySpec() throws GeneralSecurityException{
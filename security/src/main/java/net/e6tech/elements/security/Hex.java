@@ -16,17 +16,26 @@ limitations under the License.
 package net.e6tech.elements.security;
 
 import javax.xml.bind.DatatypeConverter;
+import java.util.regex.Pattern;
 
 /**
  * Created by futeh.
  */
 public class Hex {
 
+    private static final Pattern WHITE_SPACE = Pattern.compile("\\s");
+
     private Hex() {
     }
 
     public static byte[] toBytes(String str) {
-        String hexString = str.replaceAll("\\s","");
+        String hexString = str;
+        for (int i = 0; i < str.length(); i++) {
+            if (Character.isWhitespace(str.charAt(i))) {
+                hexString = WHITE_SPACE.matcher(str).replaceAll("");
+                break;
+            }
+        }
         return DatatypeConverter.parseHexBinary(hexString);
     }
 
@@ -26,8 +26,10 @@ import javax.crypto.spec.SecretKeySpec;
 import javax.xml.bind.DatatypeConverter;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
 import java.security.*;
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -41,6 +43,12 @@ public class SymmetricCipher {
 
     static final Logger logger = Logger.getLogger();
 
+    private static final IvParameterSpec ZERO_IV = new IvParameterSpec(new byte[16]);
+
+    // Cipher instances are not thread safe but are expensive to look up, so each thread keeps its own,
+    // keyed by transformation and mode.  Every use re-initializes the cipher.
+    private static final ThreadLocal<Map<String, Cipher[]>> ciphers = ThreadLocal.withInitial(HashMap::new);
+
     private String algorithm = "AES";
     private String transformation = algorithm + "/CBC/PKCS7PADDING";
     private int keyLength = 256;
@@ -151,17 +159,22 @@ public class SymmetricCipher {
     }
 
     public byte[] encryptBytes(SecretKey key, byte[] plain, byte[] initVector) throws GeneralSecurityException {
-        Cipher cipher = Cipher.getInstance(transformation, "BC");
-        byte[] iv = initVector;
-        if (iv != null) {
-            cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(iv));
-        } else {
-            iv = new byte[16];
-            for (int i=0; i < iv.length; i++)
-                iv[i] = 0;
-            cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(iv));
-        }
-        return cipher.doFinal(plain);
+        return cipher(Cipher.ENCRYPT_MODE, key, initVector).doFinal(plain);
+    }
+
+    /**
+     * Encrypts the remaining bytes of input into output without intermediate copies.  Output must have
+     * at least encryptedSize(input.remaining()) bytes remaining.
+     *
+     * @param key secret key
+     * @param input plain text, from position to limit
+     * @param output buffer to receive the encrypted bytes
+     * @param initVector iv, null means a zero iv
+     * @return number of bytes stored in output
+     * @throws GeneralSecurityException general exception
+     */
+    public int encrypt(SecretKey key, ByteBuffer input, ByteBuffer output, byte[] initVector) throws GeneralSecurityException {
+        return cipher(Cipher.ENCRYPT_MODE, key, initVector).doFinal(input, output);
     }
 
     public byte[] decrypt(SecretKey key, String encrypted, String initVector) throws GeneralSecurityException {
@@ -182,17 +195,43 @@ public class SymmetricCipher {
     }
 
     public byte[] decryptBytes(SecretKey key, byte[] encrypted, byte[] initVector) throws GeneralSecurityException {
-        Cipher cipher = Cipher.getInstance(transformation, "BC");
-        byte[] iv = initVector;
-        if (iv != null) {
-            cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(iv));
-        } else {
-            iv= new byte[16];
-            for (int i=0; i < iv.length; i++)
-                iv[i] = 0;
-            cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(iv));
+        return cipher(Cipher.DECRYPT_MODE, key, initVector).doFinal(encrypted);
+    }
+
+    /**
+     * Decrypts the remaining bytes of input into output without intermediate copies.  Output must have
+     * at least input.remaining() bytes remaining.
+     *
+     * @param key secret key
+     * @param input encrypted bytes, from position to limit
+     * @param output buffer to receive the plain text
+     * @param initVector iv, null means a zero iv
+     * @return number of bytes stored in output
+     * @throws GeneralSecurityException general exception
+     */
+    public int decrypt(SecretKey key, ByteBuffer input, ByteBuffer output, byte[] initVector) throws GeneralSecurityException {
+        return cipher(Cipher.DECRYPT_MODE, key, initVector).doFinal(input, output);
+    }
+
+    /**
+     * @param plainLength length of the plain text
+     * @return size of the output buffer needed to encrypt plainLength bytes.
+     */
+    public int encryptedSize(int plainLength) {
+        int blockSize = 16;
+        return (plainLength / blockSize + 1) * blockSize;
+    }
+
+    private Cipher cipher(int mode, SecretKey key, byte[] initVector) throws GeneralSecurityException {
+        Cipher[] modes = ciphers.get().computeIfAbsent(transformation, t -> new Cipher[2]);
+        int index = (mode == Cipher.ENCRYPT_MODE) ? 0 : 1;
+        Cipher cipher = modes[index];
+        if (cipher == null) {
+            cipher = Cipher.getInstance(transformation, "BC");
+            modes[index] = cipher;
         }
-        return cipher.doFinal(encrypted);
+        cipher.init(mode, key, (initVector == null) ? ZERO_IV : new IvParameterSpec(initVector));
+        return cipher;
     }
 
     public SecretKey generateKeySpec() {
@@ -32,6 +32,7 @@ import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -58,13 +59,24 @@ public class AtallaSimulator {
     static String DEC = "1nCNE000,0123456789012345";
 
     static Logger logger = Logger.getLogger();
+    private static final String DES_EDE_ECB_NO_PADDING = "DESede/ECB/NoPadding";
+    private static final int MAX_CACHED_CIPHERS = 256;
 
     private ExecutorService threadPool;
     private ServerSocket serverSocket;
+    private PipelinedServer pipelinedServer;
     private int port = 7000;
+    private boolean pipelined = false;
+    private int workers = Runtime.getRuntime().availableProcessors();
     private byte[] masterKey = Hex.toBytes(MASTER_KEY); // triple des is 24 bytes,
     private boolean stopped = true;
     protected Map<String, String> keys = new HashMap<>();
+    private boolean cacheKeys = true;
+    private Map<String, CachedKey> workingKeys = new ConcurrentHashMap<>();
+    // ECB ciphers reset after doFinal so they can be reused without re-init.
+    private ThreadLocal<CipherCache> ciphers = ThreadLocal.withInitial(CipherCache::new);
+    private volatile int cacheGeneration = 0;
+    private CommandStatistics statistics = new CommandStatistics();
 
     public AtallaSimulator() throws GeneralSecurityException {
         Field[] fields = AtallaSimulator.class.getDeclaredFields();
@@ -87,6 +99,53 @@ public class AtallaSimulator {
 
     public void setMasterKey(String mkey) {
         masterKey = Hex.toBytes(mkey);
+        clearCache();
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public boolean isCacheKeys() {
+        return cacheKeys;
+    }
+
+    public void setCacheKeys(boolean cacheKeys) {
+        this.cacheKeys = cacheKeys;
+        clearCache();
+    }
+
+    public CommandStatistics getStatistics() {
+        return statistics;
+    }
+
+    /*
+     * Clears cached working keys.  Ciphers cached by worker threads are discarded the next time
+     * those threads look them up.
+     */
+    public void clearCache() {
+        workingKeys.clear();
+        cacheGeneration++;
     }
 
     byte[] masterKeyBytes() {
@@ -110,7 +169,17 @@ public class AtallaSimulator {
     }
 
     public byte[] decryptKey(AKB akb) throws GeneralSecurityException {
-        return akb.decryptKey(masterKey);
+        if (!cacheKeys)
+            return akb.decryptKey(masterKey);
+        CachedKey cached = workingKeys.get(akb.getKeyBlock());
+        if (cached == null) {
+            byte[] key = akb.decryptKey(masterKey);
+            cached = new CachedKey(key, akb.getCheckDigit());
+            workingKeys.put(akb.getKeyBlock(), cached);
+        } else {
+            akb.checkDigit = cached.checkDigit;
+        }
+        return cached.key.clone();
     }
 
     public byte[] decrypt(AKB akb, String encrypted) throws GeneralSecurityException {
@@ -118,11 +187,7 @@ public class AtallaSimulator {
     }
 
     public byte[] decrypt(AKB akb, byte[] encrypted) throws GeneralSecurityException {
-        byte[] key =  akb.decryptKey(masterKey);
-        Cipher cipher = Cipher.getInstance("DESede/ECB/NoPadding");
-        SecretKey secretKey = new SecretKeySpec(AKB.normalizeKey(key), "DESede");
-        cipher.init(Cipher.DECRYPT_MODE, secretKey);
-        return cipher.doFinal(encrypted);
+        return cipher(akb, Cipher.DECRYPT_MODE).doFinal(encrypted);
     }
 
     public byte[] encrypt(AKB akb, String clearText) throws GeneralSecurityException {
@@ -130,11 +195,32 @@ public class AtallaSimulator {
     }
 
     public byte[] encrypt(AKB akb, byte[] clearText) throws GeneralSecurityException {
-        byte[] key =  akb.decryptKey(masterKey);
-        Cipher cipher = Cipher.getInstance("DESede/ECB/NoPadding");
+        return cipher(akb, Cipher.ENCRYPT_MODE).doFinal(clearText);
+    }
+
+    private Cipher cipher(AKB akb, int mode) throws GeneralSecurityException {
+        int index = (mode == Cipher.ENCRYPT_MODE) ? 0 : 1;
+        if (!cacheKeys)
+            return newCipher(akb, mode);
+
+        CipherCache cache = ciphers.get();
+        if (cache.generation != cacheGeneration || cache.size() >= MAX_CACHED_CIPHERS) {
+            cache.clear();
+            cache.generation = cacheGeneration;
+        }
+        Cipher[] pair = cache.computeIfAbsent(akb.getKeyBlock(), k -> new Cipher[2]);
+        if (pair[index] == null)
+            pair[index] = newCipher(akb, mode);
+        return pair[index];
+    }
+
+    private Cipher newCipher(AKB akb, int mode) throws GeneralSecurityException {
+        byte[] key =  decryptKey(akb);
+        Cipher cipher = Cipher.getInstance(DES_EDE_ECB_NO_PADDING);
         SecretKey secretKey = new SecretKeySpec(AKB.normalizeKey(key), "DESede");
-        cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-        return cipher.doFinal(clearText);
+        cipher.init(mode, secretKey);
+        Arrays.fill(key, (byte) 0);
+        return cipher;
     }
 
     /*
@@ -151,6 +237,10 @@ public class AtallaSimulator {
     }
 
     public void start() {
+        if (pipelined) {
+            startPipelined();
+            return;
+        }
         if (threadPool == null) {
             ThreadGroup group = Thread.currentThread().getThreadGroup();
             threadPool = Executors.newCachedThreadPool(runnable -> {
@@ -177,9 +267,7 @@ public class AtallaSimulator {
                              PrintWriter writer =  new PrintWriter(new OutputStreamWriter(socket.getOutputStream()))) {
                             String line;
                             while ((line = reader.readLine()) != null) {
-                                line = line.trim();
-                                Command request = Command.createInstance(line, this);
-                                Message response = request.process();
+                                Message response = process(line.trim());
                                 writer.println(response);
                                 writer.flush();
                             }
@@ -195,7 +283,43 @@ public class AtallaSimulator {
         }
     }
 
+    protected void startPipelined() {
+        ThreadGroup group = Thread.currentThread().getThreadGroup();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, workers), runnable -> {
+            Thread thread = new Thread(group, runnable, "AtallaSimulator");
+            thread.setName("AtallaSimulator-" + thread.getId());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pipelinedServer = new PipelinedServer(this, port, pool);
+        try {
+            pipelinedServer.start();
+            stopped = false;
+        } catch (IOException e) {
+            pool.shutdown();
+            throw logger.systemException(e);
+        }
+    }
+
+    /*
+     * Processes one request line and records its latency under the command code.
+     */
+    public Message process(String line) {
+        long start = System.nanoTime();
+        Command request = Command.createInstance(line, this);
+        if (request == null)
+            return new Message("<00#" + new CommandException(0, new IllegalArgumentException(line)).error() + ">");
+        Message response = request.process();
+        statistics.record(request.getField(0), System.nanoTime() - start);
+        return response;
+    }
+
     public void stop() {
+        if (pipelinedServer != null) {
+            pipelinedServer.stop();
+            pipelinedServer = null;
+            stopped = true;
+        }
         if (serverSocket != null) {
             try {
                 serverSocket.close();
@@ -207,6 +331,22 @@ public class AtallaSimulator {
         }
     }
 
+    private static class CachedKey {
+        private final byte[] key;
+        private final String checkDigit;
+
+        CachedKey(byte[] key, String checkDigit) {
+            this.key = key;
+            this.checkDigit = checkDigit;
+        }
+    }
+
+    @SuppressWarnings("squid:S2160")
+    private static class CipherCache extends HashMap<String, Cipher[]> {
+        private static final long serialVersionUID = 2873654307622159711L;
+        private int generation;
+    }
+
     public static void main(String ... args) throws Exception  {
         byte[] kekKey = Hex.toBytes("0123456789ABCDEFFEDCBA9876543210");
         String header = "1KDEE000";
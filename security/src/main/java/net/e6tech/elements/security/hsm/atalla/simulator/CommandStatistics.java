@@ -0,0 +1,88 @@
+/*
+Copyright 2017 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package net.e6tech.elements.security.hsm.atalla.simulator;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per command latency statistics for the simulator, keyed by command code, e.g. "31" for TranslatePIN.
+ * Created by futeh.
+ */
+public class CommandStatistics {
+
+    private Map<String, Statistic> statistics = new ConcurrentHashMap<>();
+
+    public void record(String command, long nanos) {
+        statistics.computeIfAbsent(command, c -> new Statistic()).record(nanos);
+    }
+
+    public Statistic get(String command) {
+        return statistics.get(command);
+    }
+
+    public Map<String, Statistic> getStatistics() {
+        return Collections.unmodifiableMap(new TreeMap<>(statistics));
+    }
+
+    public void reset() {
+        statistics.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        getStatistics().forEach((command, stat) ->
+                builder.append(command).append(": ").append(stat).append('\n'));
+        return builder.toString();
+    }
+
+    public static class Statistic {
+        private LongAdder count = new LongAdder();
+        private LongAdder total = new LongAdder();
+        private AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            count.increment();
+            total.add(nanos);
+            max.accumulateAndGet(nanos, Math::max);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        // in microseconds
+        public double getAverage() {
+            long c = count.sum();
+            return (c == 0) ? 0 : total.sum() / 1000.0 / c;
+        }
+
+        // in microseconds
+        public double getMax() {
+            return max.get() / 1000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d avg=%.1fus max=%.1fus", getCount(), getAverage(), getMax());
+        }
+    }
+}
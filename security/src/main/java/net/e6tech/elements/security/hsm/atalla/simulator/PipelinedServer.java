@@ -0,0 +1,233 @@
+/*
+Copyright 2017 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package net.e6tech.elements.security.hsm.atalla.simulator;
+
+import net.e6tech.elements.common.logging.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Non-blocking server for the simulator.  A single selector thread reads newline delimited commands;
+ * each command is processed on the worker pool as soon as it is read, so a client may have many
+ * outstanding requests on one connection.  Responses are written back in request order.
+ * Created by futeh.
+ */
+class PipelinedServer {
+    private static Logger logger = Logger.getLogger();
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final AtallaSimulator simulator;
+    private final ExecutorService workers;
+    private final int port;
+    private final Queue<Connection> writable = new ConcurrentLinkedQueue<>();
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private volatile boolean stopped = true;
+
+    PipelinedServer(AtallaSimulator simulator, int port, ExecutorService workers) {
+        this.simulator = simulator;
+        this.port = port;
+        this.workers = workers;
+    }
+
+    boolean isStopped() {
+        return stopped;
+    }
+
+    void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        stopped = false;
+        Thread thread = new Thread(this::run, "AtallaSimulator-selector");
+        thread.start();
+    }
+
+    void stop() {
+        stopped = true;
+        if (selector != null)
+            selector.wakeup();
+    }
+
+    @SuppressWarnings("squid:S134")
+    private void run() {
+        try {
+            while (!stopped) {
+                selector.select();
+                Connection connection;
+                while ((connection = writable.poll()) != null)
+                    connection.flush();
+
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        connection = (Connection) key.attachment();
+                        if (key.isReadable())
+                            connection.read();
+                        if (key.isValid() && key.isWritable())
+                            connection.flush();
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw logger.systemException(ex);
+        } finally {
+            close();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null)
+            return;
+        channel.configureBlocking(false);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+    }
+
+    private void close() {
+        try {
+            for (SelectionKey key : selector.keys())
+                key.channel().close();
+            selector.close();
+        } catch (IOException e) {
+            Logger.suppress(e);
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    private class Connection {
+        private SocketChannel channel;
+        private SelectionKey key;
+        private ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+        private StringBuilder line = new StringBuilder();
+        private Deque<CompletableFuture<String>> pending = new ArrayDeque<>();
+        private Deque<ByteBuffer> outbound = new ArrayDeque<>();
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        void read() {
+            try {
+                int n = channel.read(readBuffer);
+                if (n < 0) {
+                    logger.info("Atalla client exited");
+                    close();
+                    return;
+                }
+            } catch (IOException e) {
+                logger.trace(e.getMessage(), e);
+                close();
+                return;
+            }
+
+            readBuffer.flip();
+            while (readBuffer.hasRemaining()) {
+                char c = (char) readBuffer.get();
+                if (c == '\n') {
+                    submit(line.toString().trim());
+                    line.setLength(0);
+                } else if (c != '\r') {
+                    line.append(c);
+                }
+            }
+            readBuffer.clear();
+        }
+
+        private void submit(String request) {
+            if (request.isEmpty())
+                return;
+            CompletableFuture<String> future = CompletableFuture.supplyAsync(() -> simulator.process(request).toString(), workers);
+            synchronized (this) {
+                pending.add(future);
+            }
+            future.whenComplete((response, exception) -> drain());
+        }
+
+        // moves completed responses, in request order, to the outbound queue.
+        private void drain() {
+            synchronized (this) {
+                while (!pending.isEmpty() && pending.peek().isDone()) {
+                    String response;
+                    try {
+                        response = pending.poll().join();
+                    } catch (Exception ex) {
+                        Logger.suppress(ex);
+                        response = "<00#080000>";
+                    }
+                    outbound.add(ByteBuffer.wrap((response + LINE_SEPARATOR).getBytes(StandardCharsets.US_ASCII)));
+                }
+            }
+            writable.add(this);
+            selector.wakeup();
+        }
+
+        // called by the selector thread only
+        void flush() {
+            if (!key.isValid())
+                return;
+            try {
+                synchronized (this) {
+                    while (!outbound.isEmpty()) {
+                        ByteBuffer buffer = outbound.peek();
+                        channel.write(buffer);
+                        if (buffer.hasRemaining())
+                            break;
+                        outbound.poll();
+                    }
+                    key.interestOps(outbound.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            } catch (IOException e) {
+                logger.trace(e.getMessage(), e);
+                close();
+            }
+        }
+
+        void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Logger.suppress(e);
+            }
+        }
+    }
+}
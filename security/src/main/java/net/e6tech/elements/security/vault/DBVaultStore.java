@@ -21,6 +21,7 @@ import net.e6tech.elements.common.inject.Inject;
 import net.e6tech.elements.common.logging.Logger;
 import net.e6tech.elements.common.resources.Retry;
 import net.e6tech.elements.common.util.SystemException;
+import net.e6tech.elements.common.util.concurrent.ThreadPool;
 
 import javax.sql.DataSource;
 import java.io.Closeable;
@@ -30,6 +31,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static net.e6tech.elements.security.vault.Constants.mapper;
 
@@ -41,6 +43,10 @@ public class DBVaultStore implements VaultStore {
 
     private String tableName = "h3_vault";
     private long latestRefreshPeriod = 10 * 60 * 1000L;
+    private boolean warmUp = false;
+    private String changeColumn;
+    private long changeOverlap = 60 * 1000L;
+    private long fullRefreshPeriod = 60 * 60 * 1000L;
 
     private Map<String, DBVault> vaults = new HashMap<>();
     private DataSource dataSource;
@@ -71,6 +77,56 @@ public class DBVaultStore implements VaultStore {
         this.latestRefreshPeriod = latestRefreshPeriod;
     }
 
+    /**
+     * When true, each managed vault loads all of its secrets in one query on open or first access.
+     * Afterwards, the vault is refreshed in the background every latestRefreshPeriod so that lookups
+     * of the latest secret do not wait on the database.  Without a changeColumn every refresh is a full
+     * reload; with one, only rows changed since the last refresh are fetched and a full reload happens
+     * every fullRefreshPeriod to drop deleted secrets.
+     * @return whether warm up mode is on.
+     */
+    public boolean isWarmUp() {
+        return warmUp;
+    }
+
+    public void setWarmUp(boolean warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    public String getChangeColumn() {
+        return changeColumn;
+    }
+
+    /**
+     * Optional bigint column that save() sets to the current time whenever a row is inserted or updated,
+     * including secrets re-sealed under the same version.  Used by warm up mode for incremental refreshes.
+     * @param changeColumn column name, or null to always reload in full.
+     */
+    public void setChangeColumn(String changeColumn) {
+        this.changeColumn = changeColumn;
+    }
+
+    public long getChangeOverlap() {
+        return changeOverlap;
+    }
+
+    /**
+     * How far back before the latest change seen an incremental refresh looks.  It covers rows that are
+     * committed after a refresh with an earlier change time, e.g. long transactions or clock skew between nodes.
+     * @param changeOverlap in milliseconds.
+     */
+    public void setChangeOverlap(long changeOverlap) {
+        this.changeOverlap = changeOverlap;
+    }
+
+    public long getFullRefreshPeriod() {
+        return fullRefreshPeriod;
+    }
+
+    public void setFullRefreshPeriod(long fullRefreshPeriod) {
+        this.fullRefreshPeriod = fullRefreshPeriod;
+    }
+
     public String getTableName() {
         return tableName;
     }
@@ -185,7 +241,14 @@ public class DBVaultStore implements VaultStore {
 
     @Override
     public void open() throws IOException {
-        // do nothing
+        if (!warmUp)
+            return;
+        try {
+            for (DBVault vault : vaults.values())
+                vault.warmUp();
+        } catch (SystemException ex) {
+            throw new IOException(ex);
+        }
     }
 
     @Override
@@ -254,6 +317,11 @@ public class DBVaultStore implements VaultStore {
         String name;
         Map<String, SortedMap<String, Secret>> cache = new HashMap<>();
         Map<String, LatestSecret> latestSecret = new Hashtable<>();
+        volatile boolean warm = false;
+        long watermark = Long.MIN_VALUE;   // latest changeColumn value loaded from the database
+        volatile long lastRefresh;
+        long lastFullRefresh;
+        AtomicBoolean refreshing = new AtomicBoolean(false);
 
         DBVault(String name) {
             this.name = name;
@@ -275,6 +343,13 @@ public class DBVaultStore implements VaultStore {
                             return secret;
                     }
                 }
+            } else if (warmUp) {
+                if (!warm)
+                    warmUp();
+                refreshIfStale();
+                LatestSecret l = latestSecret.get(alias);
+                if (l != null)
+                    return l.secret;
             } else {
                 LatestSecret l = latestSecret.get(alias);
                 if (l != null && l.timestamp > System.currentTimeMillis() - latestRefreshPeriod) {
@@ -296,9 +371,8 @@ public class DBVaultStore implements VaultStore {
                             select.setLong(3, new Long(version));
                         } else {
                             select = connection.prepareStatement("select v.secret from " + tableName + " v where v.name = ? and v.alias = ? " +
-                                    "and v.version = (select max(v1.version) from " + tableName + " v1 where v1.name = ? and v1.alias = ?)");
-                            select.setString(3, name);
-                            select.setString(4, alias);
+                                    "order by v.version desc");
+                            select.setMaxRows(1);
                         }
                         select.setString(1, name);
                         select.setString(2, alias);
@@ -368,7 +442,7 @@ public class DBVaultStore implements VaultStore {
                             removeVersion.setString(1, name);
                             removeVersion.setString(2, alias);
                             removeVersion.setLong(3, new Long(version));
-                            removeAll.executeUpdate();
+                            removeVersion.executeUpdate();
                         } else {
                             removeAll = connection.prepareStatement("delete from " + tableName + " where name = ? and alias = ?");
                             removeAll.setString(1, name);
@@ -445,6 +519,135 @@ public class DBVaultStore implements VaultStore {
             latestSecret.put(secret.alias(), new LatestSecret(secret));
         }
 
+        // used when loading from the database; addSecret always becomes the latest.
+        private void updateLatestIfNewer(Secret secret) {
+            synchronized (latestSecret) {
+                LatestSecret latest = latestSecret.get(secret.alias());
+                if (latest == null || Long.parseLong(latest.secret.version()) <= Long.parseLong(secret.version()))
+                    updateLatest(secret);
+            }
+        }
+
+        synchronized void warmUp() {
+            if (warm)
+                return;
+            load();
+            warm = true;
+        }
+
+        private void refreshIfStale() {
+            if (lastRefresh > System.currentTimeMillis() - latestRefreshPeriod)
+                return;
+            if (!refreshing.compareAndSet(false, true))
+                return;
+            ThreadPool.cachedThreadPool(DBVaultStore.class.getName()).execute(() -> {
+                try {
+                    load();
+                } catch (Exception ex) {
+                    Logger.suppress(ex);
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        }
+
+        // a full reload replaces the cache so that deleted secrets are dropped.  Otherwise, only rows whose
+        // changeColumn is past the watermark, less changeOverlap, are fetched.
+        private synchronized void load() {
+            boolean full = !warm || changeColumn == null || watermark == Long.MIN_VALUE
+                    || lastFullRefresh <= System.currentTimeMillis() - fullRefreshPeriod;
+            long since = watermark - changeOverlap;
+            Map<Secret, Long> secrets;
+            try {
+                secrets = getRetry().retry(() -> {
+                    Map<Secret, Long> map = new LinkedHashMap<>();
+                    Connection connection = null;
+                    PreparedStatement select = null;
+                    ResultSet rs = null;
+                    try {
+                        connection = dataSource.getConnection();
+                        String columns = (changeColumn == null) ? "v.secret" : "v.secret, v." + changeColumn;
+                        if (full) {
+                            select = connection.prepareStatement("select " + columns + " from " + tableName + " v where v.name = ? ");
+                        } else {
+                            select = connection.prepareStatement("select " + columns + " from " + tableName + " v where v.name = ? and v." + changeColumn + " > ? ");
+                            select.setLong(2, since);
+                        }
+                        select.setString(1, name);
+                        rs = select.executeQuery();
+                        while (rs.next()) {
+                            try {
+                                Secret secret = mapper.readValue(rs.getString(1), Secret.class);
+                                long changed = (changeColumn == null) ? Long.MIN_VALUE : rs.getLong(2);
+                                map.put(secret, rs.wasNull() ? Long.MIN_VALUE : changed);
+                            } catch (IOException e) {
+                                throw new SystemException(e);
+                            }
+                        }
+                    } finally {
+                        if (rs != null) try {
+                            rs.close();
+                        } catch (SQLException ex) {
+                            Logger.suppress(ex);
+                        }
+                        if (select != null) try {
+                            select.close();
+                        } catch (SQLException ex) {
+                            Logger.suppress(ex);
+                        }
+                        if (connection != null) try {
+                            connection.commit();
+                            connection.close();
+                        } catch (SQLException ex) {
+                            Logger.suppress(ex);
+                        }
+                    }
+                    return map;
+                });
+            } catch (Throwable th) {
+                throw new SystemException(th);
+            }
+
+            if (full)
+                replace(secrets.keySet());
+            for (Map.Entry<Secret, Long> entry : secrets.entrySet()) {
+                if (!full) {
+                    updateCache(entry.getKey());
+                    updateLatestIfNewer(entry.getKey());
+                }
+                watermark = Math.max(watermark, entry.getValue());
+            }
+            lastRefresh = System.currentTimeMillis();
+            if (full)
+                lastFullRefresh = lastRefresh;
+        }
+
+        // swaps in a fully loaded set of secrets, keeping the ones added but not saved yet.
+        private void replace(Collection<Secret> secrets) {
+            Map<String, SortedMap<String, Secret>> loaded = new HashMap<>();
+            Map<String, Secret> latest = new HashMap<>();
+            for (Secret secret : secrets) {
+                loaded.computeIfAbsent(secret.alias(), k -> new TreeMap<>()).put(secret.version(), secret);
+                Secret l = latest.get(secret.alias());
+                if (l == null || Long.parseLong(l.version()) <= Long.parseLong(secret.version()))
+                    latest.put(secret.alias(), secret);
+            }
+            for (Secret secret : addedSecrets) {
+                loaded.computeIfAbsent(secret.alias(), k -> new TreeMap<>()).put(secret.version(), secret);
+                latest.put(secret.alias(), secret);
+            }
+
+            synchronized (cache) {
+                cache.clear();
+                cache.putAll(loaded);
+            }
+            synchronized (latestSecret) {
+                latestSecret.clear();
+                for (Secret secret : latest.values())
+                    updateLatest(secret);
+            }
+        }
+
         public Set<String> aliases() {
             if (dataSource == null)
                 throw new SystemException("null data source");
@@ -453,6 +656,15 @@ public class DBVaultStore implements VaultStore {
                 aliases.add(secret.alias());
             }
 
+            if (warmUp) {
+                if (!warm)
+                    warmUp();
+                synchronized (cache) {
+                    aliases.addAll(cache.keySet());
+                }
+                return aliases;
+            }
+
             try {
                 getRetry().retry(() -> {
                     Connection connection = null;
@@ -496,6 +708,19 @@ public class DBVaultStore implements VaultStore {
             if (dataSource == null)
                 throw new SystemException("null data source");
             Set<Long> versions;
+            if (warmUp) {
+                if (!warm)
+                    warmUp();
+                versions = new LinkedHashSet<>();
+                synchronized (cache) {
+                    SortedMap<String, Secret> map = cache.get(alias);
+                    if (map != null) {
+                        for (String version : map.keySet())
+                            versions.add(Long.parseLong(version));
+                    }
+                }
+                return versions;
+            }
             try {
                 versions = getRetry().retry(() -> {
                     Connection connection = null;
@@ -549,8 +774,14 @@ public class DBVaultStore implements VaultStore {
 
         public void restore(Connection connection, String version) {
             copy(connection, name + "." + version, name);
-            latestSecret.clear();
-            cache.clear();
+            synchronized (this) {
+                latestSecret.clear();
+                synchronized (cache) {
+                    cache.clear();
+                }
+                watermark = Long.MIN_VALUE;
+                warm = false;
+            }
         }
 
         public void copy(Connection connection, String from, String to) {
@@ -562,7 +793,11 @@ public class DBVaultStore implements VaultStore {
                 remove = connection.prepareStatement("delete from " + tableName + " where name = ? ");
                 remove.setString(1, to);
                 remove.executeUpdate();
-                insert = connection.prepareStatement("insert into " + tableName + "(name, alias, version, secret) values(?,?,?,?)");
+                if (changeColumn == null)
+                    insert = connection.prepareStatement("insert into " + tableName + "(name, alias, version, secret) values(?,?,?,?)");
+                else
+                    insert = connection.prepareStatement("insert into " + tableName + "(name, alias, version, secret, " + changeColumn + ") values(?,?,?,?,?)");
+                long changed = System.currentTimeMillis();
 
                 select = connection.prepareStatement("select v.name, v.alias, v.version, v.secret from " + tableName + " v " +
                         "where v.name = ? ");
@@ -576,6 +811,8 @@ public class DBVaultStore implements VaultStore {
                     insert.setString(2, alias);
                     insert.setLong(3, ver);
                     insert.setString(4, secret);
+                    if (changeColumn != null)
+                        insert.setLong(5, changed);
                     insert.executeUpdate();
                     insert.clearParameters();
                 }
@@ -616,9 +853,15 @@ public class DBVaultStore implements VaultStore {
 
             try {
                 count = connection.prepareStatement("select count(*) from " + tableName + " v where v.name = ? and v.alias = ? and v.version = ? ");
-                update = connection.prepareStatement("update " + tableName + " set secret = ? where name = ? and alias = ? and version = ? ");
-                insert = connection.prepareStatement("insert into " + tableName + "(name, alias, version, secret) values(?,?,?,?)");
+                if (changeColumn == null) {
+                    update = connection.prepareStatement("update " + tableName + " set secret = ? where name = ? and alias = ? and version = ? ");
+                    insert = connection.prepareStatement("insert into " + tableName + "(name, alias, version, secret) values(?,?,?,?)");
+                } else {
+                    update = connection.prepareStatement("update " + tableName + " set secret = ?, " + changeColumn + " = ? where name = ? and alias = ? and version = ? ");
+                    insert = connection.prepareStatement("insert into " + tableName + "(name, alias, version, secret, " + changeColumn + ") values(?,?,?,?,?)");
+                }
 
+                long changed = System.currentTimeMillis();
                 for (Secret secret : addedSecrets) {
                     count.setString(1, getName());
                     count.setString(2, secret.alias());
@@ -639,13 +882,18 @@ public class DBVaultStore implements VaultStore {
                             insert.setString(2, secret.alias());
                             insert.setLong(3, new Long(secret.version()));
                             insert.setString(4, encoded);
+                            if (changeColumn != null)
+                                insert.setLong(5, changed);
                             insert.executeUpdate();
                             insert.clearParameters();
                         } else {
-                            update.setString(1, encoded);
-                            update.setString(2, name);
-                            update.setString(3, secret.alias());
-                            update.setLong(4, new Long(secret.version()));
+                            int i = 1;
+                            update.setString(i++, encoded);
+                            if (changeColumn != null)
+                                update.setLong(i++, changed);
+                            update.setString(i++, name);
+                            update.setString(i++, secret.alias());
+                            update.setLong(i, new Long(secret.version()));
                             update.executeUpdate();
                             update.clearParameters();
                         }
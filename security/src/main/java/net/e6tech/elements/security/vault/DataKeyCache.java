@@ -0,0 +1,166 @@
+/*
+Copyright 2015 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package net.e6tech.elements.security.vault;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, time-to-live cache of unwrapped data keys keyed by key block, i.e. the master key
+ * encrypted form of a data key.  Raw key bytes are zeroed when an entry is evicted, expired or cleared.
+ * Callers always receive their own SecretKey copy so that zeroing an entry never affects a key
+ * that is in use.
+ * Created by futeh.
+ */
+public class DataKeyCache {
+
+    private int maxSize = 1000;
+    private long expiry = 10 * 60000L;  // in milliseconds
+    private String algorithm;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public DataKeyCache(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getExpiry() {
+        return expiry;
+    }
+
+    public void setExpiry(long expiry) {
+        this.expiry = expiry;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return (total == 0) ? 0 : (double) h / total;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public SecretKey get(String keyBlock, Loader loader) throws GeneralSecurityException {
+        if (maxSize <= 0 || expiry <= 0) {
+            misses.incrementAndGet();
+            byte[] bytes = loader.load(keyBlock);
+            SecretKey secretKey = keySpec(bytes);
+            Arrays.fill(bytes, (byte) 0);
+            return secretKey;
+        }
+
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry entry = entries.get(keyBlock);
+            if (entry != null) {
+                if (entry.expiration > now) {
+                    hits.incrementAndGet();
+                    return keySpec(entry.bytes);
+                }
+                evict(entries.remove(keyBlock));
+            }
+        }
+
+        // unwrapping is done outside of the lock.  Concurrent misses on the same key block simply
+        // unwrap twice and the later one wins.
+        misses.incrementAndGet();
+        byte[] bytes = loader.load(keyBlock);
+        SecretKey secretKey = keySpec(bytes);
+        synchronized (this) {
+            purge(now);
+            Entry previous = entries.put(keyBlock, new Entry(bytes, now + expiry));
+            if (previous != null)
+                evict(previous);
+            while (entries.size() > maxSize) {
+                Iterator<Entry> iterator = entries.values().iterator();
+                evict(iterator.next());
+                iterator.remove();
+            }
+        }
+        return secretKey;
+    }
+
+    public synchronized void clear() {
+        for (Entry entry : entries.values())
+            evict(entry);
+        entries.clear();
+    }
+
+    private void purge(long now) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (entry.expiration <= now) {
+                evict(entry);
+                iterator.remove();
+            }
+        }
+    }
+
+    private void evict(Entry entry) {
+        Arrays.fill(entry.bytes, (byte) 0);
+        evictions.incrementAndGet();
+    }
+
+    private SecretKey keySpec(byte[] bytes) {
+        return new SecretKeySpec(bytes, algorithm);
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        byte[] load(String keyBlock) throws GeneralSecurityException;
+    }
+
+    private static class Entry {
+        byte[] bytes;
+        long expiration;
+
+        Entry(byte[] bytes, long expiration) {
+            this.bytes = bytes;
+            this.expiration = expiration;
+        }
+    }
+}
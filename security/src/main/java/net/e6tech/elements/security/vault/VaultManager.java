@@ -68,10 +68,12 @@ public class VaultManager {
 
     private VaultManagerState state = new VaultManagerState();
     private Random random = new Random();
+    private DataKeyCache dataKeyCache;
 
     public VaultManager() {
         symmetricCipher = SymmetricCipher.getInstance("AES");
         symmetricCipher.setBase64(false);
+        dataKeyCache = new DataKeyCache(symmetricCipher.getAlgorithm());
         asymmetricCipher = AsymmetricCipher.getInstance("RSA");
         keyDataStore = new FileStore();
         userLocalStore = keyDataStore;
@@ -104,6 +106,15 @@ public class VaultManager {
         this.userLocalStore = userLocalStore;
     }
 
+    /**
+     * Cache of data keys unwrapped by encrypt(token, key, data, iv) and decrypt(token, key, secret, iv).
+     * Size and expiry are configurable; setting either to 0 disables caching.
+     * @return the data key cache, also the source of hit rate metrics.
+     */
+    public DataKeyCache getDataKeyCache() {
+        return dataKeyCache;
+    }
+
     public SymmetricCipher getSymmetricCipher() {
         return symmetricCipher;
     }
@@ -346,16 +357,14 @@ public class VaultManager {
     // encrypt data with key. key is encrypted with master key.
     public String encrypt(String token, String key, byte[] data, String iv) throws GeneralSecurityException {
         checkToken(token);
-        byte[] keyBytes =  _decrypt(key);
-        SecretKey secretKey = symmetricCipher.getKeySpec(keyBytes);
+        SecretKey secretKey = dataKeyCache.get(key, this::_decrypt);
         return symmetricCipher.encrypt(secretKey, data, iv);
     }
 
     // for decrypt data
     public byte[] decrypt(String token, String key, String secret, String iv) throws GeneralSecurityException {
         checkToken(token);
-        byte[] keyBytes =  _decrypt(key);
-        SecretKey secretKey = symmetricCipher.getKeySpec(keyBytes);
+        SecretKey secretKey = dataKeyCache.get(key, this::_decrypt);
         return symmetricCipher.decrypt(secretKey, secret, iv);
     }
 
@@ -454,6 +463,7 @@ public class VaultManager {
     public void newMasterKey(DualEntry dualEntry) throws GeneralSecurityException {
         getPassphrase(dualEntry);
         addKey(generateInternalKey(MASTER_KEY_ALIAS));
+        dataKeyCache.clear();
     }
 
     private void checkAccess(Credential credential) throws GeneralSecurityException {
@@ -529,6 +539,7 @@ public class VaultManager {
      */
     public void changePassphrase(DualEntry dualEntry) throws GeneralSecurityException {
         checkAccess(dualEntry);
+        dataKeyCache.clear();
 
         // save password and signature
         VaultManagerState oldState = state.clone();
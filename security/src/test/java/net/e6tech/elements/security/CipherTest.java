@@ -15,13 +15,21 @@ limitations under the License.
 */
 package net.e6tech.elements.security;
 
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
+import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import java.nio.ByteBuffer;
 import java.security.KeyPair;
+import java.util.Arrays;
 
 /**
  * Created by futeh.
@@ -45,4 +53,82 @@ public class CipherTest {
         byte[] decrypted = encryption.decrypt(key.getPrivate(), encrypted);
         System.out.println(new String(decrypted, "UTF-8"));
     }
+
+    @Test
+    public void testSymmetricByteBuffer() throws Exception {
+        SymmetricCipher encryption = SymmetricCipher.getInstance("AES");
+        SecretKey key = encryption.generateKeySpec();
+        byte[] iv = encryption.generateIVBytes();
+        byte[] plain = "hello world".getBytes("UTF-8");
+
+        ByteBuffer encrypted = ByteBuffer.allocateDirect(encryption.encryptedSize(plain.length));
+        int length = encryption.encrypt(key, ByteBuffer.wrap(plain), encrypted, iv);
+        assertEquals(encrypted.capacity(), length);
+        encrypted.flip();
+        byte[] bytes = new byte[length];
+        encrypted.duplicate().get(bytes);
+        assertArrayEquals(encryption.encryptBytes(key, plain, iv), bytes);
+
+        ByteBuffer decrypted = ByteBuffer.allocate(length);
+        length = encryption.decrypt(key, encrypted, decrypted, iv);
+        assertEquals(plain.length, length);
+        assertArrayEquals(plain, Arrays.copyOf(decrypted.array(), length));
+    }
+
+    @Test
+    public void testAsymmetricByteBuffer() throws Exception {
+        AsymmetricCipher encryption = AsymmetricCipher.getInstance("RSA");
+        KeyPair key = encryption.generateKeySpec();
+        byte[] plain = "hello world, 1234567890".getBytes("UTF-8");
+        ByteBuffer encrypted = ByteBuffer.allocate(256);
+        encryption.encrypt(key.getPublic(), ByteBuffer.wrap(plain), encrypted);
+        encrypted.flip();
+        ByteBuffer decrypted = ByteBuffer.allocate(256);
+        int length = encryption.decrypt(key.getPrivate(), encrypted, decrypted);
+        assertArrayEquals(plain, Arrays.copyOf(decrypted.array(), length));
+    }
+
+    // Compares a Cipher lookup per operation against the cached per-thread ciphers and the ByteBuffer api
+    // for 16 B, 1 KB and 64 KB payloads.
+    @Test
+    @Tag("benchmark")
+    public void benchmarkSymmetric() throws Exception {
+        assumeTrue(Boolean.getBoolean("benchmark"), "run with -Dbenchmark=true");
+        SymmetricCipher encryption = SymmetricCipher.getInstance("AES");
+        SecretKey key = encryption.generateKeySpec();
+        byte[] iv = encryption.generateIVBytes();
+        for (int size : new int[] {16, 1024, 64 * 1024}) {
+            byte[] plain = new byte[size];
+            int iterations = Math.max(200, 2 * 1024 * 1024 / size);
+            ByteBuffer input = ByteBuffer.wrap(plain);
+            ByteBuffer output = ByteBuffer.allocateDirect(encryption.encryptedSize(size));
+
+            for (int round = 0; round < 2; round++) {  // first round is warm up
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    Cipher cipher = Cipher.getInstance("AES/CBC/PKCS7PADDING", "BC");
+                    cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(iv));
+                    cipher.doFinal(plain);
+                }
+                long lookup = (System.nanoTime() - start) / iterations;
+
+                start = System.nanoTime();
+                for (int i = 0; i < iterations; i++)
+                    encryption.encryptBytes(key, plain, iv);
+                long cached = (System.nanoTime() - start) / iterations;
+
+                start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    input.rewind();
+                    output.clear();
+                    encryption.encrypt(key, input, output, iv);
+                }
+                long buffer = (System.nanoTime() - start) / iterations;
+
+                // the lookup only dominates for small payloads
+                if (round > 0 && size == 16)
+                    assertTrue(cached < lookup, size + " bytes: lookup " + lookup + "ns/op, cached " + cached + "ns/op, ByteBuffer " + buffer + "ns/op");
+            }
+        }
+    }
 }
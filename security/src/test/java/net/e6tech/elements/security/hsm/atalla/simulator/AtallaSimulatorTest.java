@@ -20,6 +20,14 @@ import net.e6tech.elements.security.Hex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
@@ -72,4 +80,48 @@ public class AtallaSimulatorTest {
         assertTrue(akb.getKeyBlock().equals("1nCNE000,2162CD77E8293FE4DC328EAB53BC3A2B0A3AFE1B299F07D2,111746BEB588C65B"));
     }
 
+    @Test
+    void cachedKeys() throws Exception {
+        AKB akb = simulator.asAKB(simulator.KPE_BANK);
+        byte[] encrypted = simulator.encrypt(akb, "0123456789ABCDEF");
+        AKB copy = new AKB(akb.getKeyBlock());
+        assertEquals("0123456789ABCDEF", Hex.toString(simulator.decrypt(copy, encrypted)));
+        assertEquals(akb.getCheckDigit(), copy.getCheckDigit());
+
+        // changing master key invalidates cached keys
+        simulator.setMasterKey(simulator.getMasterKey());
+        assertEquals("0123456789ABCDEF", Hex.toString(simulator.decrypt(new AKB(akb.getKeyBlock()), encrypted)));
+    }
+
+    @Test
+    void pipelined() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        simulator.setPort(port);
+        simulator.setPipelined(true);
+        simulator.setWorkers(4);
+        simulator.start();
+        int count = 200;
+        try (Socket socket = new Socket("localhost", port)) {
+            // write all requests before reading any response.
+            StringBuilder requests = new StringBuilder();
+            for (int i = 0; i < count; i++)
+                requests.append("<00#").append(i).append(">\n");
+            requests.append("<ZZ#>\n");
+            OutputStream out = socket.getOutputStream();
+            out.write(requests.toString().getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            for (int i = 0; i < count; i++)
+                assertEquals("<00#000000#" + i + "#>", reader.readLine());
+            assertEquals("<00#080000#>", reader.readLine());
+        } finally {
+            simulator.stop();
+        }
+        assertEquals(count, simulator.getStatistics().get("00").getCount());
+        System.out.println(simulator.getStatistics());
+    }
 }
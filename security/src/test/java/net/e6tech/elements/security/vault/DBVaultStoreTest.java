@@ -0,0 +1,147 @@
+/*
+Copyright 2015 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package net.e6tech.elements.security.vault;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Created by futeh.
+ */
+public class DBVaultStoreTest {
+
+    JdbcDataSource dataSource;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:vault-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("create table h3_vault (name varchar(64), alias varchar(64), version bigint, secret varchar(4000), updated bigint)");
+        }
+    }
+
+    @Test
+    public void warmUp() throws Exception {
+        DBVaultStore writer = new DBVaultStore(dataSource);
+        writer.manage("data");
+        writer.getVault("data").addSecret(secret("a", 1));
+        writer.getVault("data").addSecret(secret("a", 2));
+        writer.getVault("data").addSecret(secret("b", 1));
+        writer.save();
+
+        DBVaultStore store = new DBVaultStore(dataSource);
+        store.setWarmUp(true);
+        store.manage("data");
+        store.open();
+        Vault vault = store.getVault("data");
+        assertEquals("2", vault.getSecret("a", null).version());
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), vault.aliases());
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), vault.versions("a"));
+
+        // new versions written by another node are picked up by the incremental refresh
+        writer.getVault("data").addSecret(secret("a", 3));
+        writer.save();
+        assertEquals("2", vault.getSecret("a", null).version());
+
+        store.setLatestRefreshPeriod(0);
+        vault.getSecret("a", null);
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (!"3".equals(vault.getSecret("a", null).version()) && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals("3", vault.getSecret("a", null).version());
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 3L)), vault.versions("a"));
+    }
+
+    @Test
+    public void incrementalRefresh() throws Exception {
+        DBVaultStore writer = new DBVaultStore(dataSource);
+        writer.setChangeColumn("updated");
+        writer.manage("data");
+        writer.getVault("data").addSecret(secret("a", 5));
+        writer.getVault("data").addSecret(secret("b", 1));
+        writer.save();
+
+        DBVaultStore store = new DBVaultStore(dataSource);
+        store.setWarmUp(true);
+        store.setChangeColumn("updated");
+        store.manage("data");
+        store.open();
+        Vault vault = store.getVault("data");
+        store.setLatestRefreshPeriod(0);
+
+        // a lower version written after the last refresh and a secret re-sealed under the same version
+        writer.getVault("data").addSecret(secret("c", 1));
+        Secret resealed = secret("a", 5);
+        resealed.setSecret("resealed");
+        writer.getVault("data").addSecret(resealed);
+        writer.save();
+        awaitRefresh(vault, () -> vault.versions("c").contains(1L)
+                && "resealed".equals(vault.getSecret("a", null).getSecret()));
+        assertEquals("resealed", vault.getSecret("a", "5").getSecret());
+
+        // deletions are picked up by the full reload
+        writer.getVault("data").removeSecret("b", null);
+        store.setFullRefreshPeriod(0);
+        awaitRefresh(vault, () -> !vault.aliases().contains("b"));
+        assertEquals(new HashSet<>(Arrays.asList("a", "c")), vault.aliases());
+    }
+
+    @Test
+    public void latest() throws Exception {
+        DBVaultStore store = new DBVaultStore(dataSource);
+        store.manage("data");
+        store.getVault("data").addSecret(secret("a", 1));
+        store.getVault("data").addSecret(secret("a", 2));
+        store.save();
+
+        DBVaultStore reader = new DBVaultStore(dataSource);
+        reader.manage("data");
+        assertEquals("2", reader.getVault("data").getSecret("a", null).version());
+        assertEquals("1", reader.getVault("data").getSecret("a", "1").version());
+    }
+
+    private void awaitRefresh(Vault vault, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            vault.getSecret("a", null); // triggers the background refresh
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private Secret secret(String alias, long version) {
+        Secret secret = new Secret();
+        Properties properties = new Properties();
+        properties.setProperty(Constants.ALIAS, alias);
+        properties.setProperty(Constants.VERSION, Long.toString(version));
+        secret.setProperties(properties);
+        secret.setSecret(alias + "-" + version);
+        return secret;
+    }
+}
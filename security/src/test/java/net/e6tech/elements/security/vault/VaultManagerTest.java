@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import java.io.File;
 import java.util.Arrays;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -81,5 +82,21 @@ public class VaultManagerTest {
         assertTrue(Arrays.equals(ct1.getBytes(), clearText.getBytes()));
     }
 
+    @Test
+    public void dataKeyCache() throws Exception {
+        String token = manager.authorize(dualEntry.getUser1());
+        String key = manager.generateKey(dualEntry);
+        byte[] data = "hello world".getBytes("UTF-8");
+        String iv = manager.getSymmetricCipher().generateIV();
+
+        String encrypted = manager.encrypt(token, key, data, iv);
+        assertTrue(Arrays.equals(data, manager.decrypt(token, key, encrypted, iv)));
+        assertEquals(1, manager.getDataKeyCache().getMisses());
+        assertEquals(1, manager.getDataKeyCache().getHits());
 
+        manager.newMasterKey(dualEntry);
+        assertEquals(0, manager.getDataKeyCache().size());
+        assertTrue(Arrays.equals(data, manager.decrypt(token, key, encrypted, iv)));
+        assertEquals(2, manager.getDataKeyCache().getMisses());
+    }
 }
@@ -32,7 +32,10 @@ import javax.security.auth.login.LoginException;
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.security.GeneralSecurityException;
 import java.security.spec.RSAPublicKeySpec;
+import java.util.ArrayList;
+import java.util.List;
 
 import static net.e6tech.elements.security.vault.Constants.mapper;
 
@@ -116,13 +119,20 @@ public class KeyServer {
                 value = vaultManager.encrypt(encrypt.getToken(), encrypt.getKeyBlock(), encrypt.getData(), encrypt.getIv());
             } else if (action instanceof Decrypt) {
                 Decrypt decrypt = (Decrypt) action;
-                byte[] result;
-                if (decrypt.getKeyBlock() == null) {
-                    result = vaultManager.decrypt(decrypt.getToken(), decrypt.getSecret());
-                } else {
-                    result = vaultManager.decrypt(decrypt.getToken(), decrypt.getKeyBlock(), decrypt.getSecret(), decrypt.getIv());
-                }
+                byte[] result = decrypt(decrypt.getToken(), decrypt);
                 return vaultManager.getSymmetricCipher().encrypt(clientKey, result, null);
+            } else if (action instanceof BatchEncrypt) {
+                BatchEncrypt batch = (BatchEncrypt) action;
+                List<String> results = new ArrayList<>(batch.getRequests().size());
+                for (Encrypt encrypt : batch.getRequests())
+                    results.add(vaultManager.encrypt(batch.getToken(), encrypt.getKeyBlock(), encrypt.getData(), encrypt.getIv()));
+                value = mapper.writeValueAsString(results);
+            } else if (action instanceof BatchDecrypt) {
+                BatchDecrypt batch = (BatchDecrypt) action;
+                List<byte[]> results = new ArrayList<>(batch.getRequests().size());
+                for (Decrypt decrypt : batch.getRequests())
+                    results.add(decrypt(batch.getToken(), decrypt));
+                value = mapper.writeValueAsString(results);
             } else {
                 throw new SystemException("Unsupported action " + action);
             }
@@ -138,4 +148,12 @@ public class KeyServer {
             throw new SystemException(ex);
         }
     }
+
+    private byte[] decrypt(String token, Decrypt decrypt) throws GeneralSecurityException {
+        if (decrypt.getKeyBlock() == null) {
+            return vaultManager.decrypt(token, decrypt.getSecret());
+        } else {
+            return vaultManager.decrypt(token, decrypt.getKeyBlock(), decrypt.getSecret(), decrypt.getIv());
+        }
+    }
 }
@@ -0,0 +1,36 @@
+/*
+Copyright 2015 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package net.e6tech.elements.web.security.vault.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decrypts a list of secrets in one round trip.  Entries without a key block are decrypted
+ * with the master key, same as {@link Decrypt}.
+ * Created by futeh.
+ */
+public class BatchDecrypt extends Action {
+    private List<Decrypt> requests = new ArrayList<>();
+
+    public List<Decrypt> getRequests() {
+        return requests;
+    }
+
+    public void setRequests(List<Decrypt> requests) {
+        this.requests = requests;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+Copyright 2015 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package net.e6tech.elements.web.security.vault.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encrypts a list of payloads in one round trip.  Each entry carries its own key block
+ * and iv; the token of the entries is ignored in favor of the batch's token.
+ * Created by futeh.
+ */
+public class BatchEncrypt extends Action {
+    private List<Encrypt> requests = new ArrayList<>();
+
+    public List<Encrypt> getRequests() {
+        return requests;
+    }
+
+    public void setRequests(List<Encrypt> requests) {
+        this.requests = requests;
+    }
+}
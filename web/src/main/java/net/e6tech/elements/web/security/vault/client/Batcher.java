@@ -0,0 +1,111 @@
+/*
+Copyright 2015 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package net.e6tech.elements.web.security.vault.client;
+
+import net.e6tech.elements.common.util.concurrent.ThreadPool;
+
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Coalesces concurrent calls into batches.  The first item of a batch starts a timer of
+ * window milliseconds; when the timer expires or the batch reaches maxBatchSize, the batch
+ * is dispatched on a separate thread so that several batches can be in flight at the same time.
+ * Created by futeh.
+ */
+class Batcher<T, R> {
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "KeyClient-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Submit<T, R> submit;
+    private final long window;
+    private final int maxBatchSize;
+    private ExecutorService executor = ThreadPool.cachedThreadPool("KeyClient");
+    private List<T> items = new ArrayList<>();
+    private List<CompletableFuture<R>> futures = new ArrayList<>();
+    private long generation = 0;
+
+    Batcher(long window, int maxBatchSize, Submit<T, R> submit) {
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.submit = submit;
+    }
+
+    public CompletableFuture<R> submit(T item) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        Runnable dispatch = null;
+        synchronized (this) {
+            items.add(item);
+            futures.add(future);
+            if (items.size() >= maxBatchSize) {
+                dispatch = drain();
+            } else if (items.size() == 1) {
+                long scheduled = generation;
+                scheduler.schedule(() -> flush(scheduled), window, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (dispatch != null)
+            executor.execute(dispatch);
+        return future;
+    }
+
+    private void flush(long scheduled) {
+        Runnable dispatch;
+        synchronized (this) {
+            // the batch this timer belongs to has already been dispatched because it was full.
+            if (scheduled != generation || items.isEmpty())
+                return;
+            dispatch = drain();
+        }
+        executor.execute(dispatch);
+    }
+
+    private Runnable drain() {
+        List<T> batch = items;
+        List<CompletableFuture<R>> pending = futures;
+        items = new ArrayList<>();
+        futures = new ArrayList<>();
+        generation++;
+        return () -> dispatch(batch, pending);
+    }
+
+    @SuppressWarnings("squid:S1181")
+    private void dispatch(List<T> batch, List<CompletableFuture<R>> pending) {
+        try {
+            List<R> results = submit.apply(batch);
+            if (results.size() != pending.size())
+                throw new GeneralSecurityException("Expecting " + pending.size() + " results but received " + results.size());
+            for (int i = 0; i < pending.size(); i++)
+                pending.get(i).complete(results.get(i));
+        } catch (Throwable ex) {
+            // callers wait on these futures, so they must be completed even when the submit fails with an Error.
+            pending.forEach(f -> f.completeExceptionally(ex));
+            if (ex instanceof Error)
+                throw (Error) ex;
+        }
+    }
+
+    @FunctionalInterface
+    interface Submit<T, R> {
+        List<R> apply(List<T> batch) throws GeneralSecurityException;
+    }
+}
@@ -15,6 +15,7 @@ limitations under the License.
 */
 package net.e6tech.elements.web.security.vault.client;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import net.e6tech.elements.common.cache.CacheFacade;
 import net.e6tech.elements.common.logging.Logger;
 import net.e6tech.elements.common.resources.Startable;
@@ -32,6 +33,10 @@ import java.net.HttpURLConnection;
 import java.security.GeneralSecurityException;
 import java.security.PublicKey;
 import java.security.spec.RSAPublicKeySpec;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import static net.e6tech.elements.security.vault.Constants.mapper;
 
@@ -57,6 +62,10 @@ public class KeyClient implements Startable {
     private boolean remoteEncryption = true;
     private CacheFacade<String, SecretKey> cachedSecretKeys;
     private CacheFacade<String, ClearText> cachedSecrets;
+    private long batchWindow = 0;     // in milliseconds, 0 means no coalescing of concurrent encrypt/decrypt calls.
+    private int maxBatchSize = 100;
+    private Batcher<Encrypt, String> encryptBatcher;
+    private Batcher<Decrypt, byte[]> decryptBatcher;
 
     private String token;
 
@@ -92,11 +101,32 @@ public class KeyClient implements Startable {
         this.remoteEncryption = remoteEncryption;
     }
 
+    public long getBatchWindow() {
+        return batchWindow;
+    }
+
+    public void setBatchWindow(long batchWindow) {
+        this.batchWindow = batchWindow;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
     public void start() {
         if (started)
             return;
         started = true;
 
+        if (batchWindow > 0) {
+            encryptBatcher = new Batcher<>(batchWindow, maxBatchSize, this::encrypt);
+            decryptBatcher = new Batcher<>(batchWindow, maxBatchSize, this::decrypt);
+        }
+
         cachedSecretKeys = new CacheFacade<String, SecretKey>("secretKeys") {};
         cachedSecretKeys.initPool();
 
@@ -233,6 +263,8 @@ public class KeyClient implements Startable {
             request.setKeyBlock(key);
             request.setData(data);
             request.setIv(iv);
+            if (encryptBatcher != null)
+                return await(encryptBatcher.submit(request));
             String ret = submit(request);
             try {
                 return new String(decryptResult(ret), UTF8_ENCODING);
@@ -253,6 +285,8 @@ public class KeyClient implements Startable {
             request.setKeyBlock(key);
             request.setSecret(secret);
             request.setIv(iv);
+            if (decryptBatcher != null)
+                return await(decryptBatcher.submit(request));
             String ret = submit(request);
             return decryptResult(ret);
         } else {
@@ -261,6 +295,55 @@ public class KeyClient implements Startable {
         }
     }
 
+    // encrypt a list of payloads in one round trip.  Results are in the same order as requests.
+    public List<String> encrypt(List<Encrypt> requests) throws GeneralSecurityException {
+        if (remoteEncryption) {
+            checkToken();
+            BatchEncrypt batch = new BatchEncrypt();
+            batch.setRequests(requests);
+            String ret = submit(batch);
+            return decryptResult(ret, new TypeReference<List<String>>() {});
+        } else {
+            List<String> results = new ArrayList<>(requests.size());
+            for (Encrypt request : requests)
+                results.add(sym.encrypt(getSecretKey(request.getKeyBlock()), request.getData(), request.getIv()));
+            return results;
+        }
+    }
+
+    // decrypt a list of secrets in one round trip.  Results are in the same order as requests.
+    public List<byte[]> decrypt(List<Decrypt> requests) throws GeneralSecurityException {
+        if (remoteEncryption) {
+            checkToken();
+            BatchDecrypt batch = new BatchDecrypt();
+            batch.setRequests(requests);
+            String ret = submit(batch);
+            return decryptResult(ret, new TypeReference<List<byte[]>>() {});
+        } else {
+            List<byte[]> results = new ArrayList<>(requests.size());
+            for (Decrypt request : requests) {
+                if (request.getKeyBlock() == null)
+                    results.add(decrypt(request.getSecret()));
+                else
+                    results.add(sym.decrypt(getSecretKey(request.getKeyBlock()), request.getSecret(), request.getIv()));
+            }
+            return results;
+        }
+    }
+
+    private <T> T await(CompletableFuture<T> future) throws GeneralSecurityException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeneralSecurityException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof GeneralSecurityException)
+                throw (GeneralSecurityException) e.getCause();
+            throw new GeneralSecurityException(e.getCause());
+        }
+    }
+
     private SecretKey getSecretKey(String key) {
         return cachedSecretKeys.get(key, ()-> {
             byte[] keyBytes = decrypt(key);
@@ -313,6 +396,15 @@ public class KeyClient implements Startable {
         return sym.decrypt(secretKey, ret, null);
     }
 
+    private <T> T decryptResult(String ret, TypeReference<T> type) throws GeneralSecurityException {
+        byte[] result = sym.decrypt(secretKey, ret, null);
+        try {
+            return mapper.readValue(new String(result, UTF8_ENCODING), type);
+        } catch (Exception e) {
+            throw new GeneralSecurityException(e);
+        }
+    }
+
     private <T> T decryptResult(String ret, Class<T> cls) throws GeneralSecurityException {
         byte[] result = sym.decrypt(secretKey, ret, null);
         try {
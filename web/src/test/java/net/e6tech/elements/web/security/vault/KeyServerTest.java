@@ -15,6 +15,8 @@ limitations under the License.
 */
 package net.e6tech.elements.web.security.vault;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import net.e6tech.elements.common.cache.CacheFacade;
 import net.e6tech.elements.security.AsymmetricCipher;
 import net.e6tech.elements.security.SymmetricCipher;
 import net.e6tech.elements.security.vault.ClearText;
@@ -32,8 +34,10 @@ import java.security.GeneralSecurityException;
 import java.security.KeyFactory;
 import java.security.PublicKey;
 import java.security.spec.RSAPublicKeySpec;
+import java.util.List;
 
 import static net.e6tech.elements.security.vault.Constants.mapper;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 /**
  * Created by futeh.
@@ -57,6 +61,7 @@ public class KeyServerTest {
         manager.open(dualEntry);
 
         keyServer.vaultManager = manager;
+        keyServer.clientKeys = new CacheFacade<String, SecretKey>("clientKeys") {};
         String pubKey = keyServer.getPublicKey();
         SharedKey sharedKey = mapper.readValue(pubKey, SharedKey.class);
         RSAPublicKeySpec publicKeySpec = new RSAPublicKeySpec(sharedKey.getModulus(), sharedKey.getPublicExponent());
@@ -92,6 +97,36 @@ public class KeyServerTest {
         System.out.println(ct);
     }
 
+    @Test
+    public void testBatch() throws Exception {
+        authenticate();
+        String keyBlock = keyServer.vaultManager.generateKey(
+                new DualEntry("user1", "password1".toCharArray(), "user2", "password2".toCharArray()));
+
+        BatchEncrypt batchEncrypt = new BatchEncrypt();
+        batchEncrypt.setToken(token);
+        for (int i = 0; i < 10; i++) {
+            Encrypt encrypt = new Encrypt();
+            encrypt.setKeyBlock(keyBlock);
+            encrypt.setData(("data-" + i).getBytes("UTF-8"));
+            batchEncrypt.getRequests().add(encrypt);
+        }
+        List<String> encrypted = decryptResult(submit(batchEncrypt), new TypeReference<List<String>>() {});
+        assertEquals(10, encrypted.size());
+
+        BatchDecrypt batchDecrypt = new BatchDecrypt();
+        batchDecrypt.setToken(token);
+        for (String secret : encrypted) {
+            Decrypt decrypt = new Decrypt();
+            decrypt.setKeyBlock(keyBlock);
+            decrypt.setSecret(secret);
+            batchDecrypt.getRequests().add(decrypt);
+        }
+        List<byte[]> decrypted = decryptResult(submit(batchDecrypt), new TypeReference<List<byte[]>>() {});
+        for (int i = 0; i < 10; i++)
+            assertEquals("data-" + i, new String(decrypted.get(i), "UTF-8"));
+    }
+
     private void authenticate() throws Exception {
         Authenticate auth = new Authenticate();
         auth.setUserName("user1");
@@ -114,6 +149,11 @@ public class KeyServerTest {
         return sym.decrypt(secretKey, ret, null);
     }
 
+    private <T> T decryptResult(String ret, TypeReference<T> type) throws GeneralSecurityException, IOException {
+        byte[] result = sym.decrypt(secretKey, ret, null);
+        return mapper.readValue(new String(result, "UTF-8"), type);
+    }
+
     private <T> T decryptResult(String ret, Class<T> cls) throws GeneralSecurityException, IOException {
         byte[] result = sym.decrypt(secretKey, ret, null);
         try {
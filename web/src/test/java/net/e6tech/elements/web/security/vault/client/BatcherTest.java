@@ -0,0 +1,85 @@
+/*
+Copyright 2015 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package net.e6tech.elements.web.security.vault.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by futeh.
+ */
+public class BatcherTest {
+
+    private List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+
+    private List<Integer> echo(List<Integer> batch) {
+        batches.add(batch);
+        return batch;
+    }
+
+    @Test
+    void window() throws Exception {
+        Batcher<Integer, Integer> batcher = new Batcher<>(100, 10, this::echo);
+        CompletableFuture<Integer> f1 = batcher.submit(1);
+        CompletableFuture<Integer> f2 = batcher.submit(2);
+        CompletableFuture<Integer> f3 = batcher.submit(3);
+        assertEquals(1, (int) f1.get(5, TimeUnit.SECONDS));
+        assertEquals(2, (int) f2.get(5, TimeUnit.SECONDS));
+        assertEquals(3, (int) f3.get(5, TimeUnit.SECONDS));
+        assertEquals(1, batches.size()); // dispatched together when the window expired
+        assertEquals(3, batches.get(0).size());
+    }
+
+    @Test
+    void maxBatchSize() throws Exception {
+        Batcher<Integer, Integer> batcher = new Batcher<>(1000, 2, this::echo);
+        long start = System.currentTimeMillis();
+        CompletableFuture<Integer> f1 = batcher.submit(1);
+        CompletableFuture<Integer> f2 = batcher.submit(2);
+        f1.get(5, TimeUnit.SECONDS);
+        f2.get(5, TimeUnit.SECONDS);
+        assertTrue(System.currentTimeMillis() - start < 1000, "full batch should not wait for the window");
+
+        // the timer of the first batch expires at 1000ms; it must not flush the second batch, whose window ends at 1500ms.
+        Thread.sleep(500);
+        CompletableFuture<Integer> f3 = batcher.submit(3);
+        Thread.sleep(700);
+        assertFalse(f3.isDone());
+        assertEquals(3, (int) f3.get(5, TimeUnit.SECONDS));
+        assertEquals(2, batches.size());
+        assertEquals(Collections.singletonList(3), batches.get(1));
+    }
+
+    @Test
+    void error() throws Exception {
+        Batcher<Integer, Integer> batcher = new Batcher<>(10, 10, batch -> {
+            throw new Error("submit failed");
+        });
+        CompletableFuture<Integer> f1 = batcher.submit(1);
+        CompletableFuture<Integer> f2 = batcher.submit(2);
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> f1.get(5, TimeUnit.SECONDS));
+        assertTrue(ex.getCause() instanceof Error);
+        assertThrows(ExecutionException.class, () -> f2.get(5, TimeUnit.SECONDS));
+    }
+}